@@ -0,0 +1,100 @@
+package ex1.bench;
+
+import ex1.src.WGraph_Algo;
+import ex1.src.WGraph_DS;
+import ex1.src.weighted_graph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The algorithms of WGraph_Algo on a WGraph_DS which doesn't change during the run (so the CSR snapshot is built
+ * once, in the warmup; the path cache is off):
+ * - isConnected (O(1) from the tracked components of WGraph_DS), and isConnectedBFS on a snapshot of the same
+ *   graph, which runs a BFS over the CSR.
+ * - shortestPathDist between nodes at most two edges apart, and between random nodes ("grid" gives long paths).
+ *   The "Measured" variants run the same queries with the query metrics on (see WGraph_Algo.setMetrics), so their
+ *   difference is the cost of the metrics.
+ * - copy().
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class AlgoBenchmark {
+    private static final int PAIRS = 1 << 10; // Query pairs (a power of two), cycled through.
+
+    @Param({"10000", "100000", "1000000"})
+    int nodes;
+
+    @Param({"uniform", "powerlaw", "grid"})
+    String degrees;
+
+    private WGraph_Algo algo, snapshotAlgo, measuredAlgo;
+    private int[][] near, far;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        WGraph_DS graph = Graphs.create(nodes, degrees, 1);
+        algo = new WGraph_Algo();
+        algo.init(graph);
+        snapshotAlgo = new WGraph_Algo();
+        snapshotAlgo.init(graph.snapshot());
+        measuredAlgo = new WGraph_Algo();
+        measuredAlgo.init(graph);
+        measuredAlgo.setMetrics(true);
+        near = Graphs.nearPairs(graph, PAIRS, 2);
+        far = Graphs.randomPairs(graph, PAIRS, 3);
+    }
+
+    private int nextPair() {
+        return cursor = (cursor + 1) & (PAIRS - 1);
+    }
+
+    @Benchmark
+    public boolean isConnected() {
+        return algo.isConnected();
+    }
+
+    @Benchmark
+    public boolean isConnectedBFS() {
+        return snapshotAlgo.isConnected();
+    }
+
+    @Benchmark
+    public double shortestPathDistShort() {
+        int i = nextPair();
+        return algo.shortestPathDist(near[0][i], near[1][i]);
+    }
+
+    @Benchmark
+    public double shortestPathDistLong() {
+        int i = nextPair();
+        return algo.shortestPathDist(far[0][i], far[1][i]);
+    }
+
+    @Benchmark
+    public double shortestPathDistShortMeasured() {
+        int i = nextPair();
+        return measuredAlgo.shortestPathDist(near[0][i], near[1][i]);
+    }
+
+    @Benchmark
+    public double shortestPathDistLongMeasured() {
+        int i = nextPair();
+        return measuredAlgo.shortestPathDist(far[0][i], far[1][i]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public weighted_graph copy() {
+        return algo.copy();
+    }
+}
@@ -0,0 +1,141 @@
+package ex1.bench;
+
+import ex1.src.WGraph_DS;
+import ex1.src.neighbor_consumer;
+import ex1.src.node_info;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The basic operations of WGraph_DS, one operation (or one restoring pair of operations) per call,
+ * on a graph which keeps its size during the whole run:
+ * - hasEdge/getEdge on pairs of which half are edges.
+ * - connect of an existing edge (a weight update), and connect + removeEdge of a new edge.
+ * - addNode + removeNode of a new (isolated) node, and removeNode + restoring the node with its edges.
+ * - iterating the neighbors of a node with getV(key), with getV(key) + getEdge, and with forEachNeighbor.
+ * Run with the GC profiler (see jmh/build.gradle), gc.alloc.rate.norm is the garbage per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class GraphOpsBenchmark {
+    private static final int PAIRS = 1 << 16; // Query pairs (a power of two), cycled through.
+
+    @Param({"10000", "100000", "1000000"})
+    int nodes;
+
+    @Param({"uniform", "powerlaw"})
+    String degrees;
+
+    private WGraph_DS graph;
+    private int[] a, b; // Query pairs, the even ones are edges.
+    private int[] freeA, freeB; // Pairs which are not edges.
+    private int[] removedKeys = new int[0]; // The row of the last removed node (see removeAndRestoreNode).
+    private double[] removedWeights = new double[0];
+    private int removed, cursor, next;
+    private double sum;
+    private final neighbor_consumer recorder = (v, w) -> {
+        if (removed == removedKeys.length) {
+            removedKeys = Arrays.copyOf(removedKeys, 2 * removed + 16);
+            removedWeights = Arrays.copyOf(removedWeights, removedKeys.length);
+        }
+        removedKeys[removed] = v;
+        removedWeights[removed++] = w;
+    };
+    private final neighbor_consumer summer = (v, w) -> sum += w;
+
+    @Setup
+    public void setUp() {
+        graph = Graphs.create(nodes, degrees, 1);
+        int[][] pairs = Graphs.edgePairs(graph, PAIRS, 2);
+        a = pairs[0];
+        b = pairs[1];
+        pairs = Graphs.randomPairs(graph, PAIRS, 3);
+        freeA = pairs[0];
+        freeB = pairs[1];
+        for (int i = 0; i < PAIRS; i++) { // Replace the few pairs which are edges (or loops).
+            while (freeA[i] == freeB[i] || graph.hasEdge(freeA[i], freeB[i]))
+                freeB[i] = (freeB[i] + 1) % graph.nodeSize();
+        }
+        next = graph.nodeSize();
+    }
+
+    private int nextPair() {
+        return cursor = (cursor + 1) & (PAIRS - 1);
+    }
+
+    @Benchmark
+    public boolean hasEdge() {
+        int i = nextPair();
+        return graph.hasEdge(a[i], b[i]);
+    }
+
+    @Benchmark
+    public double getEdge() {
+        int i = nextPair();
+        return graph.getEdge(a[i], b[i]);
+    }
+
+    @Benchmark
+    public void connectExisting() {
+        int i = nextPair() & ~1; // An edge.
+        graph.connect(a[i], b[i], 1 + (i & 63));
+    }
+
+    @Benchmark
+    public void connectAndRemoveEdge() {
+        int i = nextPair();
+        graph.connect(freeA[i], freeB[i], 1);
+        graph.removeEdge(freeA[i], freeB[i]);
+    }
+
+    @Benchmark
+    public void addAndRemoveNode() {
+        graph.addNode(next);
+        graph.removeNode(next);
+    }
+
+    @Benchmark
+    public void removeAndRestoreNode() {
+        int key = a[nextPair()];
+        removed = 0;
+        graph.forEachNeighbor(key, recorder);
+        graph.removeNode(key);
+        graph.addNode(key);
+        for (int k = 0; k < removed; k++)
+            graph.connect(key, removedKeys[k], removedWeights[k]);
+    }
+
+    @Benchmark
+    public int getV() {
+        int keys = 0;
+        for (node_info n : graph.getV(a[nextPair()]))
+            keys += n.getKey();
+        return keys;
+    }
+
+    @Benchmark
+    public double getVAndGetEdge() {
+        int key = a[nextPair()];
+        double weights = 0;
+        for (node_info n : graph.getV(key))
+            weights += graph.getEdge(key, n.getKey());
+        return weights;
+    }
+
+    @Benchmark
+    public double forEachNeighbor() {
+        sum = 0;
+        graph.forEachNeighbor(a[nextPair()], summer);
+        return sum;
+    }
+}
@@ -0,0 +1,143 @@
+package ex1.bench;
+
+import ex1.src.WGraph_DS;
+import ex1.src.weighted_graph;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Seeded graphs and query pairs for the benchmarks.
+ * Every graph has the keys 0..n-1 and integer weights in [1, 100]:
+ * - "uniform": 5n random edges (average degree 10, binomial degrees).
+ * - "powerlaw": 5n edges whose endpoints are drawn with probability proportional to (i+1)^-0.67
+ *   (Chung-Lu, degree exponent about 2.5): a few hubs with very high degrees.
+ * - "grid": a square 4-neighbor grid of about n nodes (degree 4, diameter about 2*sqrt(n)), for long paths.
+ */
+final class Graphs {
+    private Graphs() {
+    }
+
+    /**
+     * Builds a graph.
+     * @param nodes - the number of nodes (rounded down to a square for "grid").
+     * @param degrees - "uniform", "powerlaw" or "grid".
+     * @param seed - the random seed.
+     * @return - a new graph.
+     */
+    static WGraph_DS create(int nodes, String degrees, long seed) {
+        Random r = new Random(seed);
+        int side = (int) Math.sqrt(nodes);
+        int n = degrees.equals("grid") ? side * side : nodes;
+        int m = degrees.equals("grid") ? 2 * side * (side - 1) : 5 * n;
+        int[] keys = new int[n], a = new int[m], b = new int[m];
+        double[] w = new double[m];
+        for (int i = 0; i < n; i++)
+            keys[i] = i;
+        switch (degrees) {
+            case "uniform":
+                for (int e = 0; e < m; e++) {
+                    a[e] = r.nextInt(n);
+                    b[e] = r.nextInt(n);
+                }
+                break;
+            case "powerlaw":
+                double[] cumulative = new double[n];
+                double sum = 0;
+                for (int i = 0; i < n; i++)
+                    cumulative[i] = sum += Math.pow(i + 1, -0.67);
+                for (int e = 0; e < m; e++) {
+                    a[e] = draw(cumulative, r);
+                    b[e] = draw(cumulative, r);
+                }
+                break;
+            case "grid":
+                int e = 0;
+                for (int y = 0; y < side; y++) {
+                    for (int x = 0; x < side; x++) {
+                        if (x + 1 < side) {
+                            a[e] = y * side + x;
+                            b[e++] = y * side + x + 1;
+                        }
+                        if (y + 1 < side) {
+                            a[e] = y * side + x;
+                            b[e++] = (y + 1) * side + x;
+                        }
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown degree distribution: " + degrees);
+        }
+        for (int e = 0; e < m; e++)
+            w[e] = 1 + r.nextInt(100);
+        WGraph_DS g = new WGraph_DS();
+        g.addNodes(keys);
+        g.connectAll(a, b, w);
+        return g;
+    }
+
+    /**
+     * Returns random pairs of keys: pairs[0] are the first keys, pairs[1] the second ones.
+     * @param g - the graph (with the keys 0..n-1).
+     * @param count - the number of pairs.
+     * @param seed - the random seed.
+     */
+    static int[][] randomPairs(weighted_graph g, int count, long seed) {
+        Random r = new Random(seed);
+        int[][] pairs = new int[2][count];
+        for (int i = 0; i < count; i++) {
+            pairs[0][i] = r.nextInt(g.nodeSize());
+            pairs[1][i] = r.nextInt(g.nodeSize());
+        }
+        return pairs;
+    }
+
+    /**
+     * Returns pairs of keys at most two edges apart (a node, and a neighbor of one of its neighbors).
+     * @param g - the graph (with the keys 0..n-1).
+     * @param count - the number of pairs.
+     * @param seed - the random seed.
+     */
+    static int[][] nearPairs(weighted_graph g, int count, long seed) {
+        Random r = new Random(seed);
+        int[][] pairs = new int[2][count];
+        for (int i = 0; i < count; i++) {
+            int u = r.nextInt(g.nodeSize()), v = neighbor(g, neighbor(g, u, r), r);
+            pairs[0][i] = u;
+            pairs[1][i] = v;
+        }
+        return pairs;
+    }
+
+    /**
+     * Returns pairs of which half are edges of the graph and half are random pairs (mostly not edges).
+     * @param g - the graph (with the keys 0..n-1).
+     * @param count - the number of pairs.
+     * @param seed - the random seed.
+     */
+    static int[][] edgePairs(weighted_graph g, int count, long seed) {
+        Random r = new Random(seed);
+        int[][] pairs = randomPairs(g, count, seed);
+        for (int i = 0; i < count; i += 2)
+            pairs[1][i] = neighbor(g, pairs[0][i], r);
+        return pairs;
+    }
+
+    /**
+     * Returns a random neighbor of a node, or the node itself if it has none.
+     */
+    private static int neighbor(weighted_graph g, int key, Random r) {
+        int[] found = {key, 0}; // The chosen neighbor, and the number of neighbors seen (reservoir sampling).
+        g.forEachNeighbor(key, (v, w) -> {
+            if (r.nextInt(++found[1]) == 0)
+                found[0] = v;
+        });
+        return found[0];
+    }
+
+    private static int draw(double[] cumulative, Random r) {
+        int i = Arrays.binarySearch(cumulative, r.nextDouble() * cumulative[cumulative.length - 1]);
+        return i >= 0 ? i : Math.min(-i - 1, cumulative.length - 1);
+    }
+}
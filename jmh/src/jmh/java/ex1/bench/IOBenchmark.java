@@ -0,0 +1,59 @@
+package ex1.bench;
+
+import ex1.src.WGraph_Algo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WGraph_Algo.save and load (the binary format of WGraph_Format) through a temporary file.
+ * The file is mostly in the page cache, so this measures encoding and decoding rather than the disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class IOBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    int nodes;
+
+    @Param({"uniform", "powerlaw"})
+    String degrees;
+
+    private WGraph_Algo saver, loader;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        saver = new WGraph_Algo();
+        saver.init(Graphs.create(nodes, degrees, 1));
+        loader = new WGraph_Algo();
+        file = File.createTempFile("graph", ".bin");
+        if (!saver.save(file.getPath()))
+            throw new IOException("can't write " + file);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public boolean save() {
+        return saver.save(file.getPath());
+    }
+
+    @Benchmark
+    public boolean load() {
+        return loader.load(file.getPath());
+    }
+}
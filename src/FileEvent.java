@@ -0,0 +1,31 @@
+package ex1.src;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JDK Flight Recorder event of WGraph_Algo.save or WGraph_Algo.load (see QueryEvent).
+ */
+@Name("ex1.GraphFile")
+@Label("Graph File")
+@Category({"ex1", "Graph"})
+@Description("A graph saved or loaded by WGraph_Algo")
+final class FileEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("File")
+    String file;
+
+    @Label("Nodes")
+    int nodes;
+
+    @Label("Edges")
+    int edges;
+
+    @Label("Success")
+    boolean success;
+}
@@ -0,0 +1,163 @@
+package ex1.src;
+
+import java.util.Arrays;
+
+/**
+ * This class represents an indexed d-ary minimum heap of int elements with double keys.
+ * Every element appears at most once: push(...) on an element which is already in the heap is a decrease-key,
+ * so the heap never grows beyond the number of nodes (unlike a re-insertion based PriorityQueue).
+ * The default arity is 4, which makes the heap shallower than a binary heap and keeps the children
+ * of a node in one or two cache lines.
+ * All the state is kept in primitive arrays and no objects are allocated per operation.
+ */
+public class IndexedDaryHeap implements frontier_queue {
+    private final int d; // The arity of the heap.
+    private int[] ids = new int[16]; // The heap elements (heap order).
+    private double[] keys = new double[16]; // The keys of the elements (parallel to ids).
+    private int[] pos = new int[0]; // Element -> heap position, or -1 if the element is not in the heap.
+    private int size; // The number of elements.
+
+    /**
+     * Default constructor, creates a 4-ary heap.
+     */
+    public IndexedDaryHeap() {
+        this(4);
+    }
+
+    /**
+     * Creates a heap with the given arity.
+     * @param d - the number of children of every heap node (at least 2).
+     */
+    public IndexedDaryHeap(int d) {
+        if (d < 2)
+            throw new IllegalArgumentException("arity must be at least 2: " + d);
+        this.d = d;
+    }
+
+    @Override
+    public void clear(int capacity) {
+        for (int i = 0; i < size; i++) // Only the remaining elements have a position to reset.
+            pos[ids[i]] = -1;
+        size = 0;
+        if (pos.length < capacity) {
+            int old = pos.length;
+            pos = Arrays.copyOf(pos, Math.max(capacity, old + (old >> 1)));
+            Arrays.fill(pos, old, pos.length, -1);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of elements in the heap.
+     * @return - the number of elements.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the given element is in the heap.
+     * @param id - the element.
+     * @return - true iff the element is in the heap.
+     */
+    public boolean contains(int id) {
+        return pos[id] >= 0;
+    }
+
+    @Override
+    public void push(int id, double key) {
+        int i = pos[id];
+        if (i < 0) { // Insert at the bottom.
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size << 1);
+                keys = Arrays.copyOf(keys, size << 1);
+            }
+            i = size++;
+        } else if (keys[i] <= key) { // Not a decrease.
+            return;
+        }
+        siftUp(i, id, key);
+    }
+
+    /**
+     * Sets the key of an element to any value (increase or decrease), inserting it if it's not in the heap.
+     * @param id - the element.
+     * @param key - the new key.
+     */
+    public void update(int id, double key) {
+        int i = pos[id];
+        if (i < 0 || key <= keys[i]) { // Insert or decrease.
+            push(id, key);
+            return;
+        }
+        siftDown(i, id, key); // Increase.
+    }
+
+    @Override
+    public int pop() {
+        int top = ids[0];
+        pos[top] = -1;
+        if (--size > 0) // Move the last element to the root and sift it down.
+            siftDown(0, ids[size], keys[size]);
+        return top;
+    }
+
+    @Override
+    public double peekKey() {
+        return keys[0];
+    }
+
+    /**
+     * Moves the element up from position i until its parent has a smaller or equal key.
+     * @param i - the start position (a hole).
+     * @param id - the element.
+     * @param key - its key.
+     */
+    private void siftUp(int i, int id, double key) {
+        while (i > 0) {
+            int parent = (i - 1) / d;
+            if (keys[parent] <= key)
+                break;
+            ids[i] = ids[parent];
+            keys[i] = keys[parent];
+            pos[ids[i]] = i;
+            i = parent;
+        }
+        ids[i] = id;
+        keys[i] = key;
+        pos[id] = i;
+    }
+
+    /**
+     * Moves the element down from position i until all its children have greater or equal keys.
+     * @param i - the start position (a hole).
+     * @param id - the element.
+     * @param key - its key.
+     */
+    private void siftDown(int i, int id, double key) {
+        int first;
+        while ((first = i * d + 1) < size) {
+            int min = first;
+            double minKey = keys[first];
+            for (int c = first + 1, last = Math.min(first + d, size); c < last; c++) { // Find the smallest child.
+                if (keys[c] < minKey) {
+                    min = c;
+                    minKey = keys[c];
+                }
+            }
+            if (key <= minKey)
+                break;
+            ids[i] = ids[min];
+            keys[i] = minKey;
+            pos[ids[i]] = i;
+            i = min;
+        }
+        ids[i] = id;
+        keys[i] = key;
+        pos[id] = i;
+    }
+}
@@ -0,0 +1,230 @@
+package ex1.src;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * This class represents a primitive int -> double hash map.
+ * It is based on open addressing with linear probing over two parallel arrays,
+ * so an entry costs 12 bytes (plus free slots) and no Integer/Double boxes or entry objects are allocated.
+ * Keys must be non negative (-1 marks a free slot), which holds for node keys.
+ * Iteration is done by slot: for slot in [0, capacity()) use keyAt(slot), skipping slots where it is -1.
+ */
+public class IntDoubleHashMap implements Serializable {
+    private static final long serialVersionUID = -5600582983302724899L; // Pinned, so saved graphs stay loadable.
+    private static final int FREE = -1; // Marks a free slot.
+
+    private int[] keys; // Slot keys (FREE if the slot is not used).
+    private double[] values; // Slot values.
+    private int size; // Number of entries.
+
+    /**
+     * Default constructor, creates a small map (4 slots).
+     */
+    public IntDoubleHashMap() {
+        this(3);
+    }
+
+    /**
+     * Creates a map which can hold the expected number of entries without resizing.
+     * @param expected - expected number of entries.
+     */
+    public IntDoubleHashMap(int expected) {
+        int capacity = 4;
+        while (capacity * 3 / 4 < expected) // Keep the load factor <= 0.75.
+            capacity <<= 1;
+        keys = new int[capacity];
+        values = new double[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    /**
+     * Copy constructor.
+     * @param other - the map to copy.
+     */
+    public IntDoubleHashMap(IntDoubleHashMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    /**
+     * Returns the number of entries.
+     * @return - the number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the map contains the given key.
+     * @param key - non negative key.
+     * @return - true iff there is an entry for the key.
+     */
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Returns the value of the given key.
+     * @param key - non negative key.
+     * @param defaultValue - the value to return if there is no such key.
+     * @return - the value of the key or defaultValue.
+     */
+    public double get(int key, double defaultValue) {
+        int slot = find(key);
+        return slot >= 0 ? values[slot] : defaultValue;
+    }
+
+    /**
+     * Puts (or updates) an entry.
+     * @param key - non negative key.
+     * @param value - the value.
+     * @return - true iff a new entry was added (false if an existing one was updated).
+     */
+    public boolean put(int key, double value) {
+        int mask = keys.length - 1;
+        int slot = KeyIndex.mix(key) & mask;
+        while (keys[slot] != FREE) { // Probe for the key or a free slot.
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length * 3 / 4) // Grow when the load factor exceeds 0.75.
+            rehash(keys.length << 1);
+        return true;
+    }
+
+    /**
+     * Removes the entry of the given key.
+     * Uses backward shift deletion, so no tombstones are left behind.
+     * @param key - non negative key.
+     * @return - true iff an entry was removed.
+     */
+    public boolean remove(int key) {
+        int slot = find(key);
+        if (slot < 0)
+            return false;
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != FREE) { // Move back entries which probed past the hole.
+            int home = KeyIndex.mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = FREE;
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns the number of slots (for iteration by slot).
+     * @return - the slot count.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the key stored in the given slot.
+     * @param slot - slot number in [0, capacity()).
+     * @return - the key, or -1 if the slot is free.
+     */
+    public int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Returns the value stored in the given slot.
+     * @param slot - a used slot number.
+     * @return - the value.
+     */
+    public double valueAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Returns the slot of the given key.
+     * @param key - non negative key.
+     * @return - the slot, or -1 if there is no such key.
+     */
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = KeyIndex.mix(key) & mask;
+        int k;
+        while ((k = keys[slot]) != FREE) {
+            if (k == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Moves all entries to new arrays of the given capacity.
+     * @param capacity - the new slot count (a power of two).
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        double[] oldValues = values;
+        keys = new int[capacity];
+        values = new double[capacity];
+        Arrays.fill(keys, FREE);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = KeyIndex.mix(oldKeys[i]) & mask;
+                while (keys[slot] != FREE)
+                    slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Override of equals method.
+     * Two maps are equal if they contain the same entries (regardless of the slot layout).
+     * @param o - the object to compare with this map.
+     * @return - true/false - depending on equality.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        IntDoubleHashMap other = (IntDoubleHashMap) o;
+        if (size != other.size)
+            return false;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                int slot = other.find(keys[i]);
+                if (slot < 0 || Double.compare(values[i], other.values[slot]) != 0)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Override of the default hashCode method.
+     * The hash is a sum over the entries, so it doesn't depend on the slot layout.
+     * @return - the hash sum.
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != FREE)
+                h += keys[i] ^ Double.hashCode(values[i]);
+        return h;
+    }
+}
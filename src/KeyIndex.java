@@ -0,0 +1,95 @@
+package ex1.src;
+
+/**
+ * This class maps sparse (non negative) node keys to dense indices 0..n-1.
+ * Index i is assigned to keys[i], so if the keys are sorted, the dense order follows the key order.
+ * The lookup table is an open addressing (linear probing) int array, so no Integer boxing is involved.
+ * If the keys are exactly 0..n-1 (the common case) no table is built at all and indexOf is the identity.
+ */
+public final class KeyIndex {
+    private static final int EMPTY = -1; // Marks a free slot in the table (keys are never negative).
+
+    private final int[] keys; // Dense index -> key.
+    private final int[] table; // Open addressing table of dense indices, null in identity mode.
+    private final int mask; // table.length - 1 (table length is a power of two).
+
+    /**
+     * Builds an index over the given keys.
+     * The array is not copied, the caller must not modify it afterwards.
+     * @param keys - distinct non negative keys, keys[i] gets the dense index i.
+     */
+    public KeyIndex(int[] keys) {
+        this.keys = keys;
+        boolean identity = true;
+        for (int i = 0; i < keys.length && identity; i++) // Check if keys[i] == i for every i.
+            identity = keys[i] == i;
+        if (identity) {
+            table = null;
+            mask = 0;
+            return;
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, keys.length * 2 - 1)) << 1; // Load factor <= 0.5.
+        table = new int[capacity];
+        mask = capacity - 1;
+        java.util.Arrays.fill(table, EMPTY);
+        for (int i = 0; i < keys.length; i++) { // Insert every key.
+            int slot = mix(keys[i]) & mask;
+            while (table[slot] != EMPTY)
+                slot = (slot + 1) & mask;
+            table[slot] = i;
+        }
+    }
+
+    /**
+     * Returns the dense index of the given key.
+     * @param key - node key.
+     * @return - the dense index, or -1 if the key is not indexed.
+     */
+    public int indexOf(int key) {
+        if (table == null) // Identity mode.
+            return key >= 0 && key < keys.length ? key : -1;
+        int slot = mix(key) & mask;
+        int i;
+        while ((i = table[slot]) != EMPTY) { // Probe until an empty slot.
+            if (keys[i] == key)
+                return i;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the key stored at the given dense index.
+     * @param index - dense index.
+     * @return - node key.
+     */
+    public int keyAt(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Returns the number of indexed keys.
+     * @return - n.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the memory footprint of this index: the keys and the lookup table (none in identity mode).
+     * @return - the number of bytes.
+     */
+    public long sizeInBytes() {
+        return 4L * keys.length + (table != null ? 4L * table.length : 0);
+    }
+
+    /**
+     * Scrambles the key bits so that sequential keys don't form long probe chains.
+     * @param key - node key.
+     * @return - hashed value.
+     */
+    static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
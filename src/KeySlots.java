@@ -0,0 +1,108 @@
+package ex1.src;
+
+import java.util.Arrays;
+
+/**
+ * This class assigns growing slot numbers 0, 1, 2... to node keys in the order they are added.
+ * Unlike KeyIndex it grows: keys can be added at any time (but never removed), so structures which follow a
+ * changing graph can keep their per-node state in primitive arrays indexed by slot.
+ * The lookup table is an open addressing (linear probing) int table, so no Integer boxing is involved.
+ * It is not thread safe.
+ */
+final class KeySlots {
+    private static final int FREE = -1; // Marks a free table slot (keys are never negative).
+
+    private int[] tableKeys; // Open addressing table: key -> slot.
+    private int[] tableSlots;
+    private int[] keys = new int[16]; // Slot -> key.
+    private int size; // Number of keys.
+
+    /**
+     * Creates a table which can hold the expected number of keys without resizing.
+     * @param expected - expected number of keys.
+     */
+    KeySlots(int expected) {
+        int capacity = 16;
+        while (capacity / 2 < expected) // Keep the load factor <= 0.5.
+            capacity <<= 1;
+        tableKeys = new int[capacity];
+        tableSlots = new int[capacity];
+        Arrays.fill(tableKeys, FREE);
+    }
+
+    /**
+     * Returns the slot of a key, adding the key (with the next slot number) if it is new.
+     * @param key - non negative key.
+     * @return - the slot of the key.
+     */
+    int add(int key) {
+        int s = slotOf(key);
+        if (s >= 0)
+            return s;
+        if ((size + 1) * 2 > tableKeys.length)
+            rehash(tableKeys.length * 2);
+        if (size == keys.length)
+            keys = Arrays.copyOf(keys, size * 2);
+        int t = KeyIndex.mix(key) & (tableKeys.length - 1);
+        while (tableKeys[t] != FREE)
+            t = (t + 1) & (tableKeys.length - 1);
+        tableKeys[t] = key;
+        tableSlots[t] = size;
+        keys[size] = key;
+        return size++;
+    }
+
+    /**
+     * Returns the slot of a key.
+     * @param key - a key.
+     * @return - the slot, or -1 if the key was never added.
+     */
+    int slotOf(int key) {
+        int mask = tableKeys.length - 1;
+        int t = KeyIndex.mix(key) & mask;
+        int k;
+        while ((k = tableKeys[t]) != FREE) {
+            if (k == key)
+                return tableSlots[t];
+            t = (t + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the key of a slot.
+     * @param slot - a slot in [0, size()).
+     * @return - the key.
+     */
+    int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Returns the number of keys (the next slot number).
+     * @return - the number of keys.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Moves all the keys to a new table.
+     * @param capacity - the new table capacity (a power of two).
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = tableKeys, oldSlots = tableSlots;
+        tableKeys = new int[capacity];
+        tableSlots = new int[capacity];
+        Arrays.fill(tableKeys, FREE);
+        for (int t = 0; t < oldKeys.length; t++) {
+            if (oldKeys[t] == FREE)
+                continue;
+            int u = KeyIndex.mix(oldKeys[t]) & (capacity - 1);
+            while (tableKeys[u] != FREE)
+                u = (u + 1) & (capacity - 1);
+            tableKeys[u] = oldKeys[t];
+            tableSlots[u] = oldSlots[t];
+        }
+    }
+}
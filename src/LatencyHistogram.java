@@ -0,0 +1,124 @@
+package ex1.src;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents a concurrent histogram of latencies (in nanoseconds) with log-linear buckets:
+ * every power of two is split into 8 equal buckets, so a percentile is off by at most 12.5% (values below 8 are
+ * exact), and all positive long values fit into 488 buckets. Recording is lock free and allocation free.
+ * The percentiles are read from the buckets while other threads may keep recording, so they are approximate
+ * snapshots, just like the counters.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 3; // log2 of the buckets per power of two.
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder(), total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Adds one latency.
+     * @param nanos - the latency in nanoseconds (negative values count as 0).
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        count.increment();
+        total.add(nanos);
+        if (nanos > max.get())
+            max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     * @return - count.
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the mean latency.
+     * @return - the mean in nanoseconds, 0 if nothing was recorded.
+     */
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    /**
+     * Returns the largest recorded latency (exact).
+     * @return - the maximum in nanoseconds, 0 if nothing was recorded.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the latency at the given percentile: the upper end of the bucket which holds it (at most max()).
+     * @param p - the percentile, between 0 and 100 (e.g. 99.9).
+     * @return - the latency in nanoseconds, 0 if nothing was recorded.
+     */
+    public long percentile(double p) {
+        if (!(p >= 0 && p <= 100))
+            throw new IllegalArgumentException("percentile must be between 0 and 100: " + p);
+        long[] c = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            n += c[i] = counts.get(i);
+        if (n == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * n)), seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += c[i];
+            if (seen >= rank)
+                return Math.min(highest(i), max());
+        }
+        return max();
+    }
+
+    /**
+     * Removes all the recorded latencies.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        count.reset();
+        total.reset();
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus", count(),
+                mean() / 1e3, percentile(50) / 1e3, percentile(99) / 1e3, percentile(99.9) / 1e3, max() / 1e3);
+    }
+
+    /**
+     * Returns the bucket of a (non negative) value: its highest bit selects the power of two,
+     * the next SUB_BITS bits the bucket within it.
+     */
+    static int bucket(long v) {
+        if (v < SUB)
+            return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v); // At least SUB_BITS.
+        int mantissa = (int) (v >>> (exp - SUB_BITS)) & (SUB - 1);
+        return (exp - SUB_BITS + 1) * SUB + mantissa;
+    }
+
+    /**
+     * Returns the largest value of a bucket (see bucket).
+     */
+    static long highest(int i) {
+        if (i < SUB)
+            return i;
+        int shift = i / SUB - 1; // exp - SUB_BITS.
+        long lowest = (long) (SUB + i % SUB) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
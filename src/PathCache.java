@@ -0,0 +1,200 @@
+package ex1.src;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class represents a bounded LRU cache of shortest path results (distances and paths) of one graph.
+ * The graph is undirected, so a (src, dest) pair and a (dest, src) pair share the same entry: the key is the
+ * packed (min key, max key) pair, and a path stored in one direction is reversed when it is asked in the other.
+ * Every entry belongs to a version of the graph (its mode count). As soon as a lookup or an insertion sees a newer
+ * mode count, the whole cache is cleared, so results of an older graph are never returned.
+ * All the methods are synchronized, so one cache can serve many querying threads.
+ */
+public final class PathCache {
+    private static final int[] NO_PATH = new int[0]; // Marks a pair without a path.
+
+    private final int capacity; // Maximal number of entries.
+    private final LinkedHashMap<Long, Entry> map;
+    private int mc; // The mode count of the graph version the entries belong to.
+    private boolean versioned; // False until the first entry (and after clear()): any version is accepted.
+    private long hits, misses, evictions;
+
+    /**
+     * Creates an empty cache.
+     * @param capacity - the maximal number of cached pairs (positive).
+     */
+    public PathCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("the cache capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.map = new LinkedHashMap<Long, Entry>(16, 0.75f, true) { // Access order: the eldest is the LRU entry.
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, PathCache.Entry> eldest) {
+                if (size() > PathCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached distance between two nodes.
+     * @param mc - the current mode count of the graph.
+     * @param src - source key.
+     * @param dest - destination key.
+     * @return - the distance (-1 if there is no path), or NaN on a miss.
+     */
+    public synchronized double dist(int mc, int src, int dest) {
+        Entry e = lookup(mc, src, dest);
+        if (e == null) {
+            misses++;
+            return Double.NaN;
+        }
+        hits++;
+        return e.dist;
+    }
+
+    /**
+     * Returns the cached path between two nodes.
+     * @param mc - the current mode count of the graph.
+     * @param src - source key.
+     * @param dest - destination key.
+     * @return - the node keys src, ..., dest (an empty array if there is no path), or null on a miss.
+     */
+    public synchronized int[] path(int mc, int src, int dest) {
+        Entry e = lookup(mc, src, dest);
+        if (e == null || e.path == null) { // Only the distance may be known.
+            misses++;
+            return null;
+        }
+        hits++;
+        if (e.path.length == 0 || e.path[0] == src)
+            return e.path.clone();
+        int[] reversed = new int[e.path.length];
+        for (int i = 0; i < reversed.length; i++)
+            reversed[i] = e.path[reversed.length - 1 - i];
+        return reversed;
+    }
+
+    /**
+     * Caches a distance (keeps a path which is already cached for the pair).
+     * @param mc - the mode count of the graph version the distance was computed for.
+     * @param src - source key.
+     * @param dest - destination key.
+     * @param dist - the distance (-1 if there is no path).
+     */
+    public synchronized void putDist(int mc, int src, int dest, double dist) {
+        if (!sync(mc))
+            return;
+        Entry e = map.get(pack(src, dest));
+        if (e == null)
+            map.put(pack(src, dest), new Entry(dist, null));
+    }
+
+    /**
+     * Caches a path together with its distance.
+     * @param mc - the mode count of the graph version the path was computed for.
+     * @param src - source key.
+     * @param dest - destination key.
+     * @param dist - the distance (-1 if there is no path).
+     * @param path - the node keys src, ..., dest (null if there is no path). The array is not copied.
+     */
+    public synchronized void putPath(int mc, int src, int dest, double dist, int[] path) {
+        if (sync(mc))
+            map.put(pack(src, dest), new Entry(dist, path == null ? NO_PATH : path));
+    }
+
+    /**
+     * Returns the number of cache hits.
+     * @return - hits.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of cache misses.
+     * @return - misses.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of entries evicted because the cache was full (clears after graph changes are not counted).
+     * @return - evictions.
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of cached pairs.
+     * @return - the number of entries.
+     */
+    public synchronized int size() {
+        return map.size();
+    }
+
+    /**
+     * Returns the maximal number of cached pairs.
+     * @return - the capacity.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Removes all entries and forgets the graph version, e.g. for another graph (the counters are kept).
+     */
+    public synchronized void clear() {
+        map.clear();
+        versioned = false;
+    }
+
+    /**
+     * Returns the entry of a pair, if it belongs to the given graph version.
+     */
+    private Entry lookup(int mc, int src, int dest) {
+        return sync(mc) ? map.get(pack(src, dest)) : null;
+    }
+
+    /**
+     * Moves the cache to the given graph version (clearing it) if it is newer.
+     * @param mc - a mode count.
+     * @return - false iff mc is of an older version than the cached entries.
+     */
+    private boolean sync(int mc) {
+        if (versioned && mc == this.mc)
+            return true;
+        if (versioned && mc - this.mc < 0) // A result of an older version, computed while the graph was changing.
+            return false;
+        map.clear();
+        this.mc = mc;
+        versioned = true;
+        return true;
+    }
+
+    /**
+     * Packs an unordered pair of keys into a long (the smaller key in the high bits).
+     */
+    private static long pack(int a, int b) {
+        return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+
+    /**
+     * A cached result: the distance and, if known, the path (NO_PATH if there is none).
+     */
+    private static class Entry {
+        private final double dist;
+        private final int[] path;
+
+        Entry(double dist, int[] path) {
+            this.dist = dist;
+            this.path = path;
+        }
+    }
+}
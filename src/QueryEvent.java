@@ -0,0 +1,47 @@
+package ex1.src;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JDK Flight Recorder event of one WGraph_Algo query (shortestPathDist, shortestPath or isConnected).
+ * Its duration is the latency of the query, the other fields are its work (see QueryMetrics).
+ * The events are committed only while a recording has "ex1.GraphQuery" enabled, e.g.
+ * java -XX:StartFlightRecording:filename=rec.jfr ..., and WGraph_Algo creates them only while a recording runs.
+ */
+@Name("ex1.GraphQuery")
+@Label("Graph Query")
+@Category({"ex1", "Graph"})
+@Description("A shortest path or connectivity query of WGraph_Algo")
+final class QueryEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Search Mode")
+    String mode;
+
+    @Label("Source")
+    int source;
+
+    @Label("Destination")
+    int destination;
+
+    @Label("Found")
+    @Description("A path was found (for isConnected: the graph is connected)")
+    boolean found;
+
+    @Label("Settled Nodes")
+    long settledNodes;
+
+    @Label("Relaxed Edges")
+    long relaxedEdges;
+
+    @Label("Heap Pushes")
+    long heapPushes;
+
+    @Label("Stale Pops")
+    long stalePops;
+}
@@ -0,0 +1,136 @@
+package ex1.src;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class collects the metrics of the queries of one WGraph_Algo (see WGraph_Algo.setMetrics(boolean)):
+ * a latency histogram per operation, and the work of the graph searches:
+ * - settled nodes: nodes whose final distance was found (the nodes reached by a BFS).
+ * - relaxed edges: edges scanned from the settled nodes.
+ * - heap pushes: frontier insertions and decrease-keys (BFS queue insertions).
+ * - stale pops: frontier entries of already settled nodes, which are skipped (always 0 for a frontier with
+ *   decrease-key such as IndexedDaryHeap, see frontier_queue).
+ * Queries answered without a search (path cache hits, tracked sources, the component count of a WGraph_DS)
+ * only add their latency. The contraction hierarchy search doesn't count its work.
+ * All the counters may be updated and read by many threads at the same time.
+ */
+public final class QueryMetrics {
+    /**
+     * The measured operations.
+     */
+    public enum Operation {
+        /** shortestPathDist and shortestPath (in every search mode). */
+        SHORTEST_PATH,
+        /** isConnected (a BFS, unless the graph tracks its components). */
+        IS_CONNECTED,
+        /** save(file). */
+        SAVE,
+        /** load(file). */
+        LOAD
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[OPERATIONS.length];
+    private final LongAdder[] settled = adders(), relaxed = adders(), pushes = adders(), stale = adders();
+
+    QueryMetrics() {
+        for (int i = 0; i < latency.length; i++)
+            latency[i] = new LatencyHistogram();
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] a = new LongAdder[OPERATIONS.length];
+        for (int i = 0; i < a.length; i++)
+            a[i] = new LongAdder();
+        return a;
+    }
+
+    /**
+     * Adds one query.
+     * @param op - the operation.
+     * @param nanos - its latency.
+     * @param ctx - the search space of the query (holds its work counters).
+     */
+    void record(Operation op, long nanos, SearchSpace ctx) {
+        int i = op.ordinal();
+        latency[i].record(nanos);
+        if (ctx != null && ctx.settledNodes != 0) {
+            settled[i].add(ctx.settledNodes);
+            relaxed[i].add(ctx.relaxedEdges);
+            pushes[i].add(ctx.pushes);
+            stale[i].add(ctx.stalePops);
+        }
+    }
+
+    /**
+     * Returns the latency histogram of an operation.
+     * @param op - the operation.
+     * @return - its histogram (live, not a copy).
+     */
+    public LatencyHistogram latency(Operation op) {
+        return latency[op.ordinal()];
+    }
+
+    /**
+     * Returns the number of nodes settled by the queries of an operation.
+     * @param op - the operation.
+     * @return - total settled nodes.
+     */
+    public long settledNodes(Operation op) {
+        return settled[op.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of edges relaxed by the queries of an operation.
+     * @param op - the operation.
+     * @return - total relaxed edges.
+     */
+    public long relaxedEdges(Operation op) {
+        return relaxed[op.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of frontier pushes of the queries of an operation.
+     * @param op - the operation.
+     * @return - total pushes.
+     */
+    public long heapPushes(Operation op) {
+        return pushes[op.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of stale frontier pops of the queries of an operation.
+     * @param op - the operation.
+     * @return - total stale pops.
+     */
+    public long stalePops(Operation op) {
+        return stale[op.ordinal()].sum();
+    }
+
+    /**
+     * Clears all the counters and histograms.
+     */
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            latency[i].reset();
+            settled[i].reset();
+            relaxed[i].reset();
+            pushes[i].reset();
+            stale[i].reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Operation op : OPERATIONS) {
+            sb.append(op).append(": ").append(latency(op));
+            if (op == Operation.SHORTEST_PATH || op == Operation.IS_CONNECTED)
+                sb.append(" settled=").append(settledNodes(op)).append(" relaxed=").append(relaxedEdges(op))
+                        .append(" pushes=").append(heapPushes(op)).append(" stale=").append(stalePops(op));
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package ex1.src;
+
+/**
+ * This class represents a node of a read only graph (WGraph_Mapped, WGraph_Packed, WGraph_Snapshot).
+ * Such graphs don't store node objects: nodes are created on demand and compared by key.
+ * The info and tag can't be set.
+ */
+final class ReadOnlyNode implements node_info {
+    private final int key;
+
+    ReadOnlyNode(int key) {
+        this.key = key;
+    }
+
+    @Override
+    public int getKey() {
+        return key;
+    }
+
+    @Override
+    public String getInfo() {
+        return null;
+    }
+
+    @Override
+    public void setInfo(String s) {
+        throw new UnsupportedOperationException("the graph is read only");
+    }
+
+    @Override
+    public double getTag() {
+        return 0;
+    }
+
+    @Override
+    public void setTag(double t) {
+        throw new UnsupportedOperationException("the graph is read only");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ReadOnlyNode && ((ReadOnlyNode) o).key == key;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(key);
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,148 @@
+package ex1.src;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * This class holds the per-query state of a graph search over a CSR snapshot (dense node indices):
+ * tentative distances, parents and the reached/settled marks, all in primitive arrays.
+ * The arrays are reused between queries. Instead of clearing them (O(n) per query) every query gets
+ * a new epoch, and an entry is valid only if its mark belongs to the current epoch.
+ * A search space is owned by a single thread, it is not thread safe.
+ */
+final class SearchSpace {
+    private double[] dist = new double[0]; // Tentative distances.
+    private int[] parent = new int[0]; // Parent (dense index) of every reached node.
+    private int[] mark = new int[0]; // reached == base, settled == base + 1, anything smaller is stale.
+    private int base; // Mark of a reached node in the current epoch.
+    int[] queue = new int[0]; // Scratch int queue for BFS.
+    private frontier_queue frontier; // The dijkstra frontier of this thread.
+    private Supplier<frontier_queue> frontierFactory; // The factory which created the frontier.
+    private SearchSpace backward; // The search space of the backward search (bidirectional queries).
+    int meetForward, meetBackward; // Last node of the forward part and first node of the backward part (-1 if none) of a found path.
+    long settledNodes, relaxedEdges, pushes, stalePops; // Work of the current query (see count and QueryMetrics).
+
+    /**
+     * Starts a new query over n nodes. All nodes become unreached in O(1) (amortized) time.
+     * @param n - the number of nodes of the snapshot.
+     */
+    void begin(int n) {
+        if (mark.length < n) { // Grow (the new arrays are all stale).
+            int capacity = Math.max(n, mark.length + (mark.length >> 1));
+            dist = new double[capacity];
+            parent = new int[capacity];
+            mark = new int[capacity];
+            queue = new int[capacity];
+            base = 0;
+        }
+        if (base >= Integer.MAX_VALUE - 2) { // Epoch overflow, clear the marks once.
+            Arrays.fill(mark, 0);
+            base = 0;
+        }
+        base += 2;
+    }
+
+    /**
+     * Adds the work of a search to the counters of the query (a query may run more than one search).
+     * The searches count in local variables and call this once, when they stop.
+     * @param settled - settled nodes.
+     * @param relaxed - relaxed (scanned) edges.
+     * @param pushed - frontier pushes.
+     * @param stale - stale frontier pops.
+     */
+    void count(long settled, long relaxed, long pushed, long stale) {
+        settledNodes += settled;
+        relaxedEdges += relaxed;
+        pushes += pushed;
+        stalePops += stale;
+    }
+
+    /**
+     * Clears the work counters before a measured query.
+     */
+    void resetCounters() {
+        settledNodes = relaxedEdges = pushes = stalePops = 0;
+    }
+
+    /**
+     * Returns an empty frontier for n nodes, created by the given factory.
+     * The frontier is reused as long as the same factory is requested.
+     * @param factory - the frontier factory.
+     * @param n - the number of nodes of the snapshot.
+     * @return - an empty frontier.
+     */
+    frontier_queue frontier(Supplier<frontier_queue> factory, int n) {
+        if (frontierFactory != factory) {
+            frontier = factory.get();
+            frontierFactory = factory;
+        }
+        frontier.clear(n);
+        return frontier;
+    }
+
+    /**
+     * Returns the search space of the backward search of a bidirectional query (owned by this search space).
+     * @return - the backward search space.
+     */
+    SearchSpace backward() {
+        if (backward == null)
+            backward = new SearchSpace();
+        return backward;
+    }
+
+    /**
+     * Returns the tentative distance of node i.
+     * @param i - dense index.
+     * @return - the distance, or infinity if i was not reached in this query.
+     */
+    double dist(int i) {
+        return mark[i] >= base ? dist[i] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns the parent of node i (valid only if i was reached).
+     * @param i - dense index.
+     * @return - the dense index of the parent.
+     */
+    int parent(int i) {
+        return parent[i];
+    }
+
+    /**
+     * Checks if node i was reached in this query.
+     * @param i - dense index.
+     * @return - true iff i has a tentative distance.
+     */
+    boolean reached(int i) {
+        return mark[i] >= base;
+    }
+
+    /**
+     * Checks if node i was settled (its distance is final) in this query.
+     * @param i - dense index.
+     * @return - true iff i is settled.
+     */
+    boolean settled(int i) {
+        return mark[i] == base + 1;
+    }
+
+    /**
+     * Sets a tentative distance and a parent for node i (marks it as reached).
+     * @param i - dense index.
+     * @param d - the new distance.
+     * @param p - the parent (dense index).
+     */
+    void reach(int i, double d, int p) {
+        dist[i] = d;
+        parent[i] = p;
+        mark[i] = base;
+    }
+
+    /**
+     * Marks node i as settled.
+     * @param i - dense index.
+     */
+    void settle(int i) {
+        mark[i] = base + 1;
+    }
+}
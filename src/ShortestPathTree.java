@@ -0,0 +1,136 @@
+package ex1.src;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class represents a (partial) shortest path tree of one source, which can be kept and queried many times.
+ * It holds the settled distances, the parents and a paused dijkstra frontier. A query for a destination which is
+ * already settled is answered from the tree in O(path length), otherwise the paused search is resumed until the
+ * destination is settled (or the component of the source is exhausted) and paused again.
+ * The tree belongs to a CSR snapshot of the graph and is valid only as long as the mode count of the graph
+ * doesn't change. The methods are synchronized, so one tree can be shared by many threads.
+ */
+public final class ShortestPathTree {
+    private final weighted_graph graph; // The graph (for getNode and the validity check).
+    private final WGraph_CSR csr; // The snapshot the tree is built on.
+    private final int src; // Dense index of the source.
+    private final double[] dist; // Tentative (or final, if settled) distances, infinity if not reached.
+    private final int[] parent; // Parent of every reached node.
+    private final boolean[] settled;
+    private final frontier_queue frontier; // The paused search.
+    private int settledCount;
+
+    /**
+     * Creates a tree whose search has not started yet (only the source is in the frontier).
+     * @param graph - the graph.
+     * @param csr - a snapshot of the graph.
+     * @param src - dense index of the source.
+     * @param frontier - an empty frontier (owned by the tree from now on).
+     */
+    ShortestPathTree(weighted_graph graph, WGraph_CSR csr, int src, frontier_queue frontier) {
+        this.graph = graph;
+        this.frontier = frontier;
+        this.csr = csr;
+        this.src = src;
+        int n = csr.size();
+        dist = new double[n];
+        parent = new int[n];
+        settled = new boolean[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        frontier.clear(n);
+        dist[src] = 0;
+        parent[src] = src;
+        frontier.push(src, 0);
+    }
+
+    /**
+     * Returns the key of the source node.
+     * @return - the source key.
+     */
+    public int getSource() {
+        return csr.keyAt(src);
+    }
+
+    /**
+     * Returns the mode count of the graph version this tree belongs to.
+     * @return - mode count.
+     */
+    public int getMC() {
+        return csr.getMC();
+    }
+
+    /**
+     * Checks if the graph has not changed since the tree was created.
+     * @return - true iff the tree may still be queried.
+     */
+    public boolean isValid() {
+        return graph.getMC() == csr.getMC();
+    }
+
+    /**
+     * Returns the number of nodes settled so far.
+     * @return - the number of settled nodes.
+     */
+    public synchronized int settledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Returns the shortest path distance from the source to dest.
+     * @param dest - destination key.
+     * @return - the distance, or -1 if there is no path (or no such node).
+     * @throws IllegalStateException if the graph has changed since the tree was created.
+     */
+    public synchronized double dist(int dest) {
+        int d = settle(dest);
+        return d < 0 ? -1 : dist[d];
+    }
+
+    /**
+     * Returns the shortest path from the source to dest.
+     * @param dest - destination key.
+     * @return - the nodes src, ..., dest, or null if there is no path (or no such node).
+     * @throws IllegalStateException if the graph has changed since the tree was created.
+     */
+    public synchronized List<node_info> path(int dest) {
+        int d = settle(dest);
+        if (d < 0)
+            return null;
+        LinkedList<node_info> list = new LinkedList<>();
+        for (int i = d; i != src; i = parent[i]) // Walk the parents back to the source.
+            list.addFirst(graph.getNode(csr.keyAt(i)));
+        list.addFirst(graph.getNode(csr.keyAt(src)));
+        return list;
+    }
+
+    /**
+     * Makes sure dest is settled, resuming the paused search if needed.
+     * @param dest - destination key.
+     * @return - the dense index of dest, or -1 if it doesn't exist or is unreachable.
+     */
+    private int settle(int dest) {
+        if (!isValid())
+            throw new IllegalStateException("the graph has changed since the tree of " + getSource() + " was built");
+        int d = csr.indexOf(dest);
+        if (d < 0)
+            return -1;
+        while (!settled[d] && !frontier.isEmpty()) { // Resume dijkstra until dest is settled.
+            int u = frontier.pop();
+            settled[u] = true;
+            settledCount++;
+            double du = dist[u];
+            for (int p = csr.begin(u), end = csr.end(u); p < end; p++) {
+                int v = csr.neighborAt(p);
+                double pathDist = du + csr.weightAt(p);
+                if (!settled[v] && pathDist < dist[v]) { // Relax the edge u-v.
+                    dist[v] = pathDist;
+                    parent[v] = u;
+                    frontier.push(v, pathDist);
+                }
+            }
+        }
+        return settled[d] ? d : -1;
+    }
+}
@@ -0,0 +1,99 @@
+package ex1.src;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a union-find (disjoint sets) structure over node keys, with path compression
+ * (path halving) and union by rank, so every operation runs in amortized almost constant time.
+ * Keys are mapped to internal slots by a KeySlots table, so no boxing is involved.
+ * It supports insertions only: nodes and edges can be added, removals require building a new structure.
+ * It is not thread safe.
+ */
+final class UnionFind {
+    private final KeySlots slots; // Key -> slot.
+    private int[] parent = new int[16]; // Parent slot of every slot (a root is its own parent).
+    private byte[] rank = new byte[16]; // Upper bound on the height of every root's tree.
+    private int components; // Number of disjoint sets.
+
+    /**
+     * Creates a structure which can hold the expected number of keys without resizing its table.
+     * @param expected - expected number of keys.
+     */
+    UnionFind(int expected) {
+        slots = new KeySlots(expected);
+    }
+
+    /**
+     * Adds a key as a new singleton set (does nothing if the key is already known).
+     * @param key - non negative key.
+     */
+    void add(int key) {
+        int size = slots.size();
+        if (slots.add(key) < size) // Already known.
+            return;
+        if (size == parent.length) {
+            parent = Arrays.copyOf(parent, size * 2);
+            rank = Arrays.copyOf(rank, size * 2);
+        }
+        parent[size] = size;
+        rank[size] = 0;
+        components++;
+    }
+
+    /**
+     * Merges the sets of two keys.
+     * @param key1 - first key.
+     * @param key2 - second key.
+     * @return - true iff two different sets were merged.
+     */
+    boolean union(int key1, int key2) {
+        int s1 = slots.slotOf(key1), s2 = slots.slotOf(key2);
+        if (s1 < 0 || s2 < 0)
+            return false;
+        int r1 = find(s1), r2 = find(s2);
+        if (r1 == r2)
+            return false;
+        if (rank[r1] < rank[r2]) { // Hang the lower tree under the higher one.
+            int t = r1;
+            r1 = r2;
+            r2 = t;
+        }
+        parent[r2] = r1;
+        if (rank[r1] == rank[r2])
+            rank[r1]++;
+        components--;
+        return true;
+    }
+
+    /**
+     * Checks if two keys are in the same set.
+     * @param key1 - first key.
+     * @param key2 - second key.
+     * @return - true iff both keys are known and connected.
+     */
+    boolean connected(int key1, int key2) {
+        int s1 = slots.slotOf(key1), s2 = slots.slotOf(key2);
+        return s1 >= 0 && s2 >= 0 && find(s1) == find(s2);
+    }
+
+    /**
+     * Returns the number of disjoint sets.
+     * @return - the number of components.
+     */
+    int components() {
+        return components;
+    }
+
+    /**
+     * Returns the root slot of a slot (path halving: every visited slot is linked to its grandparent).
+     * @param s - a slot.
+     * @return - the root slot.
+     */
+    private int find(int s) {
+        while (parent[s] != s) {
+            parent[s] = parent[parent[s]];
+            s = parent[s];
+        }
+        return s;
+    }
+}
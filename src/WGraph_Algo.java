@@ -1,10 +1,17 @@
 package ex1.src;
 
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
 import java.io.*;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 /**
  * This class represents an Undirected (positive) Weighted Graph Theory algorithms including:
@@ -23,6 +30,64 @@ public class WGraph_Algo implements weighted_graph_algorithms{
      */
     private weighted_graph g;
 
+    /**
+     * Per-thread search state of the queries (see SearchSpace).
+     * The queries never store anything in the graph, so any number of threads can run them at the same time.
+     */
+    private static final ThreadLocal<SearchSpace> CONTEXT = ThreadLocal.withInitial(SearchSpace::new);
+
+    /**
+     * The default dijkstra frontier: an indexed 4-ary heap with decrease-key.
+     */
+    private static final Supplier<frontier_queue> DEFAULT_FRONTIER = IndexedDaryHeap::new;
+
+    private volatile CachedSnapshot cached; // Snapshot of a graph which is not a WGraph_DS.
+    private volatile Supplier<frontier_queue> frontierFactory = DEFAULT_FRONTIER; // Creates the dijkstra frontiers.
+    private volatile SearchMode mode = SearchMode.DIJKSTRA; // The point-to-point search algorithm.
+    private volatile WGraph_Landmarks landmarks; // ALT landmark tables (null until needed).
+    private int landmarkCount = DEFAULT_LANDMARKS; // The number of landmarks to select.
+    private volatile WGraph_CH hierarchy; // Contraction hierarchy index (null until built or loaded).
+    private volatile PathCache pathCache; // Shortest path result cache (null if disabled).
+    private volatile QueryMetrics metrics; // Query counters and latencies (null if disabled).
+    private final ConcurrentHashMap<Integer, WGraph_DynamicSSSP> tracked = new ConcurrentHashMap<>(); // Hot sources.
+
+    /**
+     * The default number of ALT landmarks.
+     */
+    public static final int DEFAULT_LANDMARKS = 8;
+
+    /**
+     * True while a flight recording is running (kept current by a RecordingListener).
+     * The queries create their flight recorder events only then, so on a runtime without the jdk.jfr module
+     * (e.g. a jlink image without it) the event classes are never loaded and this flag stays false.
+     */
+    private static volatile boolean recording;
+
+    static {
+        try {
+            RecordingListener.register(); // Every jdk.jfr type is referenced only from there.
+        } catch(NoClassDefFoundError e) { // No jdk.jfr module, the queries are never recorded.
+        }
+    }
+
+    /**
+     * The point-to-point search algorithms used by shortestPathDist and shortestPath.
+     * All modes return the same distances.
+     */
+    public enum SearchMode {
+        /** Plain dijkstra from src until dest is settled. */
+        DIJKSTRA,
+        /** Dijkstra from both src and dest (forward and backward frontiers) until the frontiers meet. */
+        BIDIRECTIONAL,
+        /** A* with landmark (triangle inequality) lower bounds, see preprocessLandmarks(int). */
+        ALT,
+        /**
+         * Upward bidirectional search in a contraction hierarchy, see buildContractionHierarchy().
+         * Falls back to DIJKSTRA while there is no index which matches the current graph.
+         */
+        CH
+    }
+
     /**
      * Default constructor
      */
@@ -37,6 +102,14 @@ public class WGraph_Algo implements weighted_graph_algorithms{
     @Override
     public void init(weighted_graph g) {
         this.g = g;
+        this.landmarks = null; // The landmarks (and the hierarchy) belong to the previous graph.
+        this.hierarchy = null;
+        PathCache cache = pathCache;
+        if(cache != null) // The cached results belong to the previous graph.
+            cache.clear();
+        for(WGraph_DynamicSSSP t : tracked.values()) // So do the tracked sources.
+            t.close();
+        tracked.clear();
     }
 
     /**
@@ -54,151 +127,866 @@ public class WGraph_Algo implements weighted_graph_algorithms{
      */
     @Override
     public weighted_graph copy() {
-        return new WGraph_DS(g); // Using internal copy constructor of the graph.
+        return copyOf(g); // Using internal copy constructor of the graph.
+    }
+
+    /**
+     * Performs a deep copy of the given graph, keeping its implementation
+     * (a WGraph_Compact or WGraph_Concurrent graph is copied into the same class, any other graph into a WGraph_DS).
+     * @param graph - the graph to copy.
+     * @return - a new copy of the graph.
+     */
+    private static weighted_graph copyOf(weighted_graph graph) {
+        if(graph instanceof WGraph_Compact)
+            return new WGraph_Compact(graph);
+        if(graph instanceof WGraph_Concurrent)
+            return new WGraph_Concurrent(graph);
+        return new WGraph_DS(graph);
+    }
+
+    /**
+     * Sets the priority queue implementation used as the frontier of dijkstra.
+     * The factory is called once per querying thread (the frontiers are reused between queries).
+     * The default is a 4-ary IndexedDaryHeap.
+     * @param factory - creates empty frontier queues.
+     */
+    public void setFrontier(Supplier<frontier_queue> factory) {
+        if(factory == null)
+            throw new IllegalArgumentException("frontier factory must not be null");
+        this.frontierFactory = factory;
+    }
+
+    /**
+     * Sets the algorithm used by shortestPathDist and shortestPath.
+     * @param mode - the search mode.
+     */
+    public void setSearchMode(SearchMode mode) {
+        if(mode == null)
+            throw new IllegalArgumentException("search mode must not be null");
+        this.mode = mode;
+    }
+
+    /**
+     * Returns the algorithm used by shortestPathDist and shortestPath.
+     * @return - the search mode.
+     */
+    public SearchMode getSearchMode() {
+        return mode;
+    }
+
+    /**
+     * Enables (or disables) the LRU cache of shortestPathDist and shortestPath results.
+     * The cache is cleared automatically whenever the graph changes (by its mode count), and (src, dest)
+     * and (dest, src) share an entry.
+     * @param capacity - the maximal number of cached pairs, 0 disables the cache.
+     */
+    public void setPathCache(int capacity) {
+        if(capacity < 0)
+            throw new IllegalArgumentException("the cache capacity must not be negative: " + capacity);
+        this.pathCache = capacity == 0 ? null : new PathCache(capacity);
+    }
+
+    /**
+     * Returns the shortest path result cache, with its hit/miss/eviction counters.
+     * @return - the cache, or null if it is disabled.
+     */
+    public PathCache getPathCache() {
+        return pathCache;
+    }
+
+    /**
+     * Enables (or disables) the query metrics: the latency histograms of shortestPathDist/shortestPath,
+     * isConnected, save and load, and the work of their searches (see QueryMetrics).
+     * Independently of the metrics, every query emits a JDK Flight Recorder event (QueryEvent, FileEvent) while a
+     * recording has it enabled. While the metrics are off and no recording is running, a query only reads two
+     * fields: it doesn't read the clock or create an event.
+     * @param enabled - true starts new (empty) metrics, false drops them.
+     */
+    public void setMetrics(boolean enabled) {
+        this.metrics = enabled ? new QueryMetrics() : null;
+    }
+
+    /**
+     * Returns the query metrics.
+     * @return - the metrics, or null if they are disabled.
+     */
+    public QueryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Keeps the shortest path tree of a hot source up to date while the graph changes (see WGraph_DynamicSSSP).
+     * From then on shortestPathDist and shortestPath answer queries from or to src directly from the tree.
+     * @param src - the source node key.
+     * @return - the dynamic tree of src.
+     * @throws IllegalArgumentException if the graph is not a WGraph_DS or there is no such node.
+     */
+    public WGraph_DynamicSSSP trackSource(int src) {
+        if(!(g instanceof WGraph_DS))
+            throw new IllegalArgumentException("only a WGraph_DS reports its changes");
+        return tracked.computeIfAbsent(src, key -> new WGraph_DynamicSSSP((WGraph_DS) g, key));
+    }
+
+    /**
+     * Stops keeping the shortest path tree of src.
+     * @param src - the source node key.
+     */
+    public void untrackSource(int src) {
+        WGraph_DynamicSSSP t = tracked.remove(src);
+        if(t != null)
+            t.close();
+    }
+
+    /**
+     * Returns the dynamic tree of src or dest, if one of them is tracked.
+     */
+    private WGraph_DynamicSSSP trackedTree(int src, int dest) {
+        if(tracked.isEmpty())
+            return null;
+        WGraph_DynamicSSSP t = tracked.get(src);
+        return t != null ? t : tracked.get(dest);
+    }
+
+    /**
+     * Selects k landmarks and computes their distance tables for the ALT search mode.
+     * The tables are refreshed automatically (with the same k) by the first ALT query after the graph has changed.
+     * Without calling this method, the first ALT query selects DEFAULT_LANDMARKS landmarks.
+     * @param k - the number of landmarks (at least 1).
+     * @throws IllegalArgumentException - if k < 1 or the tables are too large (see WGraph_Landmarks), the previous
+     * tables and k are kept.
+     */
+    public synchronized void preprocessLandmarks(int k) {
+        if(k < 1)
+            throw new IllegalArgumentException("at least one landmark is needed: " + k);
+        landmarks = new WGraph_Landmarks(snapshot(), k);
+        landmarkCount = k;
+    }
+
+    /**
+     * Returns the landmark tables for the given snapshot, (re)building them if they are missing or stale.
+     * @param csr - the current snapshot.
+     * @return - landmark tables which match the snapshot.
+     */
+    private WGraph_Landmarks landmarks(WGraph_CSR csr) {
+        WGraph_Landmarks lm = landmarks;
+        if(lm == null || lm.getMC() != csr.getMC()) {
+            synchronized (this) { // Only one thread rebuilds, the others wait for its tables.
+                lm = landmarks;
+                if(lm == null || lm.getMC() != csr.getMC()) {
+                    lm = new WGraph_Landmarks(csr, landmarkCount);
+                    landmarks = lm;
+                }
+            }
+        }
+        return lm;
+    }
+
+    /**
+     * Builds a contraction hierarchy index of the current graph for the CH search mode.
+     * Building is expensive (it is meant for mostly static graphs), so the index is not rebuilt automatically:
+     * after the graph changes, CH queries fall back to plain dijkstra until this method is called again.
+     */
+    public synchronized void buildContractionHierarchy() {
+        hierarchy = WGraph_CH.build(snapshot());
+    }
+
+    /**
+     * Saves the contraction hierarchy index to a file, so it can be loaded together with the saved graph.
+     * @param file - the file name (may include a relative path).
+     * @return - true iff there is an up to date index and it was saved.
+     */
+    public boolean saveContractionHierarchy(String file) {
+        WGraph_CH h = hierarchy(snapshot());
+        return h != null && h.save(file);
+    }
+
+    /**
+     * Loads a contraction hierarchy index saved by saveContractionHierarchy(String).
+     * The index is accepted only if it was built for a graph with exactly the same nodes, edges and weights.
+     * @param file - file name.
+     * @return - true iff the index was loaded.
+     */
+    public boolean loadContractionHierarchy(String file) {
+        WGraph_CH h = WGraph_CH.load(file, snapshot());
+        if(h == null)
+            return false;
+        hierarchy = h;
+        return true;
+    }
+
+    /**
+     * Returns the contraction hierarchy if it is up to date with the given snapshot.
+     * @param csr - the current snapshot.
+     * @return - the index, or null if there is none or the graph has changed since it was built.
+     */
+    private WGraph_CH hierarchy(WGraph_CSR csr) {
+        WGraph_CH h = hierarchy;
+        return h != null && h.getMC() == csr.getMC() && h.size() == csr.size() ? h : null;
+    }
+
+    /**
+     * Returns a CSR snapshot of the current state of the graph.
+     * A WGraph_DS caches its own snapshot, WGraph_Mapped and WGraph_Packed serve theirs from their own storage,
+     * for any other graph the snapshot is cached here.
+     * In both cases it is rebuilt only if the mode count of the graph has changed.
+     * @return - a CSR snapshot of the graph.
+     */
+    private WGraph_CSR snapshot() {
+        weighted_graph graph = g;
+        WGraph_CSR own = WGraph_CSR.ownSnapshot(graph); // Mapped and packed graphs are never copied.
+        if(own != null)
+            return own;
+        CachedSnapshot c = cached;
+        if(c == null || c.graph != graph || c.csr.getMC() != graph.getMC()) { // No snapshot yet or the graph has changed.
+            c = new CachedSnapshot(graph, WGraph_CSR.of(graph));
+            cached = c; // Published together with its graph, so a snapshot is never used for another graph.
+        }
+        return c.csr;
     }
 
     /**
      * Checks if this graph is connected.
+     * A WGraph_DS answers from its own component count (O(1) while only nodes and edges are added),
+     * any other graph is traversed with BFS.
      * @return true/false depending on if it's connected or not.
      */
     @Override
     public boolean isConnected() {
-        if(g.getV().isEmpty()) // If it's an empty graph return true.
+        QueryMetrics m = metrics;
+        QueryEvent event = recording ? new QueryEvent() : null; // Created only while a flight recording is running.
+        if(m == null && event == null) // Not measured.
+            return connected();
+        long start = begin(event);
+        SearchSpace ctx = CONTEXT.get();
+        ctx.resetCounters();
+        boolean connected = connected();
+        measured(m, event, QueryMetrics.Operation.IS_CONNECTED, start, -1, -1, connected, ctx);
+        return connected;
+    }
+
+    /**
+     * The unmeasured isConnected().
+     */
+    private boolean connected() {
+        weighted_graph graph = g;
+        if(graph instanceof WGraph_DS) // The graph tracks its components itself.
+            return ((WGraph_DS) graph).componentCount() <= 1;
+        WGraph_CSR csr = snapshot();
+        if(csr.size() == 0) // If it's an empty graph return true.
             return true;
-        node_info startKey = g.getV().iterator().next(); // Get the first key.
-        BFS(startKey); // Apply BFS traversal on startKey node.
-        for(node_info n : g.getV()) { // For each vertex
-            if (n.getInfo().equals("WHITE")) // If vertex color is WHITE it means that this vertex is unreachable (not connected).
-                return false;
-        }
-        return true;
+        return BFS(csr, 0, CONTEXT.get()) == csr.size(); // Connected iff every node was reached from the first one.
+    }
+
+    /**
+     * Labels the connected components of the graph (in parallel, see WGraph_Components).
+     * The node tags and infos are not used.
+     * @return - the component id of every node, the component sizes and the largest component.
+     */
+    public WGraph_Components components() {
+        return new WGraph_Components(snapshot());
     }
 
     /**
      * Calculates the shortest path from src node to dest node.
+     * This method doesn't change the graph (or its nodes) and can be called by many threads at the same time.
      * @param src - start node
      * @param dest - end (target) node
-     * @return
+     * @return - the shortest path distance, or -1 if there is no such path.
      */
     @Override
     public double shortestPathDist(int src, int dest) {
-        node_info n1 = g.getNode(src), n2 = g.getNode(dest);
-        if(n1 != null && n2 != null) { // If both src and dest exist.
-            if(n1 == n2) // If it's the same node return zero distance.
+        QueryMetrics m = metrics;
+        QueryEvent event = recording ? new QueryEvent() : null; // Created only while a flight recording is running.
+        if(m == null && event == null) // Not measured.
+            return dist(src, dest);
+        long start = begin(event);
+        SearchSpace ctx = CONTEXT.get();
+        ctx.resetCounters();
+        double dist = dist(src, dest);
+        measured(m, event, QueryMetrics.Operation.SHORTEST_PATH, start, src, dest, dist >= 0, ctx);
+        return dist;
+    }
+
+    /**
+     * The unmeasured shortestPathDist(int, int).
+     */
+    private double dist(int src, int dest) {
+        WGraph_DynamicSSSP t = trackedTree(src, dest);
+        if(t != null) { // Answered from the tree, which is always up to date, so no snapshot is built.
+            if(g.getNode(src) == null || g.getNode(dest) == null)
+                return -1;
+            if(src == dest)
                 return 0;
-            dijkstra(n1, n2); // Perform dijkstra algorithm.
-            return n2.getTag(); // After dijkstra the shortest path weight will be stored in the destination node.
-        }else {
-            return -1; // If one or both of the nodes are null, it means there is not path between these nodes.
+            return t.dist(t.getSource() == src ? dest : src); // The graph is undirected, either end has the answer.
+        }
+        WGraph_CSR csr = snapshot();
+        int s = csr.indexOf(src), d = csr.indexOf(dest);
+        if(s < 0 || d < 0) // If one or both of the nodes are missing, there is no path between these nodes.
+            return -1;
+        if(s == d) // If it's the same node return zero distance.
+            return 0;
+        PathCache cache = pathCache;
+        if(cache != null) {
+            double cached = cache.dist(csr.getMC(), src, dest);
+            if(!Double.isNaN(cached))
+                return cached;
         }
+        double dist = search(csr, s, d, CONTEXT.get());
+        if(cache != null)
+            cache.putDist(csr.getMC(), src, dest, dist);
+        return dist;
+    }
+
+    /**
+     * Computes the shortest path distances from every source to every target (a distance table).
+     * One dijkstra runs per source and stops as soon as all the targets are settled, the sources run in parallel
+     * (on the common fork-join pool, every worker thread uses its own search space).
+     * The table is computed with dijkstra in every search mode.
+     * @param sources - source node keys.
+     * @param targets - target node keys.
+     * @return - a row major table: the distance from sources[i] to targets[j] is at [i * targets.length + j],
+     * -1 if there is no path (or one of the nodes is missing).
+     */
+    public double[] distanceMatrix(int[] sources, int[] targets) {
+        if(sources == null || targets == null)
+            throw new IllegalArgumentException("sources and targets must not be null");
+        WGraph_CSR csr = snapshot();
+        int cols = targets.length;
+        double[] table = new double[Math.multiplyExact(sources.length, cols)];
+        int[] t = new int[cols]; // Dense indices of the targets (-1 if missing).
+        boolean[] isTarget = new boolean[csr.size()];
+        int distinct = 0; // The number of different existing targets (a search stops after settling all of them).
+        for(int j = 0; j < cols; j++) {
+            t[j] = csr.indexOf(targets[j]);
+            if(t[j] >= 0 && !isTarget[t[j]]) {
+                isTarget[t[j]] = true;
+                distinct++;
+            }
+        }
+        final int count = distinct;
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            int s = csr.indexOf(sources[i]);
+            int row = i * cols;
+            if(s < 0) { // A missing source has no paths at all.
+                Arrays.fill(table, row, row + cols, -1);
+                return;
+            }
+            SearchSpace ctx = CONTEXT.get();
+            dijkstra(csr, s, isTarget, count, ctx);
+            for(int j = 0; j < cols; j++) {
+                double d = t[j] < 0 ? Double.POSITIVE_INFINITY : ctx.dist(t[j]);
+                table[row + j] = d == Double.POSITIVE_INFINITY ? -1 : d;
+            }
+        });
+        return table;
+    }
+
+    /**
+     * Computes the shortest path distances from src to all the nodes of the graph, using all cores
+     * (parallel delta-stepping, see WGraph_DeltaStepping).
+     * The distances are ordered like the keys returned by nodeKeys() (ascending key order).
+     * @param src - the source node key.
+     * @return - the distances (-1 for unreachable nodes), or null if there is no such node.
+     */
+    public double[] distancesFrom(int src) {
+        WGraph_CSR csr = snapshot();
+        int s = csr.indexOf(src);
+        if(s < 0)
+            return null;
+        double[] dist = WGraph_DeltaStepping.distances(csr, s);
+        for(int v = 0; v < dist.length; v++)
+            if(dist[v] == Double.POSITIVE_INFINITY)
+                dist[v] = -1;
+        return dist;
+    }
+
+    /**
+     * Returns the node keys in ascending order, which is the order of the arrays returned by distancesFrom(int).
+     * @return - a new array of all node keys.
+     */
+    public int[] nodeKeys() {
+        WGraph_CSR csr = snapshot();
+        int[] keys = new int[csr.size()];
+        for(int i = 0; i < keys.length; i++)
+            keys[i] = csr.keyAt(i);
+        return keys;
+    }
+
+    /**
+     * Creates a reusable shortest path tree of src (see ShortestPathTree).
+     * Many destinations of the same source can be queried from the tree, every query continues the paused search
+     * of the previous ones instead of starting over. The tree is valid until the graph changes.
+     * @param src - the source node key.
+     * @return - a new tree, or null if there is no such node.
+     */
+    public ShortestPathTree shortestPathTree(int src) {
+        WGraph_CSR csr = snapshot();
+        int s = csr.indexOf(src);
+        if(s < 0)
+            return null;
+        return new ShortestPathTree(g, csr, s, frontierFactory.get());
     }
 
     /**
      * returns the the shortest path between src to dest - as an ordered List of nodes:
      * src--> n1-->n2-->...dest
+     * This method doesn't change the graph (or its nodes) and can be called by many threads at the same time.
      * @param src - start node
      * @param dest - end (target) node
-     * @return - a List representation of the shortest path from src node to dest node.
+     * @return - a List representation of the shortest path from src node to dest node, or null if there is no such path.
      */
     @Override
     public List<node_info> shortestPath(int src, int dest) {
-        node_info n1 = g.getNode(src), n2 = g.getNode(dest);
+        QueryMetrics m = metrics;
+        QueryEvent event = recording ? new QueryEvent() : null; // Created only while a flight recording is running.
+        if(m == null && event == null) // Not measured.
+            return path(src, dest);
+        long start = begin(event);
+        SearchSpace ctx = CONTEXT.get();
+        ctx.resetCounters();
+        List<node_info> path = path(src, dest);
+        measured(m, event, QueryMetrics.Operation.SHORTEST_PATH, start, src, dest, path != null, ctx);
+        return path;
+    }
+
+    /**
+     * The unmeasured shortestPath(int, int).
+     */
+    private List<node_info> path(int src, int dest) {
         LinkedList<node_info> list = new LinkedList<>(); // Empty list which will contain the shortest path.
-        if(n1 != null && n2 != null) { // If both src and dest exist.
-            if (n1 == n2) { // If it's the same node then it will be the only node in the returned list.
-                list.add(n1); // add src nodes to the list.
+        WGraph_DynamicSSSP t = trackedTree(src, dest);
+        if(t != null) { // Answered from the tree, without a snapshot (see dist).
+            if(g.getNode(src) == null || g.getNode(dest) == null)
+                return null;
+            if(src == dest) {
+                list.add(g.getNode(src));
                 return list;
             }
-            HashMap<Integer, Integer> parentMap = dijkstra(g.getNode(src), g.getNode(dest)); // Perform dijkstra.
-            node_info parent = n2;
-            while (parent.getKey() != src) { // get all parents list from dest to src.
-                list.addFirst(parent); // Add this nodes in reverse order to the list.
-                parent = g.getNode(parentMap.get(parent.getKey())); // Update the next parent.
-            }
-            list.addFirst(g.getNode(src)); // Finally add the src node to the beginning of list.
-            return list; // Return the list containing the path.
-        }else {
+            if(t.getSource() == src)
+                return t.path(dest);
+            List<node_info> p = t.path(src); // dest ... src, reversed.
+            if(p == null)
+                return null;
+            for(node_info n : p)
+                list.addFirst(n);
+            return list;
+        }
+        WGraph_CSR csr = snapshot();
+        int s = csr.indexOf(src), d = csr.indexOf(dest);
+        if(s < 0 || d < 0) // If one or both of the nodes are missing, there is no path.
             return null;
+        if(s == d) { // If it's the same node then it will be the only node in the returned list.
+            list.add(g.getNode(src));
+            return list;
+        }
+        PathCache cache = pathCache;
+        if(cache != null) {
+            int[] cached = cache.path(csr.getMC(), src, dest);
+            if(cached != null) {
+                if(cached.length == 0) // A cached "no path".
+                    return null;
+                for(int key : cached)
+                    list.add(g.getNode(key));
+                return list;
+            }
+        }
+        SearchSpace ctx = CONTEXT.get();
+        WGraph_CH h = mode == SearchMode.CH ? hierarchy(csr) : null;
+        double dist;
+        if(h != null) { // The hierarchy unpacks the path itself.
+            dist = h.query(s, d, ctx, frontierFactory);
+            if(dist >= 0)
+                for(int i : h.path(s, d, ctx))
+                    list.add(g.getNode(csr.keyAt(i)));
+        } else if((dist = search(csr, s, d, ctx)) >= 0) {
+            for(int i = ctx.meetForward; i != s; i = ctx.parent(i)) // Walk the forward parents back to src.
+                list.addFirst(g.getNode(csr.keyAt(i)));
+            list.addFirst(g.getNode(src)); // Add the src node to the beginning of list.
+            if(ctx.meetBackward >= 0) { // Walk the backward parents (of a bidirectional search) forward to dest.
+                SearchSpace b = ctx.backward();
+                for(int i = ctx.meetBackward; i != d; i = b.parent(i))
+                    list.addLast(g.getNode(csr.keyAt(i)));
+                list.addLast(g.getNode(dest));
+            }
         }
+        if(cache != null) {
+            int[] keys = null;
+            if(dist >= 0) {
+                keys = new int[list.size()];
+                int k = 0;
+                for(node_info n : list)
+                    keys[k++] = n.getKey();
+            }
+            cache.putPath(csr.getMC(), src, dest, dist, keys);
+        }
+        return dist < 0 ? null : list; // No path.
     }
 
     /**
-     * Dijkstra shortest path algorithm implementation using minimum priority queue data structure.
+     * Starts measuring a query.
+     * @param event - its flight recorder event, or null.
+     * @return - System.nanoTime() at the start.
+     */
+    private static long begin(QueryEvent event) {
+        if(event != null)
+            event.begin();
+        return System.nanoTime();
+    }
+
+    /**
+     * Starts measuring a save or load (see begin(QueryEvent)).
+     * Not a shared begin(Event), which would make the verifier load the jdk.jfr classes with WGraph_Algo.
+     * @param event - its flight recorder event, or null.
+     * @return - System.nanoTime() at the start.
+     */
+    private static long begin(FileEvent event) {
+        if(event != null)
+            event.begin();
+        return System.nanoTime();
+    }
+
+    /**
+     * Adds a finished query to the metrics (if enabled) and commits its flight recorder event (if recorded).
+     * @param m - the metrics, or null.
+     * @param event - the event, begun when the query started (null if no recording is running).
+     * @param op - the operation.
+     * @param start - System.nanoTime() when the query started.
+     * @param src - the source key (-1 for isConnected).
+     * @param dest - the destination key (-1 for isConnected).
+     * @param found - the query's boolean result (a path was found, or the graph is connected).
+     * @param ctx - the search space of the query (holds its work counters).
+     */
+    private void measured(QueryMetrics m, QueryEvent event, QueryMetrics.Operation op, long start, int src, int dest,
+                          boolean found, SearchSpace ctx) {
+        if(m != null)
+            m.record(op, System.nanoTime() - start, ctx);
+        if(event != null && event.shouldCommit()) {
+            event.operation = op.name();
+            event.mode = mode.name();
+            event.source = src;
+            event.destination = dest;
+            event.found = found;
+            event.settledNodes = ctx.settledNodes;
+            event.relaxedEdges = ctx.relaxedEdges;
+            event.heapPushes = ctx.pushes;
+            event.stalePops = ctx.stalePops;
+            event.commit();
+        }
+    }
+
+    /**
+     * Runs the point-to-point search of the current search mode.
+     * Afterwards ctx.meetForward and ctx.meetBackward describe the found path (see shortestPath).
+     * @param csr - the CSR snapshot.
+     * @param src - dense index of the source node.
+     * @param dest - dense index of the destination node (different from src).
+     * @param ctx - the search space of the calling thread.
+     * @return - the shortest path distance from src to dest, or -1 if dest is unreachable.
+     */
+    private double search(WGraph_CSR csr, int src, int dest, SearchSpace ctx){
+        SearchMode m = mode;
+        if(m == SearchMode.BIDIRECTIONAL)
+            return bidirectionalDijkstra(csr, src, dest, ctx);
+        ctx.meetForward = dest;
+        ctx.meetBackward = -1;
+        if(m == SearchMode.ALT)
+            return astar(csr, src, dest, landmarks(csr), ctx);
+        WGraph_CH h = m == SearchMode.CH ? hierarchy(csr) : null;
+        if(h != null)
+            return h.query(src, dest, ctx, frontierFactory);
+        return dijkstra(csr, src, dest, ctx);
+    }
+
+    /**
+     * Dijkstra shortest path algorithm on a CSR snapshot.
+     * Distances, parents and visit state are kept in the (per-thread) search space,
+     * so the node_info objects of the graph are never touched.
      * This algorithm works on non negative undirected weighted graphs.
-     * This algorithm implemented according to the pseudo code int the following video.
-     * https://www.coursera.org/lecture/advanced-data-structures/core-dijkstras-algorithm-2ctyF
-     * @param src - source node.
-     * @param dest - destination node.
-     * @return A HashMap which represents parents hierarchy.
-     */
-    private HashMap<Integer,Integer> dijkstra(node_info src, node_info dest){
-        HashMap<Integer,Integer> parentMap = new HashMap<>(); // Parents hierarchy.
-        PriorityQueue<node_info> pq = new PriorityQueue<>(16,new WGraph_DS.CompareByWeight()); // Create a minimum priority queue with comparator (by minimum weight).
-        for(node_info n : g.getV()){
-            n.setTag(Double.MAX_VALUE); // Initialise all weight to infinity.
-            n.setInfo("WHITE"); // Mark all as not visited.
-        }
-        src.setTag(0.0); // Set src node weight to 0 (the weight of a node to himself is 0).
-        pq.add(src); // Add src node to the priority queue.
-        while (!pq.isEmpty()){ // While the is nodes to visit.
-            node_info current = pq.poll(); // remove the node with the minimal weight. O(Log(n)) operation.
-            if(current.getInfo().equals("WHITE")) // If the node is not visited.
-                current.setInfo("GRAY"); // Mark the node as visited.
-            if(current.getKey() == dest.getKey()) { // If with found the destination node. no need to continue searching.
-                return parentMap; // At this point we have all the information we need. Complete function by return operation.
-            }
-            for(node_info neighbor : g.getV(current.getKey())){ // For all neighbors of current node.
-                if(neighbor.getInfo().equals("WHITE")) { // If neighbor is not already. visited
-                    double pathDist = current.getTag() + g.getEdge(current.getKey(), neighbor.getKey()); // Calculate the distance between current node to it's neighbor.
-                    if (Double.compare(pathDist, neighbor.getTag()) == -1) { // If the distance is less than the current neighbor distance, then need to update it.
-                        neighbor.setTag(pathDist); // Update neighbors distance to the new smallest distance.
-                        parentMap.put(neighbor.getKey(),current.getKey()); // Set current node as parent of this neighbor.
-                        pq.add(neighbor); // Add the neighbor to the priority queue for further checks.
-                    }
+     * @param csr - the CSR snapshot.
+     * @param src - dense index of the source node.
+     * @param dest - dense index of the destination node.
+     * @param ctx - the search space of the calling thread (holds the parents afterwards).
+     * @return - the shortest path distance from src to dest, or -1 if dest is unreachable.
+     */
+    private double dijkstra(WGraph_CSR csr, int src, int dest, SearchSpace ctx){
+        ctx.begin(csr.size());
+        ctx.reach(src, 0.0, src);
+        frontier_queue pq = ctx.frontier(frontierFactory, csr.size()); // Minimum priority queue with decrease-key.
+        pq.push(src, 0.0);
+        long settled = 0, relaxed = 0, pushes = 1, stale = 0; // Work counters (see QueryMetrics).
+        while (!pq.isEmpty()){
+            int u = pq.pop(); // Remove the node with the minimal distance.
+            if(ctx.settled(u)) { // An old entry (a frontier without decrease-key).
+                stale++;
+                continue;
+            }
+            ctx.settle(u);
+            settled++;
+            if(u == dest) { // The destination is settled, no need to continue searching.
+                ctx.count(settled, relaxed, pushes, stale);
+                return ctx.dist(u);
+            }
+            double du = ctx.dist(u);
+            int p = csr.begin(u), end = csr.end(u);
+            relaxed += end - p;
+            for(; p < end; p++){ // For all neighbors of u.
+                int v = csr.neighborAt(p);
+                double pathDist = du + csr.weightAt(p);
+                if(!ctx.settled(v) && pathDist < ctx.dist(v)){ // Relax the edge u-v.
+                    ctx.reach(v, pathDist, u);
+                    pq.push(v, pathDist); // Insert or decrease the key of v.
+                    pushes++;
+                }
+            }
+        }
+        ctx.count(settled, relaxed, pushes, stale);
+        return -1; // If we get here, it means there is no such path.
+    }
+
+    /**
+     * One-to-many dijkstra on a CSR snapshot: runs until all the targets are settled (or src's component is exhausted).
+     * @param csr - the CSR snapshot.
+     * @param src - dense index of the source node.
+     * @param isTarget - isTarget[v] iff v is a target.
+     * @param targets - the number of targets.
+     * @param ctx - the search space of the calling thread (holds the distances afterwards).
+     */
+    private void dijkstra(WGraph_CSR csr, int src, boolean[] isTarget, int targets, SearchSpace ctx){
+        ctx.begin(csr.size());
+        ctx.reach(src, 0.0, src);
+        frontier_queue pq = ctx.frontier(frontierFactory, csr.size());
+        pq.push(src, 0.0);
+        while (!pq.isEmpty() && targets > 0){
+            int u = pq.pop();
+            if(ctx.settled(u)) // An old entry (a frontier without decrease-key).
+                continue;
+            ctx.settle(u);
+            if(isTarget[u]) // One more target distance is final.
+                targets--;
+            double du = ctx.dist(u);
+            for(int p = csr.begin(u), end = csr.end(u); p < end; p++){ // For all neighbors of u.
+                int v = csr.neighborAt(p);
+                double pathDist = du + csr.weightAt(p);
+                if(!ctx.settled(v) && pathDist < ctx.dist(v)){ // Relax the edge u-v.
+                    ctx.reach(v, pathDist, u);
+                    pq.push(v, pathDist);
                 }
             }
         }
-        return null; // If we get here, it means there is no such path.
     }
 
     /**
-     * BFS algorithm helper function.
-     * The algorithm is built according to OOP lecture 2 pseudo code (Elizabet's class).
+     * A* search with landmark lower bounds (ALT) on a CSR snapshot.
+     * It works like dijkstra, but the frontier is ordered by dist(v) + lowerBound(v, dest), so the search is
+     * directed towards dest. The landmark bounds are consistent, so every node is still settled at most once.
+     * Nodes which the landmarks prove to be in another component than dest are never pushed.
+     * @param csr - the CSR snapshot.
+     * @param src - dense index of the source node.
+     * @param dest - dense index of the destination node.
+     * @param lm - landmark tables of the snapshot.
+     * @param ctx - the search space of the calling thread (holds the parents afterwards).
+     * @return - the shortest path distance from src to dest, or -1 if dest is unreachable.
+     */
+    private double astar(WGraph_CSR csr, int src, int dest, WGraph_Landmarks lm, SearchSpace ctx){
+        double h = lm.lowerBound(src, dest);
+        if(h == Double.POSITIVE_INFINITY) // src and dest are in different components.
+            return -1;
+        ctx.begin(csr.size());
+        ctx.reach(src, 0.0, src);
+        frontier_queue pq = ctx.frontier(frontierFactory, csr.size());
+        pq.push(src, h);
+        long settled = 0, relaxed = 0, pushes = 1, stale = 0; // Work counters (see QueryMetrics).
+        while (!pq.isEmpty()){
+            int u = pq.pop();
+            if(ctx.settled(u)) { // An old entry (a frontier without decrease-key).
+                stale++;
+                continue;
+            }
+            ctx.settle(u);
+            settled++;
+            if(u == dest) { // The destination is settled, no need to continue searching.
+                ctx.count(settled, relaxed, pushes, stale);
+                return ctx.dist(u);
+            }
+            double du = ctx.dist(u);
+            int p = csr.begin(u), end = csr.end(u);
+            relaxed += end - p;
+            for(; p < end; p++){ // For all neighbors of u.
+                int v = csr.neighborAt(p);
+                double pathDist = du + csr.weightAt(p);
+                if(!ctx.settled(v) && pathDist < ctx.dist(v)){ // Relax the edge u-v.
+                    double hv = lm.lowerBound(v, dest);
+                    if(hv == Double.POSITIVE_INFINITY) // dest is unreachable from v.
+                        continue;
+                    ctx.reach(v, pathDist, u);
+                    pq.push(v, pathDist + hv); // Order by the estimated total path length.
+                    pushes++;
+                }
+            }
+        }
+        ctx.count(settled, relaxed, pushes, stale);
+        return -1; // If we get here, it means there is no such path.
+    }
+
+    /**
+     * Bidirectional dijkstra on a CSR snapshot.
+     * A forward search from src and a backward search from dest (the graph is undirected, so both use the same rows)
+     * are expanded alternately, always the side with the smaller minimal key. Every edge relaxation which reaches
+     * a node of the other side is a candidate path, mu is the best candidate so far. The search stops as soon as
+     * the sum of the two minimal keys is at least mu, then no shorter path can exist.
+     * @param csr - the CSR snapshot.
+     * @param src - dense index of the source node.
+     * @param dest - dense index of the destination node.
+     * @param f - the search space of the calling thread (the forward side).
+     * @return - the shortest path distance from src to dest, or -1 if dest is unreachable.
+     */
+    private double bidirectionalDijkstra(WGraph_CSR csr, int src, int dest, SearchSpace f){
+        SearchSpace b = f.backward();
+        f.begin(csr.size());
+        b.begin(csr.size());
+        frontier_queue qf = f.frontier(frontierFactory, csr.size()), qb = b.frontier(frontierFactory, csr.size());
+        f.reach(src, 0.0, src);
+        b.reach(dest, 0.0, dest);
+        qf.push(src, 0.0);
+        qb.push(dest, 0.0);
+        double mu = Double.POSITIVE_INFINITY; // The best path found so far.
+        f.meetForward = f.meetBackward = -1;
+        long settled = 0, relaxed = 0, pushes = 2, stale = 0; // Work counters of both sides (see QueryMetrics).
+        while (!qf.isEmpty() && !qb.isEmpty()){
+            double kf = qf.peekKey(), kb = qb.peekKey(); // An old entry's key is a lower bound, so the rule holds.
+            if(kf + kb >= mu) // Meet-in-the-middle stopping rule.
+                break;
+            boolean forward = kf <= kb; // Expand the side with the smaller key.
+            SearchSpace side = forward ? f : b, other = forward ? b : f;
+            frontier_queue q = forward ? qf : qb;
+            int u = q.pop();
+            if(side.settled(u)) { // An old entry (a frontier without decrease-key).
+                stale++;
+                continue;
+            }
+            side.settle(u);
+            settled++;
+            double du = side.dist(u);
+            int p = csr.begin(u), end = csr.end(u);
+            relaxed += end - p;
+            for(; p < end; p++){ // For all neighbors of u.
+                int v = csr.neighborAt(p);
+                double pathDist = du + csr.weightAt(p);
+                if(!side.settled(v) && pathDist < side.dist(v)){ // Relax the edge u-v.
+                    side.reach(v, pathDist, u);
+                    q.push(v, pathDist);
+                    pushes++;
+                }
+                if(other.reached(v) && pathDist + other.dist(v) < mu){ // A shorter path through the edge u-v.
+                    mu = pathDist + other.dist(v);
+                    f.meetForward = forward ? u : v;
+                    f.meetBackward = forward ? v : u;
+                }
+            }
+        }
+        f.count(settled, relaxed, pushes, stale);
+        return mu == Double.POSITIVE_INFINITY ? -1 : mu;
+    }
+
+    /**
+     * BFS traversal on a CSR snapshot, using the reached marks and the int queue of the search space.
      * This algorithm is used for isConnected().
-     * @param src The source node.
-     */
-    private void BFS(node_info src){
-        for (node_info u : g.getV()){ // For each vertex:
-            u.setInfo("WHITE"); // Mark all nodes in WHITE (unvisited).
-        }
-        src.setInfo("GRAY"); // Set src node as visited.
-        LinkedList<node_info> Q = new LinkedList<>(); // Create new LinkedList which will represent a queue data structure.
-        Q.push(src); // Push src node to to the queue (FIFO principal).
-        while (!Q.isEmpty()){ // While there is still nodes to treat.
-            node_info u = Q.pop(); // Pop next node from queue (First time it will be src node).
-            for(node_info v : g.getV(u.getKey())){ // For each neighbor v of u.
-                if(v.getInfo().equals("WHITE")){ // It it's not already visited.
-                    v.setInfo("GRAY"); // Set color to Gray (means visited).
-                    Q.push(v); // Add neighbor to queue to continue exploring it's neighbors.
+     * @param csr - the CSR snapshot.
+     * @param src - dense index of the source node.
+     * @param ctx - the search space of the calling thread.
+     * @return - the number of nodes reachable from src (including src).
+     */
+    private int BFS(WGraph_CSR csr, int src, SearchSpace ctx){
+        ctx.begin(csr.size());
+        int[] queue = ctx.queue; // Every node is enqueued at most once.
+        int head = 0, tail = 0;
+        long relaxed = 0;
+        ctx.reach(src, 0, src);
+        queue[tail++] = src;
+        while (head < tail){
+            int u = queue[head++];
+            int p = csr.begin(u), end = csr.end(u);
+            relaxed += end - p;
+            for(; p < end; p++){ // For each neighbor v of u.
+                int v = csr.neighborAt(p);
+                if(!ctx.reached(v)){
+                    ctx.reach(v, 0, u);
+                    queue[tail++] = v;
                 }
             }
-            u.setInfo("BLACK"); // Set parent node to black (means "Done").
+        }
+        ctx.count(tail, relaxed, tail, 0);
+        return tail;
+    }
+
+    /**
+     * Keeps the recording flag current: JFR calls it when it starts (also if it was started before this class was
+     * loaded) and whenever a recording changes its state.
+     */
+    private static class RecordingListener implements FlightRecorderListener {
+        /**
+         * Registers a listener with JFR.
+         * @throws NoClassDefFoundError if the runtime has no jdk.jfr module.
+         */
+        static void register() {
+            FlightRecorder.addListener(new RecordingListener());
+        }
+
+        @Override
+        public void recorderInitialized(FlightRecorder recorder) {
+            update(recorder);
+        }
+
+        @Override
+        public void recordingStateChanged(Recording r) {
+            update(FlightRecorder.getFlightRecorder());
+        }
+
+        private static void update(FlightRecorder recorder) {
+            boolean running = false;
+            for(Recording r : recorder.getRecordings())
+                running |= r.getState() == RecordingState.RUNNING;
+            recording = running;
+        }
+    }
+
+    /**
+     * A CSR snapshot together with the graph it was built from.
+     */
+    private static class CachedSnapshot {
+        private final weighted_graph graph;
+        private final WGraph_CSR csr;
+
+        CachedSnapshot(weighted_graph graph, WGraph_CSR csr){
+            this.graph = graph;
+            this.csr = csr;
         }
     }
 
     /**
      * Saves the current graph to a new file (with path).
+     * The graph is written in the binary format of WGraph_Format: a little endian CSR snapshot with a checksum.
      * @param file - the file name (may include a relative path).
      * @return - true/false according to success/fail.
      */
     @Override
     public boolean save(String file) {
+        QueryMetrics m = metrics;
+        FileEvent event = recording ? new FileEvent() : null; // Created only while a flight recording is running.
+        if(m == null && event == null) // Not measured.
+            return write(file);
+        long start = begin(event);
+        boolean success = write(file);
+        measured(m, event, QueryMetrics.Operation.SAVE, start, file, success);
+        return success;
+    }
+
+    /**
+     * The unmeasured save(String).
+     */
+    private boolean write(String file) {
         try {
-            FileOutputStream fos = new FileOutputStream(file); // Open file output stream object with the given path.
-            ObjectOutputStream oos = new ObjectOutputStream(fos); // Create object output stream.
-            oos.writeObject(g); // write this graph's object to file.
-            oos.close(); // Close the object output stream.
-            fos.close(); // Close the file output stream.
+            WGraph_Format.write(snapshot(), g instanceof WGraph_Compact ? WGraph_Format.FLAG_COMPACT : 0, file);
         } catch (IOException e) {
             e.printStackTrace();
             return false;
@@ -208,20 +996,65 @@ public class WGraph_Algo implements weighted_graph_algorithms{
 
     /**
      * Loads a graph from a given file and initialize it.
+     * Files in the binary format are built directly, older files written by Java serialization are still accepted.
      * @param file - file name.
      * @return - true/false according the success/fail.
      */
     @Override
     public boolean load(String file) {
+        QueryMetrics m = metrics;
+        FileEvent event = recording ? new FileEvent() : null; // Created only while a flight recording is running.
+        if(m == null && event == null) // Not measured.
+            return read(file);
+        long start = begin(event);
+        boolean success = read(file);
+        measured(m, event, QueryMetrics.Operation.LOAD, start, file, success);
+        return success;
+    }
+
+    /**
+     * Adds a finished save or load to the metrics (if enabled) and commits its flight recorder event (if recorded).
+     * @param m - the metrics, or null.
+     * @param event - the event, begun when the operation started (null if no recording is running).
+     * @param op - SAVE or LOAD.
+     * @param start - System.nanoTime() when the operation started.
+     * @param file - the file name.
+     * @param success - the result of the operation.
+     */
+    private void measured(QueryMetrics m, FileEvent event, QueryMetrics.Operation op, long start, String file,
+                          boolean success) {
+        if(m != null)
+            m.record(op, System.nanoTime() - start, null);
+        if(event != null && event.shouldCommit()) {
+            weighted_graph graph = g; // The loaded graph after a successful load.
+            event.operation = op.name();
+            event.file = file;
+            event.nodes = graph.nodeSize();
+            event.edges = graph.edgeSize();
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    /**
+     * The unmeasured load(String).
+     */
+    private boolean read(String file) {
         File f;
         if( (f = new File(file)).exists()) { // If file exist.
             weighted_graph graphFromFile;
             try {
-                FileInputStream fis = new FileInputStream(f); // Open a file input stream from a given file path.
-                ObjectInputStream ois = new ObjectInputStream(fis); // Create object input stream.
-                graphFromFile = new WGraph_DS((WGraph_DS) ois.readObject()); // Create a deep copy of the loaded graph.
-                ois.close(); // Close the object input stream.
-                fis.close(); // Close the file input stream.
+                if(WGraph_Format.isFormat(file)) {
+                    graphFromFile = WGraph_Format.read(file); // Already a new graph, no copy needed.
+                    if(graphFromFile == null) // Corrupted or unknown version.
+                        return false;
+                } else {
+                    FileInputStream fis = new FileInputStream(f); // Open a file input stream from a given file path.
+                    ObjectInputStream ois = new ObjectInputStream(fis); // Create object input stream.
+                    graphFromFile = copyOf((weighted_graph) ois.readObject()); // Create a deep copy of the loaded graph.
+                    ois.close(); // Close the object input stream.
+                    fis.close(); // Close the file input stream.
+                }
             } catch (ClassNotFoundException | IOException e) {
                 e.printStackTrace();
                 return false;
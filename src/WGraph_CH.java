@@ -0,0 +1,584 @@
+package ex1.src;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * This class represents a contraction hierarchy (CH) index of an undirected weighted graph.
+ * Building: the nodes are contracted one by one in the order of their edge difference (shortcuts needed minus
+ * edges removed, plus the number of already contracted neighbors for uniformity). Contracting v adds a shortcut
+ * u-w (remembering v as its middle node) for every pair of remaining neighbors whose shortest path goes through v,
+ * which is decided by a bounded local dijkstra (witness search) that avoids v.
+ * Once the remaining graph gets dense (random graphs), contraction stops: the remaining core nodes get the top
+ * ranks and keep all their edges, so the query runs a plain bidirectional dijkstra inside the core.
+ * Query: a bidirectional dijkstra from src and dest that only follows edges to higher ranked nodes (and core edges).
+ * The shortcuts on the found path are unpacked recursively through their middle nodes, so the result is a path
+ * in the original graph.
+ * The index is built over a CSR snapshot (dense indices) and is valid only for the mode count it was built for.
+ */
+public final class WGraph_CH {
+    private static final int MAGIC = 0x48434757; // "WGCH" as little endian bytes.
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int WITNESS_LIMIT = 128; // Maximal number of nodes settled by one witness search.
+    private static final int SIMULATION_LIMIT = 32; // The same limit when only the priority is estimated.
+    private static final int CORE_DEGREE = 16; // Contraction stops once the remaining graph is this dense (on average).
+
+    private final KeyIndex index; // Key <-> dense index mapping (same as the snapshot's).
+    private final int[] rank; // Contraction order of every node.
+    private final int[] upOffsets; // Upward graph rows (edges to higher ranked nodes).
+    private final int[] upTarget;
+    private final double[] upWeight;
+    private final int[] upMiddle; // Middle node of a shortcut, -1 for an original edge.
+    private final long fingerprint; // Hash of the snapshot the index was built for.
+    private final int mc; // Mode count of the snapshot the index was built for (or validated against).
+
+    /**
+     * Creates an index from its arrays.
+     */
+    private WGraph_CH(KeyIndex index, int[] rank, int[] upOffsets, int[] upTarget, double[] upWeight,
+                      int[] upMiddle, long fingerprint, int mc) {
+        this.index = index;
+        this.rank = rank;
+        this.upOffsets = upOffsets;
+        this.upTarget = upTarget;
+        this.upWeight = upWeight;
+        this.upMiddle = upMiddle;
+        this.fingerprint = fingerprint;
+        this.mc = mc;
+    }
+
+    /**
+     * Builds a contraction hierarchy over the given snapshot.
+     * @param csr - the CSR snapshot.
+     * @return - a new index.
+     */
+    public static WGraph_CH build(WGraph_CSR csr) {
+        return new Builder(csr).build();
+    }
+
+    /**
+     * Returns the number of nodes of the index.
+     * @return - n.
+     */
+    public int size() {
+        return rank.length;
+    }
+
+    /**
+     * Returns the number of upward edges (original edges plus shortcuts, each stored once, core edges twice).
+     * @return - the number of upward edges.
+     */
+    public int upwardEdges() {
+        return upTarget.length;
+    }
+
+    /**
+     * Returns the mode count of the graph this index is valid for.
+     * @return - mode count.
+     */
+    public int getMC() {
+        return mc;
+    }
+
+    /**
+     * Bidirectional upward dijkstra between two dense indices.
+     * The forward search space f and its backward() search space hold the parents afterwards,
+     * and f.meetForward is the meeting node (-1 if there is no path).
+     * @param src - dense index of the source.
+     * @param dest - dense index of the destination.
+     * @param f - the search space of the calling thread.
+     * @param factory - creates the frontiers.
+     * @return - the shortest path distance, or -1 if there is no path.
+     */
+    double query(int src, int dest, SearchSpace f, Supplier<frontier_queue> factory) {
+        SearchSpace b = f.backward();
+        int n = size();
+        f.begin(n);
+        b.begin(n);
+        frontier_queue qf = f.frontier(factory, n), qb = b.frontier(factory, n);
+        f.reach(src, 0.0, src);
+        b.reach(dest, 0.0, dest);
+        qf.push(src, 0.0);
+        qb.push(dest, 0.0);
+        double mu = Double.POSITIVE_INFINITY;
+        f.meetForward = f.meetBackward = -1;
+        while (true) {
+            double kf = qf.isEmpty() ? Double.POSITIVE_INFINITY : qf.peekKey();
+            double kb = qb.isEmpty() ? Double.POSITIVE_INFINITY : qb.peekKey();
+            if (Math.min(kf, kb) >= mu) // Neither side can improve the best path (this also covers two empty queues).
+                break;
+            boolean forward = kf <= kb;
+            SearchSpace side = forward ? f : b, other = forward ? b : f;
+            frontier_queue q = forward ? qf : qb;
+            int u = q.pop();
+            side.settle(u);
+            double du = side.dist(u);
+            if (other.reached(u) && du + other.dist(u) < mu) { // The searches meet at u.
+                mu = du + other.dist(u);
+                f.meetForward = f.meetBackward = u;
+            }
+            for (int p = upOffsets[u], end = upOffsets[u + 1]; p < end; p++) { // Upward edges only.
+                int v = upTarget[p];
+                double pathDist = du + upWeight[p];
+                if (!side.settled(v) && pathDist < side.dist(v)) {
+                    side.reach(v, pathDist, u);
+                    q.push(v, pathDist);
+                }
+            }
+        }
+        return mu == Double.POSITIVE_INFINITY ? -1 : mu;
+    }
+
+    /**
+     * Returns the unpacked path found by the last query(...) call on f, as dense indices in the original graph.
+     * @param src - dense index of the source.
+     * @param dest - dense index of the destination.
+     * @param f - the search space used by the query.
+     * @return - the path src, ..., dest.
+     */
+    int[] path(int src, int dest, SearchSpace f) {
+        SearchSpace b = f.backward();
+        int meet = f.meetForward;
+        int[] up = new int[16]; // The packed path: src ... meet ... dest.
+        int len = 0;
+        for (int i = meet; ; i = f.parent(i)) { // src ... meet (reversed below).
+            if (len == up.length)
+                up = Arrays.copyOf(up, len * 2);
+            up[len++] = i;
+            if (i == src)
+                break;
+        }
+        for (int l = 0, r = len - 1; l < r; l++, r--) {
+            int t = up[l];
+            up[l] = up[r];
+            up[r] = t;
+        }
+        for (int i = meet; i != dest; ) { // meet ... dest.
+            i = b.parent(i);
+            if (len == up.length)
+                up = Arrays.copyOf(up, len * 2);
+            up[len++] = i;
+        }
+        int[] out = new int[Math.max(16, len * 2)];
+        int size = 0;
+        out[size++] = src;
+        int[] stack = new int[16];
+        for (int e = 1; e < len; e++) { // Unpack every packed edge up[e-1]-up[e].
+            int top = 0;
+            stack[top++] = up[e - 1];
+            stack[top++] = up[e];
+            while (top > 0) {
+                int y = stack[--top], x = stack[--top];
+                int m = middle(x, y);
+                if (m < 0) { // An original edge.
+                    if (size == out.length)
+                        out = Arrays.copyOf(out, size * 2);
+                    out[size++] = y;
+                } else { // A shortcut: unpack x-m first, then m-y.
+                    if (top + 4 > stack.length)
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    stack[top++] = m;
+                    stack[top++] = y;
+                    stack[top++] = x;
+                    stack[top++] = m;
+                }
+            }
+        }
+        return Arrays.copyOf(out, size);
+    }
+
+    /**
+     * Returns the middle node of the edge x-y of the hierarchy.
+     * The edge is stored in the upward row of its lower ranked endpoint.
+     * @param x - dense index.
+     * @param y - dense index.
+     * @return - the middle node of the shortcut, or -1 for an original edge.
+     */
+    private int middle(int x, int y) {
+        int low = rank[x] < rank[y] ? x : y, high = low == x ? y : x;
+        for (int p = upOffsets[low], end = upOffsets[low + 1]; p < end; p++)
+            if (upTarget[p] == high)
+                return upMiddle[p];
+        throw new IllegalStateException("no edge " + x + "-" + y + " in the hierarchy");
+    }
+
+    /**
+     * Saves this index to a file, in the conventions of WGraph_Format (little endian, checksummed):
+     * - Header: magic "WGCH", version, n (nodes), m (upward edges), the fingerprint of the graph.
+     * - Node blocks: the n node keys (in the order of the snapshot) and the n ranks.
+     * - Edge blocks: the n+1 upward row offsets, the m targets, the m middle nodes and the m weights.
+     * - Trailer: a CRC-32C checksum of all the preceding bytes.
+     * Together with the saved graph it can be loaded instead of being rebuilt.
+     * @param file - the file name (may include a relative path).
+     * @return - true iff the index was saved.
+     */
+    public boolean save(String file) {
+        int n = size(), m = upwardEdges();
+        try (WGraph_Format.Writer w = WGraph_Format.writer(file)) {
+            w.putInt(MAGIC);
+            w.putInt(VERSION);
+            w.putInt(n);
+            w.putInt(m);
+            w.putLong(fingerprint);
+            for (int i = 0; i < n; i++)
+                w.putInt(index.keyAt(i));
+            for (int r : rank)
+                w.putInt(r);
+            for (int o : upOffsets)
+                w.putInt(o);
+            for (int t : upTarget)
+                w.putInt(t);
+            for (int mid : upMiddle)
+                w.putInt(mid);
+            for (double wt : upWeight)
+                w.putDouble(wt);
+            w.finish();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the exact size of an index file with n nodes and m upward edges.
+     */
+    private static long fileBytes(int n, long m) {
+        return HEADER_BYTES + 8L * n + 4L * (n + 1) + 16L * m + 4;
+    }
+
+    /**
+     * Loads an index saved by save(String) and validates it against a snapshot of the graph.
+     * The file is rejected if its header, size, structure or checksum is wrong.
+     * @param file - the file name.
+     * @param csr - a snapshot of the graph the index is loaded for.
+     * @return - the index, or null if the file can't be read, is corrupted or was built for another graph.
+     */
+    public static WGraph_CH load(String file, WGraph_CSR csr) {
+        if (!new File(file).exists())
+            return null;
+        try (WGraph_Format.Reader r = WGraph_Format.reader(file)) {
+            if (r.size < HEADER_BYTES + 4 || r.getInt() != MAGIC || r.getInt() != VERSION)
+                return null;
+            int n = r.getInt(), m = r.getInt();
+            long fingerprint = r.getLong();
+            if (n != csr.size() || m < 0 || r.size != fileBytes(n, m) || fingerprint != fingerprint(csr))
+                return null; // Corrupted, or built for another graph.
+            int[] keys = new int[n], rank = new int[n], upOffsets = new int[n + 1];
+            int[] upTarget = new int[m], upMiddle = new int[m];
+            double[] upWeight = new double[m];
+            r.getInts(keys);
+            r.getInts(rank);
+            r.getInts(upOffsets);
+            r.getInts(upTarget);
+            r.getInts(upMiddle);
+            r.getDoubles(upWeight);
+            if (!r.checksumMatches() || !valid(csr, keys, rank, upOffsets, upTarget, upMiddle, upWeight))
+                return null;
+            return new WGraph_CH(new KeyIndex(keys), rank, upOffsets, upTarget, upWeight, upMiddle, fingerprint, csr.getMC());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Checks the structure of the read arrays: the keys of the snapshot, ranks that are a permutation,
+     * monotone offsets, targets and middle nodes in range and legal weights.
+     */
+    private static boolean valid(WGraph_CSR csr, int[] keys, int[] rank, int[] upOffsets, int[] upTarget,
+                                 int[] upMiddle, double[] upWeight) {
+        int n = keys.length;
+        boolean[] seen = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            if (keys[i] != csr.keyAt(i) || rank[i] < 0 || rank[i] >= n || seen[rank[i]])
+                return false;
+            seen[rank[i]] = true;
+        }
+        if (upOffsets[0] != 0 || upOffsets[n] != upTarget.length)
+            return false;
+        for (int i = 0; i < n; i++) {
+            if (upOffsets[i + 1] < upOffsets[i])
+                return false;
+            for (int p = upOffsets[i]; p < upOffsets[i + 1]; p++)
+                if (upTarget[p] < 0 || upTarget[p] >= n || upTarget[p] == i || upMiddle[p] < -1
+                        || upMiddle[p] >= n || !(upWeight[p] >= 0))
+                    return false;
+        }
+        return true;
+    }
+
+    /**
+     * Computes a 64 bit hash of the nodes, edges and weights of a snapshot.
+     * @param csr - a CSR snapshot.
+     * @return - the hash.
+     */
+    private static long fingerprint(WGraph_CSR csr) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < csr.size(); i++) {
+            h = (h ^ csr.keyAt(i)) * 0x100000001b3L;
+            for (int p = csr.begin(i); p < csr.end(i); p++) {
+                h = (h ^ csr.neighborAt(p)) * 0x100000001b3L;
+                h = (h ^ Double.doubleToLongBits(csr.weightAt(p))) * 0x100000001b3L;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * This class contracts the nodes of a snapshot and creates the index.
+     */
+    private static class Builder {
+        private final WGraph_CSR csr;
+        private final int n;
+        private final int[][] adjTarget; // Working graph: original edges and shortcuts of every node.
+        private final double[][] adjWeight;
+        private final int[][] adjMiddle;
+        private final int[] degree;
+        private final boolean[] contracted;
+        private final int[] deletedNeighbors; // Number of contracted neighbors (uniformity term of the priority).
+        private final SearchSpace witness = new SearchSpace(); // State of the witness searches.
+        private final IndexedDaryHeap witnessHeap = new IndexedDaryHeap();
+        private final int[] targetStamp; // targetStamp[u] == stamp iff u is a target of the current witness search.
+        private long arcs; // Number of directed edges between remaining nodes (twice the undirected edges).
+        private int stamp;
+        private int[] nb = new int[16]; // Scratch: remaining neighbors of the node being contracted.
+        private double[] nbWeight = new double[16];
+
+        Builder(WGraph_CSR csr) {
+            this.csr = csr;
+            this.n = csr.size();
+            adjTarget = new int[n][];
+            adjWeight = new double[n][];
+            adjMiddle = new int[n][];
+            degree = new int[n];
+            contracted = new boolean[n];
+            deletedNeighbors = new int[n];
+            targetStamp = new int[n];
+            for (int v = 0; v < n; v++) { // Start with the original edges.
+                int d = csr.end(v) - csr.begin(v);
+                adjTarget[v] = new int[Math.max(d, 2)];
+                adjWeight[v] = new double[Math.max(d, 2)];
+                adjMiddle[v] = new int[Math.max(d, 2)];
+                for (int p = csr.begin(v); p < csr.end(v); p++) {
+                    adjTarget[v][degree[v]] = csr.neighborAt(p);
+                    adjWeight[v][degree[v]] = csr.weightAt(p);
+                    adjMiddle[v][degree[v]++] = -1;
+                }
+                arcs += degree[v];
+            }
+        }
+
+        /**
+         * Contracts all nodes (lazy updated priorities) and extracts the upward graph.
+         * @return - the index.
+         */
+        WGraph_CH build() {
+            int[] rank = new int[n];
+            IndexedDaryHeap order = new IndexedDaryHeap();
+            order.clear(n);
+            for (int v = 0; v < n; v++)
+                order.push(v, priority(v));
+            int next = 0;
+            while (!order.isEmpty() && arcs <= (long) CORE_DEGREE * (n - next)) {
+                int v = order.pop();
+                double p = priority(v); // Lazy update: the priority may have grown since it was pushed.
+                if (!order.isEmpty() && p > order.peekKey()) {
+                    order.push(v, p);
+                    continue;
+                }
+                contract(v, false);
+                contracted[v] = true;
+                rank[v] = next++;
+                for (int i = 0; i < degree[v]; i++) { // The priorities of the remaining neighbors have changed.
+                    int u = adjTarget[v][i];
+                    if (!contracted[u]) {
+                        removeEdge(u, v); // v keeps its own edges, they become its upward edges.
+                        arcs -= 2;
+                        deletedNeighbors[u]++;
+                        order.update(u, priority(u));
+                    }
+                }
+            }
+            while (!order.isEmpty()) // The core: the remaining nodes get the top ranks and keep all their edges.
+                rank[order.pop()] = next++;
+            int[] upOffsets = new int[n + 1];
+            for (int v = 0; v < n; v++) { // Count the edges to higher ranked nodes (all the edges of a core node).
+                int c = 0;
+                for (int i = 0; i < degree[v]; i++)
+                    if (!contracted[v] || rank[adjTarget[v][i]] > rank[v])
+                        c++;
+                upOffsets[v + 1] = upOffsets[v] + c;
+            }
+            int m = upOffsets[n];
+            int[] upTarget = new int[m], upMiddle = new int[m];
+            double[] upWeight = new double[m];
+            for (int v = 0; v < n; v++) {
+                int p = upOffsets[v];
+                for (int i = 0; i < degree[v]; i++) {
+                    if (!contracted[v] || rank[adjTarget[v][i]] > rank[v]) {
+                        upTarget[p] = adjTarget[v][i];
+                        upWeight[p] = adjWeight[v][i];
+                        upMiddle[p++] = adjMiddle[v][i];
+                    }
+                }
+            }
+            int[] keys = new int[n];
+            for (int i = 0; i < n; i++)
+                keys[i] = csr.keyAt(i);
+            return new WGraph_CH(new KeyIndex(keys), rank, upOffsets, upTarget, upWeight, upMiddle, fingerprint(csr), csr.getMC());
+        }
+
+        /**
+         * Returns the contraction priority of v: edge difference plus contracted neighbors.
+         * @param v - dense index.
+         * @return - the priority (smaller is contracted first).
+         */
+        private double priority(int v) {
+            int remaining = collectNeighbors(v);
+            return contract(v, true) - remaining + deletedNeighbors[v];
+        }
+
+        /**
+         * Collects the remaining (not contracted) neighbors of v into nb/nbWeight.
+         * @param v - dense index.
+         * @return - the number of remaining neighbors.
+         */
+        private int collectNeighbors(int v) {
+            int c = 0;
+            for (int i = 0; i < degree[v]; i++) {
+                int u = adjTarget[v][i];
+                if (!contracted[u]) {
+                    if (c == nb.length) {
+                        nb = Arrays.copyOf(nb, c * 2);
+                        nbWeight = Arrays.copyOf(nbWeight, c * 2);
+                    }
+                    nb[c] = u;
+                    nbWeight[c++] = adjWeight[v][i];
+                }
+            }
+            return c;
+        }
+
+        /**
+         * Contracts v (or only counts the shortcuts this would add).
+         * @param v - dense index.
+         * @param simulate - if true, no shortcut is added.
+         * @return - the number of shortcuts needed.
+         */
+        private int contract(int v, boolean simulate) {
+            int c = collectNeighbors(v);
+            int[] targets = Arrays.copyOf(nb, c);
+            double[] weights = Arrays.copyOf(nbWeight, c);
+            int shortcuts = 0;
+            for (int i = 0; i < c; i++) {
+                double max = 0;
+                for (int j = i + 1; j < c; j++)
+                    max = Math.max(max, weights[i] + weights[j]);
+                if (i + 1 < c) {
+                    stamp++;
+                    for (int j = i + 1; j < c; j++)
+                        targetStamp[targets[j]] = stamp;
+                    witnessSearch(targets[i], v, max, c - i - 1, simulate ? SIMULATION_LIMIT : WITNESS_LIMIT);
+                }
+                for (int j = i + 1; j < c; j++) {
+                    double via = weights[i] + weights[j];
+                    if (witness.dist(targets[j]) > via) { // No witness path: the shortcut is needed.
+                        shortcuts++;
+                        if (!simulate) {
+                            addEdge(targets[i], targets[j], via, v);
+                            addEdge(targets[j], targets[i], via, v);
+                        }
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /**
+         * Local dijkstra from src over the remaining graph, avoiding the node being contracted.
+         * It stops when all targets are settled, at distance max or after limit settled nodes
+         * (missing witnesses only cost extra shortcuts).
+         * @param src - dense index of the start node.
+         * @param avoid - the node being contracted.
+         * @param max - the largest distance of interest.
+         * @param targets - the number of nodes marked with the current stamp.
+         * @param limit - the maximal number of settled nodes.
+         */
+        private void witnessSearch(int src, int avoid, double max, int targets, int limit) {
+            witness.begin(n);
+            witnessHeap.clear(n);
+            witness.reach(src, 0, src);
+            witnessHeap.push(src, 0);
+            int settled = 0;
+            while (!witnessHeap.isEmpty() && settled++ < limit) {
+                if (witnessHeap.peekKey() > max)
+                    break;
+                int u = witnessHeap.pop();
+                witness.settle(u);
+                if (targetStamp[u] == stamp && --targets == 0) // All target distances are final.
+                    break;
+                double du = witness.dist(u);
+                for (int i = 0; i < degree[u]; i++) {
+                    int t = adjTarget[u][i];
+                    if (t == avoid || contracted[t] || witness.settled(t))
+                        continue;
+                    double nd = du + adjWeight[u][i];
+                    if (nd < witness.dist(t)) {
+                        witness.reach(t, nd, u);
+                        witnessHeap.push(t, nd);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Removes the edge u-&gt;v from the working graph (swap with the last edge of u).
+         * @param u - dense index.
+         * @param v - dense index.
+         */
+        private void removeEdge(int u, int v) {
+            for (int i = 0; i < degree[u]; i++) {
+                if (adjTarget[u][i] == v) {
+                    int last = --degree[u];
+                    adjTarget[u][i] = adjTarget[u][last];
+                    adjWeight[u][i] = adjWeight[u][last];
+                    adjMiddle[u][i] = adjMiddle[u][last];
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Adds the edge u-&gt;v to the working graph, or lowers the weight of an existing one.
+         * @param u - dense index.
+         * @param v - dense index.
+         * @param w - the weight.
+         * @param middle - the middle node of the shortcut.
+         */
+        private void addEdge(int u, int v, double w, int middle) {
+            for (int i = 0; i < degree[u]; i++) {
+                if (adjTarget[u][i] == v) {
+                    if (w < adjWeight[u][i]) {
+                        adjWeight[u][i] = w;
+                        adjMiddle[u][i] = middle;
+                    }
+                    return;
+                }
+            }
+            if (degree[u] == adjTarget[u].length) {
+                int c = degree[u] * 2;
+                adjTarget[u] = Arrays.copyOf(adjTarget[u], c);
+                adjWeight[u] = Arrays.copyOf(adjWeight[u], c);
+                adjMiddle[u] = Arrays.copyOf(adjMiddle[u], c);
+            }
+            adjTarget[u][degree[u]] = v;
+            adjWeight[u][degree[u]] = w;
+            adjMiddle[u][degree[u]++] = middle;
+            arcs++;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package ex1.src;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * This class represents an immutable compressed sparse row (CSR) snapshot of an undirected weighted graph.
+ * Nodes are renumbered to dense indices 0..n-1 in ascending key order (see KeyIndex).
+ * The neighbors of the node with index i are neighbors[offsets[i]..offsets[i+1]) (sorted by index),
+ * and weights[p] is the weight of the edge leading to neighbors[p].
+ * Every undirected edge is stored twice (once in each direction).
+ * The snapshot remembers the mode count of the graph it was built from, so it can be checked for staleness.
+ * A snapshot of a WGraph_Mapped or a WGraph_Packed has no arrays at all: it reads the same layout from their
+ * csr_storage (the mapped file or the compressed rows) instead.
+ */
+public final class WGraph_CSR {
+    private static final int SORT_BLOCK = 1 << 14; // Rows per parallel sorting task (fewer entries are sorted serially).
+
+    private final KeyIndex index; // Key <-> dense index mapping.
+    private final int[] offsets; // Row start positions (length n+1).
+    private final int[] neighbors; // Dense neighbor indices.
+    private final double[] weights; // Edge weights (parallel to neighbors).
+    private final int mc; // Mode count of the source graph at build time.
+    private final csr_storage region; // The mapped or compressed arrays (null for heap arrays).
+
+    /**
+     * Creates a snapshot from already filled arrays, and sorts every row by neighbor index.
+     * The arrays are not copied.
+     * @param index - the key index (keys in ascending order).
+     * @param offsets - row start positions.
+     * @param neighbors - dense neighbor indices.
+     * @param weights - edge weights.
+     * @param mc - the mode count of the source graph.
+     */
+    WGraph_CSR(KeyIndex index, int[] offsets, int[] neighbors, double[] weights, int mc) {
+        this.index = index;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.weights = weights;
+        this.mc = mc;
+        this.region = null;
+        sortRows();
+    }
+
+    /**
+     * Creates a snapshot which reads a mapped file or a compressed graph (its rows are already sorted).
+     * @param region - the arrays.
+     * @param mc - the mode count of the source graph.
+     */
+    WGraph_CSR(csr_storage region, int mc) {
+        this.index = null;
+        this.offsets = null;
+        this.neighbors = null;
+        this.weights = null;
+        this.mc = mc;
+        this.region = region;
+    }
+
+    /**
+     * Builds a snapshot of any weighted_graph using only the public interface.
+     * WGraph_DS builds its own snapshot directly from its inner maps (see WGraph_DS.getCSR()).
+     * @param g - the source graph.
+     * @return - a new CSR snapshot of g.
+     */
+    public static WGraph_CSR of(weighted_graph g) {
+        int[] keys = sortedKeys(g);
+        KeyIndex index = new KeyIndex(keys);
+        int[] offsets = new int[keys.length + 1];
+        RowBuilder rows = new RowBuilder(index, 2 * g.edgeSize());
+        for (int i = 0; i < keys.length; i++) { // Fill the rows in one pass (see weighted_graph.forEachNeighbor).
+            g.forEachNeighbor(keys[i], rows);
+            offsets[i + 1] = rows.size;
+        }
+        return new WGraph_CSR(index, offsets, Arrays.copyOf(rows.neighbors, rows.size),
+                Arrays.copyOf(rows.weights, rows.size), g.getMC());
+    }
+
+    /**
+     * Returns the snapshot a graph keeps itself (WGraph_DS, WGraph_Mapped, WGraph_Packed, WGraph_Concurrent and
+     * WGraph_Snapshot), or null for other graphs.
+     * @param g - the graph.
+     * @return - its up to date snapshot, or null.
+     */
+    static WGraph_CSR ownSnapshot(weighted_graph g) {
+        if (g instanceof WGraph_DS)
+            return ((WGraph_DS) g).getCSR();
+        if (g instanceof WGraph_Mapped)
+            return ((WGraph_Mapped) g).getCSR();
+        if (g instanceof WGraph_Packed)
+            return ((WGraph_Packed) g).getCSR();
+        if (g instanceof WGraph_Concurrent)
+            return ((WGraph_Concurrent) g).getCSR();
+        if (g instanceof WGraph_Snapshot)
+            return ((WGraph_Snapshot) g).getCSR();
+        return null;
+    }
+
+    /**
+     * Returns the snapshot a graph keeps itself, or builds a new one (see ownSnapshot and of).
+     * @param g - the graph.
+     * @return - an up to date snapshot of g.
+     */
+    static WGraph_CSR current(weighted_graph g) {
+        WGraph_CSR s = ownSnapshot(g);
+        return s != null ? s : of(g);
+    }
+
+    /**
+     * Returns the keys of all nodes of g in ascending order.
+     * @param g - the graph.
+     * @return - a sorted key array.
+     */
+    static int[] sortedKeys(weighted_graph g) {
+        int[] keys = new int[g.getV().size()];
+        int i = 0;
+        for (node_info n : g.getV())
+            keys[i++] = n.getKey();
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Returns the number of nodes in this snapshot.
+     * @return - n.
+     */
+    public int size() {
+        return offsets != null ? offsets.length - 1 : region.size();
+    }
+
+    /**
+     * Returns the number of stored (directed) edge entries, which is twice the number of undirected edges.
+     * @return - the length of the neighbors array.
+     */
+    public int entries() {
+        return neighbors != null ? neighbors.length : region.entries();
+    }
+
+    /**
+     * Returns the dense index of the given key.
+     * @param key - node key.
+     * @return - dense index or -1 if there is no such node.
+     */
+    public int indexOf(int key) {
+        return index != null ? index.indexOf(key) : region.indexOf(key);
+    }
+
+    /**
+     * Returns the key of the node with the given dense index.
+     * @param i - dense index.
+     * @return - node key.
+     */
+    public int keyAt(int i) {
+        return index != null ? index.keyAt(i) : region.keyAt(i);
+    }
+
+    /**
+     * Returns the first position of row i.
+     * @param i - dense index.
+     * @return - position in the neighbors/weights arrays.
+     */
+    public int begin(int i) {
+        int[] o = offsets;
+        return o != null ? o[i] : region.offsetAt(i);
+    }
+
+    /**
+     * Returns the position after the last entry of row i.
+     * @param i - dense index.
+     * @return - position in the neighbors/weights arrays.
+     */
+    public int end(int i) {
+        int[] o = offsets;
+        return o != null ? o[i + 1] : region.offsetAt(i + 1);
+    }
+
+    /**
+     * Returns the dense index of the neighbor stored at position p.
+     * @param p - position.
+     * @return - dense neighbor index.
+     */
+    public int neighborAt(int p) {
+        int[] a = neighbors;
+        return a != null ? a[p] : region.neighborAt(p);
+    }
+
+    /**
+     * Returns the weight of the edge stored at position p.
+     * @param p - position.
+     * @return - edge weight.
+     */
+    public double weightAt(int p) {
+        double[] a = weights;
+        return a != null ? a[p] : region.weightAt(p);
+    }
+
+    /**
+     * Returns the mode count of the graph at the time this snapshot was built.
+     * @return - mode count.
+     */
+    public int getMC() {
+        return mc;
+    }
+
+    /**
+     * Sorts every row by neighbor index (keeping the weights aligned).
+     * Short rows are insertion sorted, long rows are sorted through packed (index, position) longs.
+     * Large snapshots are sorted in parallel blocks of rows on the fork-join pool.
+     */
+    private void sortRows() {
+        int n = size();
+        if (offsets[n] < SORT_BLOCK) {
+            sortRows(0, n);
+            return;
+        }
+        int blocks = (n + SORT_BLOCK - 1) / SORT_BLOCK;
+        IntStream.range(0, blocks).parallel().forEach(b -> sortRows(b * SORT_BLOCK, Math.min(n, (b + 1) * SORT_BLOCK)));
+    }
+
+    /**
+     * Sorts the rows from..to-1 (see sortRows()).
+     */
+    private void sortRows(int fromRow, int toRow) {
+        long[] packed = null; // Lazily allocated buffer for long rows.
+        double[] tmp = null;
+        for (int i = fromRow; i < toRow; i++) {
+            int from = offsets[i], to = offsets[i + 1];
+            if (to - from <= 16) { // Insertion sort.
+                for (int p = from + 1; p < to; p++) {
+                    int n = neighbors[p];
+                    double w = weights[p];
+                    int q = p - 1;
+                    while (q >= from && neighbors[q] > n) {
+                        neighbors[q + 1] = neighbors[q];
+                        weights[q + 1] = weights[q];
+                        q--;
+                    }
+                    neighbors[q + 1] = n;
+                    weights[q + 1] = w;
+                }
+            } else {
+                int len = to - from;
+                if (packed == null || packed.length < len) {
+                    packed = new long[len];
+                    tmp = new double[len];
+                }
+                for (int p = 0; p < len; p++)
+                    packed[p] = ((long) neighbors[from + p] << 32) | p; // Sort by index, remember the position.
+                Arrays.sort(packed, 0, len);
+                System.arraycopy(weights, from, tmp, 0, len);
+                for (int p = 0; p < len; p++) {
+                    neighbors[from + p] = (int) (packed[p] >>> 32);
+                    weights[from + p] = tmp[(int) packed[p]];
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the visited neighbors of the rows to growing arrays (see of).
+     */
+    private static final class RowBuilder implements neighbor_consumer {
+        private final KeyIndex index;
+        int[] neighbors;
+        double[] weights;
+        int size;
+
+        RowBuilder(KeyIndex index, int expected) {
+            this.index = index;
+            neighbors = new int[Math.max(expected, 16)];
+            weights = new double[neighbors.length];
+        }
+
+        @Override
+        public void accept(int neighbor, double w) {
+            if (size == neighbors.length) {
+                neighbors = Arrays.copyOf(neighbors, 2 * size);
+                weights = Arrays.copyOf(weights, 2 * size);
+            }
+            neighbors[size] = index.indexOf(neighbor);
+            weights[size++] = w;
+        }
+    }
+}
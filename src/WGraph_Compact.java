@@ -0,0 +1,351 @@
+package ex1.src;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * This class represents an undirected weighted graph with primitive adjacency storage.
+ * It is an alternative to WGraph_DS for large graphs (over 10^6 nodes, with average degree of 10):
+ * instead of a HashMap<Integer, Double> per node (an entry object, an Integer and a Double per edge),
+ * every node keeps its neighbors in an open addressing IntDoubleHashMap (12 bytes per edge plus free slots).
+ * The adjacency map lives inside the node object itself, so there is no second HashMap for the edges.
+ * hasEdge, getEdge, connect and removeEdge still run in O(1) time.
+ */
+public class WGraph_Compact implements weighted_graph, Serializable {
+    private static final long serialVersionUID = 912515008274125515L; // Pinned, so saved graphs stay loadable.
+    private HashMap<Integer, Node> V; // HashMap representation of the graph vertices (each holds its own edges).
+
+    private int nSize, eSize, MC; // node size, edge size and mode count.
+
+    /**
+     * Default constructor
+     */
+    public WGraph_Compact(){
+        V = new HashMap<>(); // Initialize vertices HashMap.
+        nSize = eSize = MC = 0; // Initialize counter to zero.
+    }
+
+    /**
+     * Copy constructor
+     * Performs a deep copy of the given graph.
+     * @param graph - the other graph.
+     */
+    public WGraph_Compact(weighted_graph graph){
+        this();
+        if(graph != null) { // null graphs are not accepted.
+            for (node_info v : graph.getV()) // Copy all nodes first.
+                addNode(v.getKey());
+            for (node_info v : graph.getV()) { // Then copy all edges.
+                int key1 = v.getKey();
+                graph.forEachNeighbor(key1, (key2, w) -> {
+                    if (key1 < key2) // Every undirected edge is connected once.
+                        connect(key1, key2, w);
+                });
+            }
+        }
+    }
+
+    /**
+     * Returns the node with the specified key or null if none.
+     * @param key - an integer key greater or equal to zero.
+     * @return - node_info object's pointer.
+     */
+    @Override
+    public node_info getNode(int key) {
+        return V.get(key);
+    }
+
+    /**
+     * Checks if there is an edged between node1 to node2.
+     * @param node1 - first node key.
+     * @param node2 - second node key.
+     * @return true/false depending on if the edge exist or not.
+     */
+    @Override
+    public boolean hasEdge(int node1, int node2) {
+        Node n1 = V.get(node1);
+        if(n1 == null || n1.adj == null || node1 == node2) // No such node, no edges at all or the same node.
+            return false;
+        return n1.adj.containsKey(node2);
+    }
+
+    /**
+     * Returns the weight of the edged which connects node1 to node2.
+     * @param node1 - first node key.
+     * @param node2 - second node key.
+     * @return - the weight between node1 to node2, or -1 if there is no such edge.
+     */
+    @Override
+    public double getEdge(int node1, int node2) {
+        Node n1 = V.get(node1);
+        if(n1 == null || n1.adj == null || node1 == node2)
+            return -1;
+        return n1.adj.get(node2, -1);
+    }
+
+    /**
+     * Adds a new node to the graph with the specified key.
+     * @param key - the key to insert.
+     */
+    @Override
+    public void addNode(int key) {
+        if(key < 0 || V.containsKey(key)) // If key is negative or the node is already exist, simply do nothing.
+            return;
+        V.put(key, new Node(key));
+        nSize++; // Count node addition (+1).
+        MC++; // Count modification (+1).
+    }
+
+    /**
+     * Connects two vertices from the graph with a given weight.
+     * @param node1 - first node.
+     * @param node2 - second node.
+     * @param w - desired weight.
+     */
+    @Override
+    public void connect(int node1, int node2, double w) {
+        if(w < 0.0 || (node1 == node2)) // Negative weights are illegal. Also no need to update if node1 == node2.
+            return;
+        Node n1 = V.get(node1), n2 = V.get(node2);
+        if(n1 == null || n2 == null) // Both vertices must exist.
+            return;
+        if(n1.adjacency().put(node2, w)) { // A new edge.
+            n2.adjacency().put(node1, w);
+            eSize++; // Count edge size (+1).
+        } else { // The edge is already exist, only need to update weight.
+            n2.adj.put(node1, w);
+        }
+        MC++; // Count modification (+1).
+    }
+
+    /**
+     * Returns the collection of vertices.
+     * @return - the collection of all vertices in the graph.
+     */
+    @Override
+    public Collection<node_info> getV() {
+        return Collections.unmodifiableCollection(V.values()); // A view of the vertices. Time complexity O(1).
+    }
+
+    /**
+     * Returns the collection of neighbors related to the specified node (key).
+     * This method runs in time complexity of O(K), where k is the degree of node_id.
+     * @param node_id - node key.
+     * @return - a collection representing the neighbors of the specified node (key).
+     */
+    @Override
+    public Collection<node_info> getV(int node_id) {
+        Node n = V.get(node_id);
+        if(n == null || n.adj == null) // No such node or no neighbors at all.
+            return new ArrayList<>(0);
+        ArrayList<node_info> collection = new ArrayList<>(n.adj.size());
+        for(int slot = 0; slot < n.adj.capacity(); slot++) { // Iterate the used slots of the adjacency map.
+            int key = n.adj.keyAt(slot);
+            if(key >= 0)
+                collection.add(V.get(key));
+        }
+        return collection;
+    }
+
+    @Override
+    public void forEachNeighbor(int node_id, neighbor_consumer action) {
+        Node n = V.get(node_id);
+        if(n == null || n.adj == null)
+            return;
+        for(int slot = 0; slot < n.adj.capacity(); slot++) { // Iterate the used slots of the adjacency map.
+            int key = n.adj.keyAt(slot);
+            if(key >= 0)
+                action.accept(key, n.adj.valueAt(slot));
+        }
+    }
+
+    /**
+     * Removes the node with the specified key.
+     * @param key - the node (key) to remove.
+     * @return - the removed node pointer or null if it's not exist.
+     */
+    @Override
+    public node_info removeNode(int key) {
+        Node toRemove = V.remove(key);
+        if(toRemove != null){ // If there is node to remove.
+            if(toRemove.adj != null) {
+                for (int slot = 0; slot < toRemove.adj.capacity(); slot++) { // Remove the node from all its neighbors.
+                    int n = toRemove.adj.keyAt(slot);
+                    if (n >= 0)
+                        V.get(n).adj.remove(key);
+                }
+                eSize -= toRemove.adj.size(); // Update edge size.
+                toRemove.adj = null;
+            }
+            nSize--; // Update the node size.
+            MC++; // Update mode count.
+        }
+        return toRemove; // Return a pointer to the removed object.
+    }
+
+    /**
+     * Removes the edge between node1 to node2.
+     * @param node1 - first node.
+     * @param node2 - second node.
+     */
+    @Override
+    public void removeEdge(int node1, int node2) {
+        if(hasEdge(node1,node2)){ // If the edge between these two exist.
+            V.get(node1).adj.remove(node2);
+            V.get(node2).adj.remove(node1);
+            eSize--; // Update edge size.
+            MC++; // Update mode count.
+        }
+    }
+
+    /**
+     * returns the current number of nodes.
+     * @return - the number of nodes in this graph.
+     */
+    @Override
+    public int nodeSize() {
+        return nSize;
+    }
+
+    /**
+     * returns the current number of edges.
+     * @return - the number of edges in this graph.
+     */
+    @Override
+    public int edgeSize() {
+        return eSize;
+    }
+
+    /**
+     * returns the current mode count.
+     * @return - the number of modifications that was performed on this graph.
+     */
+    @Override
+    public int getMC() {
+        return MC;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("\n");
+        for(node_info n : getV())
+            s.append('(').append(n.getKey()).append(") -> ").append(getV(n.getKey())).append('\n');
+        return s.toString();
+    }
+
+    /**
+     * This class represents a single vertex of the graph together with its adjacency map.
+     */
+    private static class Node implements node_info, Serializable {
+        private static final long serialVersionUID = 6929481428192126328L; // Pinned (see WGraph_Compact).
+
+        private final int key; // Node's key
+        private String info; // Used for coloring purposes (by algorithms).
+        private double tag; // Used to store temporal weight.
+        private IntDoubleHashMap adj; // Neighbor key -> edge weight (null until the first edge).
+
+        /**
+         * Default constructor.
+         * @param key
+         */
+        Node(int key){
+            this.key = key;
+            this.info = "";
+            this.tag = 0.0;
+        }
+
+        /**
+         * Returns the adjacency map, allocating it on first use.
+         * @return - the adjacency map of this node.
+         */
+        IntDoubleHashMap adjacency(){
+            if(adj == null)
+                adj = new IntDoubleHashMap();
+            return adj;
+        }
+
+        @Override
+        public int getKey() {
+            return key;
+        }
+
+        @Override
+        public String getInfo() {
+            return info;
+        }
+
+        @Override
+        public void setInfo(String s) {
+            this.info = s;
+        }
+
+        @Override
+        public double getTag() {
+            return tag;
+        }
+
+        @Override
+        public void setTag(double t) {
+            this.tag = t;
+        }
+
+        @Override
+        public String toString() {
+            return ""+key;
+        }
+
+        /**
+         * Override of equals method.
+         * The equality is determined by keys.
+         * @param o - the object to compare with this node.
+         * @return - true/false - depending on equality.
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return key == ((Node) o).key;
+        }
+
+        @Override
+        public int hashCode() {
+            return Integer.hashCode(key);
+        }
+    }
+
+    /**
+     * Override of equals method.
+     * The equality is determined by the node keys and the edges (except MC).
+     * @param o - the object to compare with this graph.
+     * @return - true/false - depending on equality.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        WGraph_Compact other = (WGraph_Compact) o;
+        if (nSize != other.nSize || eSize != other.eSize)
+            return false;
+        for (Node n : V.values()) { // Compare the nodes and their adjacency maps.
+            Node m = other.V.get(n.key);
+            if (m == null)
+                return false;
+            int d1 = n.adj == null ? 0 : n.adj.size(), d2 = m.adj == null ? 0 : m.adj.size();
+            if (d1 != d2 || (d1 > 0 && !n.adj.equals(m.adj)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Override of the default hashCode method for graph.
+     * @return - the hash sum of all nodes and edges (except MC).
+     */
+    @Override
+    public int hashCode() {
+        int h = Objects.hash(nSize, eSize);
+        for (Node n : V.values())
+            h += n.key ^ (n.adj == null || n.adj.size() == 0 ? 0 : n.adj.hashCode());
+        return h;
+    }
+}
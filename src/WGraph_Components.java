@@ -0,0 +1,148 @@
+package ex1.src;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * This class represents the connected components of a graph: a component id for every node and the component sizes.
+ * The components are labeled in parallel by a lock free union-find over a CSR snapshot: every edge is united by
+ * the worker thread which owns its lower endpoint, a root is always linked under a smaller root with a
+ * compare-and-set (so no cycle can form and the final root of every component is its smallest index),
+ * and paths are halved while they are walked.
+ * Component ids are 0..count()-1, in the order of the smallest node key of every component.
+ */
+public final class WGraph_Components {
+    private final KeyIndex index; // Key <-> dense index mapping (same as the snapshot's).
+    private final int[] label; // Component id of every dense index.
+    private final int[] sizes; // Number of nodes of every component.
+    private final int largest; // Id of the largest component (-1 for an empty graph).
+    private final int mc; // The mode count of the snapshot.
+
+    /**
+     * Labels the components of the given snapshot (in parallel, on the common fork-join pool).
+     * @param csr - the CSR snapshot.
+     */
+    public WGraph_Components(WGraph_CSR csr) {
+        int n = csr.size();
+        int[] keys = new int[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = csr.keyAt(i);
+        this.index = new KeyIndex(keys);
+        this.mc = csr.getMC();
+        AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        IntStream.range(0, n).parallel().forEach(v -> parent.set(v, v));
+        IntStream.range(0, n).parallel().forEach(u -> {
+            for (int p = csr.begin(u), end = csr.end(u); p < end; p++) {
+                int v = csr.neighborAt(p);
+                if (u < v) // Every undirected edge once.
+                    union(parent, u, v);
+            }
+        });
+        int[] root = new int[n];
+        IntStream.range(0, n).parallel().forEach(v -> root[v] = find(parent, v));
+        int[] id = new int[n]; // Component id of every root.
+        int count = 0;
+        for (int v = 0; v < n; v++) // The root is the smallest index, so it is met first.
+            if (root[v] == v)
+                id[v] = count++;
+        this.label = new int[n];
+        this.sizes = new int[count];
+        for (int v = 0; v < n; v++)
+            sizes[label[v] = id[root[v]]]++;
+        int best = -1;
+        for (int c = 0; c < count; c++)
+            if (best < 0 || sizes[c] > sizes[best])
+                best = c;
+        this.largest = best;
+    }
+
+    /**
+     * Returns the root of v, halving the path on the way (every visited node is linked to its grandparent).
+     * @param parent - the parent array.
+     * @param v - dense index.
+     * @return - the current root of v.
+     */
+    private static int find(AtomicIntegerArray parent, int v) {
+        while (true) {
+            int p = parent.get(v);
+            if (p == v)
+                return v;
+            int gp = parent.get(p);
+            if (gp != p)
+                parent.compareAndSet(v, p, gp); // Only ever points to an ancestor, so a lost race is harmless.
+            v = gp;
+        }
+    }
+
+    /**
+     * Unites the components of u and v (lock free).
+     * @param parent - the parent array.
+     * @param u - dense index.
+     * @param v - dense index.
+     */
+    private static void union(AtomicIntegerArray parent, int u, int v) {
+        while (true) {
+            int ru = find(parent, u), rv = find(parent, v);
+            if (ru == rv)
+                return;
+            if (ru > rv) { // Link the larger root under the smaller one.
+                int t = ru;
+                ru = rv;
+                rv = t;
+            }
+            if (parent.compareAndSet(rv, rv, ru)) // Fails if rv stopped being a root meanwhile, then retry.
+                return;
+        }
+    }
+
+    /**
+     * Returns the number of components.
+     * @return - the number of components (0 for an empty graph).
+     */
+    public int count() {
+        return sizes.length;
+    }
+
+    /**
+     * Returns the component id of a node.
+     * @param key - node key.
+     * @return - the component id, or -1 if there is no such node.
+     */
+    public int componentOf(int key) {
+        int i = index.indexOf(key);
+        return i < 0 ? -1 : label[i];
+    }
+
+    /**
+     * Returns the number of nodes of a component.
+     * @param component - component id.
+     * @return - the size of the component.
+     */
+    public int size(int component) {
+        return sizes[component];
+    }
+
+    /**
+     * Returns the id of the largest component (the first one if there are several).
+     * @return - the component id, or -1 for an empty graph.
+     */
+    public int largest() {
+        return largest;
+    }
+
+    /**
+     * Returns the component ids of all nodes, in ascending key order (like WGraph_Algo.nodeKeys()).
+     * @return - a new array of component ids.
+     */
+    public int[] labels() {
+        return label.clone();
+    }
+
+    /**
+     * Returns the mode count of the snapshot these components were computed for.
+     * @return - mode count.
+     */
+    public int getMC() {
+        return mc;
+    }
+}
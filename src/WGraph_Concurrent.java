@@ -0,0 +1,412 @@
+package ex1.src;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class represents an undirected weighted graph which can be modified and read by many threads at once.
+ * - Nodes and adjacency rows are ConcurrentHashMaps, so every read (getNode, hasEdge, getEdge, getV) is lock free.
+ * - Modifications lock a stripe of a fixed lock array chosen by node key. connect and removeEdge lock the two
+ *   stripes of their nodes in stripe order (so they never deadlock), and update both rows under them, so an edge
+ *   and its weight are always the same in both directions once the call returns. removeNode locks the stripes of
+ *   the node and all its neighbors (in stripe order) and removes the node with all its edges at once.
+ * - The node, edge and mode counters are LongAdders, so counting never becomes a point of contention.
+ *   A counter read while other threads modify the graph is a moment in between, like the sizes of ConcurrentHashMap.
+ * - getV() and getV(int) are live views with weakly consistent iteration: they never throw
+ *   ConcurrentModificationException and reflect some of the changes made during the iteration.
+ * Modifications of nodes with keys in different stripes run in parallel, so the ingest throughput grows with the
+ * number of cores. WGraph_Algo queries run on a snapshot (getCSR()) which is built from a weakly consistent pass over
+ * the rows, and rebuilt when the mode count changes.
+ */
+public class WGraph_Concurrent implements weighted_graph, Serializable {
+    private static final long serialVersionUID = 6794773622449572530L; // Pinned, so saved graphs stay loadable.
+    private static final int STRIPES = 256; // Number of locks (a power of two, well above the number of cores).
+
+    private final ConcurrentHashMap<Integer, node_info> V = new ConcurrentHashMap<>(); // Vertices.
+    private final ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, Double>> E = new ConcurrentHashMap<>(); // Rows.
+    private final LongAdder nSize = new LongAdder(), eSize = new LongAdder(), MC = new LongAdder(); // Counters.
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private transient volatile WGraph_CSR csr; // Cached snapshot (rebuilt when MC changes).
+
+    /**
+     * Default constructor
+     */
+    public WGraph_Concurrent() {
+        for (int i = 0; i < STRIPES; i++)
+            locks[i] = new ReentrantLock();
+    }
+
+    /**
+     * Copy constructor
+     * Performs a deep copy of the given graph.
+     * @param graph - the other graph.
+     */
+    public WGraph_Concurrent(weighted_graph graph) {
+        this();
+        if (graph != null) { // null graphs are not accepted.
+            for (node_info v : graph.getV()) // Copy all nodes first.
+                addNode(v.getKey());
+            for (node_info v : graph.getV()) { // Then copy all edges.
+                int key1 = v.getKey();
+                graph.forEachNeighbor(key1, (key2, w) -> {
+                    if (key1 < key2) // Every undirected edge is connected once.
+                        connect(key1, key2, w);
+                });
+            }
+        }
+    }
+
+    @Override
+    public node_info getNode(int key) {
+        return V.get(key);
+    }
+
+    @Override
+    public boolean hasEdge(int node1, int node2) {
+        Map<Integer, Double> row = E.get(node1);
+        return node1 != node2 && row != null && row.containsKey(node2);
+    }
+
+    @Override
+    public double getEdge(int node1, int node2) {
+        Map<Integer, Double> row = E.get(node1);
+        Double w = node1 == node2 || row == null ? null : row.get(node2);
+        return w == null ? -1 : w;
+    }
+
+    @Override
+    public void addNode(int key) {
+        if (key < 0 || V.containsKey(key)) // If key is negative or the node already exists, do nothing.
+            return;
+        ReentrantLock l = lockOf(key);
+        l.lock();
+        try {
+            if (V.containsKey(key)) // Added by another thread meanwhile.
+                return;
+            E.put(key, new ConcurrentHashMap<>()); // The row first, so a visible node always has a row.
+            V.put(key, new NodeInfo(key));
+            nSize.increment();
+            MC.increment();
+        } finally {
+            l.unlock();
+        }
+    }
+
+    @Override
+    public void connect(int node1, int node2, double w) {
+        if (w < 0.0 || node1 == node2) // Negative weights are illegal, and there are no self loops.
+            return;
+        int s1 = stripe(node1), s2 = stripe(node2);
+        ReentrantLock first = locks[Math.min(s1, s2)], second = locks[Math.max(s1, s2)]; // In stripe order (may be the same lock).
+        first.lock();
+        second.lock();
+        try {
+            if (!V.containsKey(node1) || !V.containsKey(node2)) // Both nodes must exist (and can't be removed now).
+                return;
+            if (E.get(node1).put(node2, w) == null)
+                eSize.increment();
+            E.get(node2).put(node1, w);
+            MC.increment();
+        } finally {
+            second.unlock();
+            first.unlock();
+        }
+    }
+
+    @Override
+    public Collection<node_info> getV() {
+        return Collections.unmodifiableCollection(V.values());
+    }
+
+    @Override
+    public Collection<node_info> getV(int node_id) {
+        ConcurrentHashMap<Integer, Double> row = E.get(node_id);
+        return row == null ? Collections.emptyList() : new Neighbors(row);
+    }
+
+    @Override
+    public void forEachNeighbor(int node_id, neighbor_consumer action) {
+        ConcurrentHashMap<Integer, Double> row = E.get(node_id);
+        if (row != null)
+            for (Map.Entry<Integer, Double> e : row.entrySet()) // Weakly consistent, like getV(node_id).
+                if (V.containsKey(e.getKey())) // Skips neighbors which were removed meanwhile.
+                    action.accept(e.getKey(), e.getValue());
+    }
+
+    @Override
+    public node_info removeNode(int key) {
+        if (!V.containsKey(key))
+            return null;
+        boolean[] held = new boolean[STRIPES];
+        while (true) {
+            ConcurrentHashMap<Integer, Double> row = E.get(key);
+            if (row == null)
+                return null;
+            boolean[] need = new boolean[STRIPES]; // The stripes of the node and of all its current neighbors.
+            need[stripe(key)] = true;
+            for (Integer n : row.keySet())
+                need[stripe(n)] = true;
+            for (int s = 0; s < STRIPES; s++) { // Lock them in stripe order.
+                if (need[s]) {
+                    locks[s].lock();
+                    held[s] = true;
+                }
+            }
+            try {
+                boolean covered = E.get(key) == row;
+                for (Integer n : row.keySet()) // A neighbor may have been connected before the node's stripe was locked.
+                    covered &= need[stripe(n)];
+                if (!covered)
+                    continue; // Retry with the new neighbors.
+                node_info removed = V.remove(key);
+                if (removed == null)
+                    return null;
+                for (Integer n : row.keySet()) { // No neighbor can change now: remove all the edges at once.
+                    E.get(n).remove(key);
+                    eSize.decrement();
+                }
+                E.remove(key);
+                nSize.decrement();
+                MC.increment();
+                return removed;
+            } finally {
+                for (int s = STRIPES - 1; s >= 0; s--) {
+                    if (held[s]) {
+                        locks[s].unlock();
+                        held[s] = false;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void removeEdge(int node1, int node2) {
+        if (node1 == node2)
+            return;
+        int s1 = stripe(node1), s2 = stripe(node2);
+        ReentrantLock first = locks[Math.min(s1, s2)], second = locks[Math.max(s1, s2)]; // In stripe order (may be the same lock).
+        first.lock();
+        second.lock();
+        try {
+            ConcurrentHashMap<Integer, Double> row1 = E.get(node1), row2 = E.get(node2);
+            if (row1 == null || row2 == null || row1.remove(node2) == null)
+                return;
+            row2.remove(node1);
+            eSize.decrement();
+            MC.increment();
+        } finally {
+            second.unlock();
+            first.unlock();
+        }
+    }
+
+    @Override
+    public int nodeSize() {
+        return nSize.intValue();
+    }
+
+    @Override
+    public int edgeSize() {
+        return eSize.intValue();
+    }
+
+    @Override
+    public int getMC() {
+        return MC.intValue();
+    }
+
+    /**
+     * Returns a CSR snapshot of this graph, cached until the mode count changes.
+     * While other threads modify the graph, the snapshot is built from a weakly consistent pass: every row is
+     * copied as it is at the moment it is read, and edges to nodes which are gone by then are dropped.
+     * @return - a CSR snapshot.
+     */
+    public WGraph_CSR getCSR() {
+        WGraph_CSR s = csr;
+        int mc = getMC();
+        if (s == null || s.getMC() != mc) {
+            s = buildCSR(mc);
+            csr = s;
+        }
+        return s;
+    }
+
+    /**
+     * Builds a snapshot from copies of the rows.
+     * @param mc - the mode count read before the build (so a change during the build makes it stale).
+     */
+    private WGraph_CSR buildCSR(int mc) {
+        int[] keys = new int[16];
+        int n = 0;
+        for (Integer key : V.keySet()) {
+            if (n == keys.length)
+                keys = Arrays.copyOf(keys, n * 2);
+            keys[n++] = key;
+        }
+        keys = Arrays.copyOf(keys, n);
+        Arrays.sort(keys);
+        KeyIndex index = new KeyIndex(keys);
+        int[] offsets = new int[n + 1];
+        int[] neighbors = new int[16];
+        double[] weights = new double[16];
+        int p = 0;
+        for (int i = 0; i < n; i++) {
+            ConcurrentHashMap<Integer, Double> row = E.get(keys[i]);
+            if (row != null) {
+                for (Map.Entry<Integer, Double> e : row.entrySet()) {
+                    int j = index.indexOf(e.getKey());
+                    if (j < 0) // Added after the keys were collected.
+                        continue;
+                    if (p == neighbors.length) {
+                        neighbors = Arrays.copyOf(neighbors, p * 2);
+                        weights = Arrays.copyOf(weights, p * 2);
+                    }
+                    neighbors[p] = j;
+                    weights[p++] = e.getValue();
+                }
+            }
+            offsets[i + 1] = p;
+        }
+        return new WGraph_CSR(index, offsets, Arrays.copyOf(neighbors, p), Arrays.copyOf(weights, p), mc);
+    }
+
+    private static int stripe(int key) {
+        return KeyIndex.mix(key) & (STRIPES - 1);
+    }
+
+    private ReentrantLock lockOf(int key) {
+        return locks[stripe(key)];
+    }
+
+    /**
+     * Override of equals method.
+     * The equality is determined by the nodes and the weighted edges (except MC).
+     * @param o - the object to compare with this graph.
+     * @return - true/false - depending on equality.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        WGraph_Concurrent other = (WGraph_Concurrent) o;
+        return V.keySet().equals(other.V.keySet()) && E.equals(other.E);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(V.keySet(), E);
+    }
+
+    /**
+     * A live view of the neighbors of one node, with a weakly consistent iterator.
+     */
+    private class Neighbors extends AbstractCollection<node_info> {
+        private final ConcurrentHashMap<Integer, Double> row;
+
+        Neighbors(ConcurrentHashMap<Integer, Double> row) {
+            this.row = row;
+        }
+
+        @Override
+        public Iterator<node_info> iterator() {
+            Iterator<Integer> keys = row.keySet().iterator();
+            return new Iterator<node_info>() {
+                private node_info next = advance();
+
+                private node_info advance() { // Skips neighbors which were removed meanwhile.
+                    while (keys.hasNext()) {
+                        node_info n = V.get(keys.next());
+                        if (n != null)
+                            return n;
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public node_info next() {
+                    if (next == null)
+                        throw new NoSuchElementException();
+                    node_info n = next;
+                    next = advance();
+                    return n;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return row.size();
+        }
+    }
+
+    /**
+     * This class represents a single vertex. Its info and tag are volatile, so they can be shared between threads.
+     */
+    private static class NodeInfo implements node_info, Serializable {
+        private static final long serialVersionUID = 6605815034359955352L; // Pinned (see WGraph_Concurrent).
+
+        private final int key;
+        private volatile String info = "";
+        private volatile double tag;
+
+        NodeInfo(int key) {
+            this.key = key;
+        }
+
+        @Override
+        public int getKey() {
+            return key;
+        }
+
+        @Override
+        public String getInfo() {
+            return info;
+        }
+
+        @Override
+        public void setInfo(String s) {
+            info = s;
+        }
+
+        @Override
+        public double getTag() {
+            return tag;
+        }
+
+        @Override
+        public void setTag(double t) {
+            tag = t;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof NodeInfo && ((NodeInfo) o).key == key;
+        }
+
+        @Override
+        public int hashCode() {
+            return Integer.hashCode(key);
+        }
+
+        @Override
+        public String toString() {
+            return "" + key;
+        }
+    }
+}
@@ -9,10 +9,16 @@ import java.util.*;
  * The implementation is based on a compact and efficient representation using HashMap data structure.
  */
 public class WGraph_DS implements weighted_graph, Serializable {
+    private static final long serialVersionUID = 4998070249636429746L; // The original one, so old saved files still load.
     private HashMap<Integer, node_info> V; // HashMap representation of the graph vertices.
     private HashMap<Integer, HashMap<Integer, Double>> E; // HashMap representation of the graph edges.
 
     private int nSize, eSize, MC; // node size, edge size and mode count.
+    private transient volatile WGraph_CSR csr; // Cached CSR snapshot (rebuilt when MC changes).
+    private transient volatile UnionFind components; // Connected components, null after a removal (rebuilt lazily).
+    private transient graph_listener[] listeners; // Observers of the changes (null if none).
+    private transient boolean shared; // E is shared with a snapshot (copied before the next change).
+    private transient HashSet<Integer> ownRows; // Rows copied since the last snapshot (null if none was taken).
 
     /**
      * Default constructor
@@ -21,28 +27,93 @@ public class WGraph_DS implements weighted_graph, Serializable {
         V = new HashMap<>(); // Initialize vertices HashMap.
         E = new HashMap<>(); // Initialize edges HashMap.
         nSize = eSize = MC = 0; // Initialize counter to zero.
+        components = new UnionFind(0);
     }
 
     /**
      * Copy constructor
-     * Performs a deep copy of this graph..
+     * Performs a deep copy of the given graph, structurally: the rows of another WGraph_DS are cloned HashMap by
+     * HashMap, any other graph is copied row by row from its CSR snapshot. No addNode/connect calls are made and
+     * every HashMap is created with its final capacity. The copy starts with the mode count of the original.
      * @param graph_ds - the other graph.
      */
     public WGraph_DS(weighted_graph graph_ds){
-        if(graph_ds != null) { // null graphs are not accepted.
-            V = new HashMap<>(); // Initialize vertices HashMap.
-            E = new HashMap<>(); // Initialize edges HashMap.
-            nSize = eSize = MC = 0; // Initialize counters to zero.
-            for (node_info v : graph_ds.getV()) { // For each node from old graph.
-                int key1 = v.getKey(); // Copy it's key.
-                addNode(key1); // Create exactly the same node in new the graph.
-                for (node_info e : graph_ds.getV(key1)) { // For each neighbor e of v copy the key.
-                    int key2 = e.getKey();
-                    addNode(key2); // Create exactly the same node in new the graph.
-                    connect(key1, key2, graph_ds.getEdge(key1, key2)); // If key1 and key2 were connected in the old graph, then connect them in the new graph.
-                }
+        if(graph_ds instanceof WGraph_DS) // null graphs are not accepted.
+            copyRows((WGraph_DS) graph_ds);
+        else if(graph_ds != null)
+            fill(WGraph_CSR.current(graph_ds));
+    }
+
+    /**
+     * Builds a graph with exactly the nodes and edges of a snapshot, without going through addNode/connect
+     * (every HashMap is created with its final capacity). The snapshot becomes the cached CSR of the new graph.
+     * Used by the binary file format, the edge list importer and the generators (see WGraph_Format, WGraph_EdgeList,
+     * WGraph_Generator).
+     * @param csr - the snapshot.
+     * @return - a new graph whose mode count is the mode count of the snapshot.
+     */
+    static WGraph_DS of(WGraph_CSR csr) {
+        WGraph_DS g = new WGraph_DS();
+        g.fill(csr);
+        return g;
+    }
+
+    /**
+     * Fills an empty graph with the nodes and edges of a snapshot (see of).
+     */
+    private void fill(WGraph_CSR csr) {
+        int n = csr.size();
+        V = new HashMap<>(capacity(n));
+        E = new HashMap<>(capacity(n));
+        UnionFind uf = new UnionFind(n);
+        for (int i = 0; i < n; i++) {
+            int key = csr.keyAt(i);
+            V.put(key, new NodeInfo(key));
+            uf.add(key);
+        }
+        for (int i = 0; i < n; i++) {
+            int key = csr.keyAt(i);
+            HashMap<Integer, Double> row = new HashMap<>(capacity(csr.end(i) - csr.begin(i)));
+            for (int p = csr.begin(i); p < csr.end(i); p++) {
+                int other = csr.keyAt(csr.neighborAt(p));
+                row.put(other, csr.weightAt(p));
+                if (other > key)
+                    uf.union(key, other);
             }
+            E.put(key, row);
         }
+        nSize = n;
+        eSize = csr.entries() / 2; // Every edge is stored in both rows.
+        MC = csr.getMC();
+        components = uf;
+        this.csr = csr;
+    }
+
+    /**
+     * Fills an empty graph with clones of the rows of another graph (see the copy constructor).
+     */
+    private void copyRows(WGraph_DS other) {
+        V = new HashMap<>(capacity(other.nSize));
+        E = new HashMap<>(capacity(other.nSize));
+        for (Map.Entry<Integer, HashMap<Integer, Double>> e : other.E.entrySet()) {
+            Integer key = e.getKey();
+            V.put(key, new NodeInfo(key));
+            E.put(key, new HashMap<>(e.getValue())); // Copies the table, keys and weights are immutable boxes.
+        }
+        nSize = other.nSize;
+        eSize = other.eSize;
+        MC = other.MC;
+        components = null; // Rebuilt on the first componentCount().
+        WGraph_CSR s = other.csr;
+        if (s != null && s.getMC() == MC) // The same nodes and edges, so the same snapshot.
+            csr = s;
+    }
+
+    /**
+     * Returns the initial capacity of a HashMap which holds the given number of entries without resizing.
+     */
+    private static int capacity(int entries) {
+        return entries * 4 / 3 + 1;
     }
 
     /**
@@ -63,12 +134,10 @@ public class WGraph_DS implements weighted_graph, Serializable {
      */
     @Override
     public boolean hasEdge(int node1, int node2) {
-        node_info n1 = V.get(node1), n2 = V.get(node2); // get node1 object pointer.
-        if(n1 == null || n2 == null) // If it's null. means the node doesn't exist.
-            return false;
         if(node1 == node2) // Every node is connected to itself (trivial), means there is no such edge.
             return false;
-       return E.get(node1).get(node2) != null; // Should return true if the weight between this nodes exist.
+        HashMap<Integer, Double> row = E.get(node1); // null means node1 doesn't exist.
+        return row != null && row.containsKey(node2); // A missing node2 is in no row.
     }
 
     /**
@@ -79,12 +148,9 @@ public class WGraph_DS implements weighted_graph, Serializable {
      */
     @Override
     public double getEdge(int node1, int node2) {
-        if(hasEdge(node1,node2)) { // First check if there is an edge from node1 to node2.
-            if(node1 == node2) // The weight from node to itself is 0.
-                return 0;
-            return E.get(node1).get(node2); // Finally return the weight.
-        }
-        return -1; // If there is no edge like this, return -1.
+        HashMap<Integer, Double> row = node1 == node2 ? null : E.get(node1); // One lookup for the row, one for the weight.
+        Double w = row == null ? null : row.get(node2);
+        return w == null ? -1 : w; // If there is no edge like this, return -1.
     }
 
     /**
@@ -96,9 +162,18 @@ public class WGraph_DS implements weighted_graph, Serializable {
         if(key < 0 || getNode(key) != null) // If key is negative or the node is already exist, simply do nothing.
             return;
         V.put(key, new NodeInfo(key)); // Put key to the vertices HashMap.
+        unshare();
         E.put(key,new HashMap<>()); // Put key to edges HashMap.
+        if(ownRows != null) // A new row is never shared.
+            ownRows.add(key);
+        UnionFind uf = components;
+        if(uf != null) // A new node is a new component.
+            uf.add(key);
         nSize++; // Count node addition (+1).
         MC++; // Count modification (+1).
+        if(listeners != null)
+            for(graph_listener l : listeners)
+                l.nodeAdded(key);
     }
 
     /**
@@ -111,18 +186,87 @@ public class WGraph_DS implements weighted_graph, Serializable {
     public void connect(int node1, int node2, double w) {
         if(w < 0.0 || (node1 == node2)) // Negative weights are illegal. Also no need to update if node1 == node2.
             return;
-        if (hasEdge(node1,node2)){ // If the edge is already exist, then only need to update weight.
-            E.get(node1).put(node2,w);
-            MC++;
-        }else { // If the edge is not already exist.
-            node_info n1,n2;
-            if ((n1 = V.get(node1)) != null && (n2 = V.get(node2)) != null) { // If both vertices exist.
-                E.get(node1).put(node2, w); // Put node2 as a neighbor of node1.
-                E.get(node2).put(node1, w); // Put node1 as a neighbor of node2.
-                eSize++; // Count edge size (+1).
-                MC++; // Count modification (+1).
+        HashMap<Integer, Double> row1 = E.get(node1), row2; // Every node has a row, so no V lookups are needed.
+        if(row1 == null || (row2 = E.get(node2)) == null) // Both vertices must exist.
+            return;
+        Double old = own(node1, row1).put(node2, w); // Put node2 as a neighbor of node1 (or update the weight).
+        own(node2, row2).put(node1, w); // Update both directions, the graph is undirected.
+        if(old == null) { // A new edge.
+            UnionFind uf = components;
+            if(uf != null) // The edge may merge two components.
+                uf.union(node1, node2);
+            eSize++; // Count edge size (+1).
+        }
+        MC++; // Count modification (+1).
+        fireEdgeChanged(node1, node2, old == null ? -1 : old, w);
+    }
+
+    /**
+     * Adds many nodes at once. The HashMaps are resized once for all the new keys, then every key is added as by
+     * addNode (negative and existing keys are skipped).
+     * @param keys - the keys to insert.
+     */
+    public void addNodes(int[] keys) {
+        if(keys == null)
+            throw new IllegalArgumentException("keys must not be null");
+        int expected = nSize + keys.length;
+        if(expected > 2 * V.size()) { // Grow once instead of doubling several times.
+            HashMap<Integer, node_info> v = new HashMap<>(capacity(expected));
+            v.putAll(V);
+            V = v;
+            HashMap<Integer, HashMap<Integer, Double>> e = new HashMap<>(capacity(expected));
+            e.putAll(E);
+            E = e; // A new map, so it is not shared with a snapshot (the rows still may be).
+            shared = false;
+        }
+        for(int key : keys)
+            addNode(key);
+    }
+
+    /**
+     * Connects many pairs of nodes at once: node1[i] with node2[i] by weight w[i], as by connect (pairs of missing
+     * nodes, self loops and negative weights are skipped). The empty rows of the nodes are first created with the
+     * capacity of all their new edges, so they never resize.
+     * @param node1 - first nodes.
+     * @param node2 - second nodes.
+     * @param w - weights.
+     * @throws IllegalArgumentException if the arrays are null or of different lengths.
+     */
+    public void connectAll(int[] node1, int[] node2, double[] w) {
+        if(node1 == null || node2 == null || w == null || node1.length != node2.length || node1.length != w.length)
+            throw new IllegalArgumentException("connectAll needs three arrays of the same length");
+        KeySlots slots = new KeySlots(Math.min(2 * node1.length, nSize));
+        int[] degree = new int[16]; // Upper bound of the new edges of every node, by slot.
+        for(int i = 0; i < node1.length; i++) {
+            if(w[i] < 0.0 || node1[i] == node2[i] || node1[i] < 0 || node2[i] < 0)
+                continue;
+            degree = count(slots, degree, node1[i]);
+            degree = count(slots, degree, node2[i]);
+        }
+        for(int s = 0; s < slots.size(); s++) {
+            int key = slots.keyAt(s);
+            HashMap<Integer, Double> row = E.get(key);
+            if(row != null && row.isEmpty() && degree[s] > 12) { // Smaller rows fit the default capacity.
+                unshare();
+                E.put(key, new HashMap<>(capacity(degree[s])));
+                if(ownRows != null)
+                    ownRows.add(key);
             }
         }
+        for(int i = 0; i < node1.length; i++)
+            connect(node1[i], node2[i], w[i]);
+    }
+
+    /**
+     * Counts one more edge of a key (see connectAll).
+     * @return - the counts, grown if needed.
+     */
+    private static int[] count(KeySlots slots, int[] degree, int key) {
+        int s = slots.add(key);
+        if(s == degree.length)
+            degree = Arrays.copyOf(degree, 2 * s);
+        degree[s]++;
+        return degree;
     }
 
     /**
@@ -151,6 +295,14 @@ public class WGraph_DS implements weighted_graph, Serializable {
         return collection; // Finally return thr collection.
     }
 
+    @Override
+    public void forEachNeighbor(int node_id, neighbor_consumer action) {
+        HashMap<Integer, Double> row = E.get(node_id);
+        if(row != null)
+            for(Map.Entry<Integer, Double> e : row.entrySet()) // The weight comes with the key, no lookups.
+                action.accept(e.getKey(), e.getValue());
+    }
+
     /**
      * Removes the node with the specified key.
      * @param key - the node (key) to remove.
@@ -160,15 +312,24 @@ public class WGraph_DS implements weighted_graph, Serializable {
     public node_info removeNode(int key) {
         node_info toRemove = getNode(key);
         if(toRemove != null){ // If there is node to remove.
-            int removedEdges = getV(key).size(); // How many edges to be removed (used for edge count tracking).
+            int removedEdges = E.get(key).size(); // How many edges to be removed (used for edge count tracking).
             for(node_info n : getV(key)){ // For each neighbor of the specified node (key).
-                E.get(n.getKey()).remove(key); // Remove the specified node from the neighbors list of the neighbor.
+                row(n.getKey()).remove(key); // Remove the specified node from the neighbors list of the neighbor.
+                double w = row(key).remove(n.getKey()); // And the neighbor from the node's list (the listeners see one edge less at a time).
+                fireEdgeChanged(key, n.getKey(), w, -1);
             }
+            unshare();
             E.remove(key); // Finally remove the specified node from edges HashMap.
+            if(ownRows != null)
+                ownRows.remove(key);
             V.remove(key); // Finally remove the specified node from vertices HashMap.
+            components = null; // A removal may split a component, the union-find can't undo unions.
             nSize--; // Update the node size.
             eSize -= removedEdges; // Update edge size.
             MC++; // Update mode count.
+            if(listeners != null)
+                for(graph_listener l : listeners)
+                    l.nodeRemoved(key);
         }
         return toRemove; // Return a pointer to the removed object.
     }
@@ -183,10 +344,12 @@ public class WGraph_DS implements weighted_graph, Serializable {
         if(hasEdge(node1,node2)){ // If the edge between these two exist.
             if(node1 == node2) // If node1 and node2 are the same. no need to do anything.
                 return;
-            E.get(node1).remove(node2); // Remove the edge data between node1 to node2.
-            E.get(node2).remove(node1); // Remove the edge data between node2 to node1.
+            double w = row(node1).remove(node2); // Remove the edge data between node1 to node2.
+            row(node2).remove(node1); // Remove the edge data between node2 to node1.
+            components = null; // The edge may have been a bridge.
             eSize--; // Update edge size.
             MC++; // Update mode count.
+            fireEdgeChanged(node1, node2, w, -1);
         }
     }
 
@@ -217,19 +380,192 @@ public class WGraph_DS implements weighted_graph, Serializable {
         return MC;
     }
 
+    /**
+     * Registers an observer which is notified after every change of this graph (e.g. WGraph_DynamicSSSP).
+     * The listeners are not serialized or copied.
+     * @param l - the listener.
+     */
+    public void addListener(graph_listener l) {
+        if(l == null)
+            throw new IllegalArgumentException("listener must not be null");
+        graph_listener[] ls = listeners == null ? new graph_listener[0] : listeners;
+        ls = Arrays.copyOf(ls, ls.length + 1);
+        ls[ls.length - 1] = l;
+        listeners = ls;
+    }
+
+    /**
+     * Unregisters an observer.
+     * @param l - the listener.
+     * @return - true iff it was registered.
+     */
+    public boolean removeListener(graph_listener l) {
+        graph_listener[] ls = listeners;
+        if(ls == null)
+            return false;
+        for(int i = 0; i < ls.length; i++) {
+            if(ls[i] == l) {
+                graph_listener[] rest = new graph_listener[ls.length - 1];
+                System.arraycopy(ls, 0, rest, 0, i);
+                System.arraycopy(ls, i + 1, rest, i, rest.length - i);
+                listeners = rest.length == 0 ? null : rest;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Notifies the listeners about an edge change.
+     */
+    private void fireEdgeChanged(int node1, int node2, double oldWeight, double newWeight) {
+        if(listeners != null)
+            for(graph_listener l : listeners)
+                l.edgeChanged(node1, node2, oldWeight, newWeight);
+    }
+
+    /**
+     * Returns a read only point in time view of this graph, tagged with the current mode count.
+     * Taking a snapshot is O(1): the snapshot shares the edges HashMap and all the rows with this graph.
+     * From then on this graph copies a row the first time it changes it, and the (outer) edges HashMap on its first
+     * change, so the snapshot never sees a later change and costs memory only for what changed since it was taken.
+     * Other threads may read the snapshot (and run WGraph_Algo on it) while this graph keeps being modified.
+     * @return - a snapshot of the current state of this graph.
+     */
+    public WGraph_Snapshot snapshot() {
+        shared = true;
+        ownRows = new HashSet<>(); // Every row is shared now.
+        WGraph_CSR s = csr;
+        return new WGraph_Snapshot(E, nSize, eSize, MC, s != null && s.getMC() == MC ? s : null);
+    }
+
+    /**
+     * Returns the row of an existing node for a change, copying it first if a snapshot may still see it.
+     */
+    private HashMap<Integer, Double> row(int key) {
+        return own(key, E.get(key));
+    }
+
+    /**
+     * Returns the given row of a node for a change, copying it first if a snapshot may still see it.
+     */
+    private HashMap<Integer, Double> own(int key, HashMap<Integer, Double> row) {
+        if(ownRows != null && ownRows.add(key)) { // First change of the row since the last snapshot.
+            unshare();
+            row = new HashMap<>(row);
+            E.put(key, row);
+        }
+        return row;
+    }
+
+    /**
+     * Copies the edges HashMap before its first change since the last snapshot (the rows are still shared).
+     */
+    private void unshare() {
+        if(shared) {
+            E = new HashMap<>(E);
+            shared = false;
+        }
+    }
+
+    /**
+     * Returns the neighbors of a node with the edge weights (the inner edges HashMap itself, it must not be modified).
+     * @param key - node key.
+     * @return - neighbor key -> weight, empty if there is no such node.
+     */
+    Map<Integer, Double> neighbors(int key) {
+        HashMap<Integer, Double> n = E.get(key);
+        return n == null ? Collections.emptyMap() : n;
+    }
+
+    /**
+     * Returns the number of connected components of this graph.
+     * The components are tracked incrementally by a union-find structure while nodes and edges are only added,
+     * so this method runs in O(1) time. After a removal the structure is rebuilt once, on the next call (O(n+m)).
+     * @return - the number of connected components (0 for an empty graph).
+     */
+    public int componentCount() {
+        UnionFind uf = components;
+        if(uf == null) {
+            uf = new UnionFind(nSize);
+            for(Integer key : V.keySet())
+                uf.add(key);
+            for(Map.Entry<Integer, HashMap<Integer, Double>> e : E.entrySet()) {
+                int key1 = e.getKey();
+                for(Integer key2 : e.getValue().keySet())
+                    if(key1 < key2) // Every undirected edge once.
+                        uf.union(key1, key2);
+            }
+            components = uf;
+        }
+        return uf.components();
+    }
+
+    /**
+     * Returns an immutable CSR snapshot of this graph.
+     * The snapshot is cached and rebuilt lazily only if the graph was modified since it was built (according to MC).
+     * This method runs in O(1) time if the graph was not modified, otherwise in O(n+m*log(d)).
+     * @return - a CSR snapshot which reflects the current state of the graph.
+     */
+    public WGraph_CSR getCSR() {
+        WGraph_CSR s = csr;
+        if (s == null || s.getMC() != MC) { // No snapshot yet or the graph has changed.
+            s = buildCSR(E, MC);
+            csr = s;
+        }
+        return s;
+    }
+
+    /**
+     * Builds a new CSR snapshot directly from the rows of a graph (see getCSR and WGraph_Snapshot).
+     * @param E - node key -> neighbor key -> weight (every node has a row).
+     * @param MC - the mode count of the snapshot.
+     * @return - a new CSR snapshot.
+     */
+    static WGraph_CSR buildCSR(Map<Integer, ? extends Map<Integer, Double>> E, int MC) {
+        int[] keys = new int[E.size()];
+        int i = 0;
+        for (Integer key : E.keySet())
+            keys[i++] = key;
+        Arrays.sort(keys); // Dense indices follow the key order.
+        KeyIndex index = new KeyIndex(keys);
+        int[] offsets = new int[keys.length + 1];
+        for (i = 0; i < keys.length; i++) // Count the degree of every node.
+            offsets[i + 1] = offsets[i] + E.get(keys[i]).size();
+        int[] neighbors = new int[offsets[keys.length]];
+        double[] weights = new double[neighbors.length];
+        for (i = 0; i < keys.length; i++) { // Fill the rows.
+            int p = offsets[i];
+            for (Map.Entry<Integer, Double> e : E.get(keys[i]).entrySet()) {
+                neighbors[p] = index.indexOf(e.getKey());
+                weights[p++] = e.getValue();
+            }
+        }
+        return new WGraph_CSR(index, offsets, neighbors, weights, MC);
+    }
+
     @Override
     public String toString() {
-        String s = "\n";
-        for(node_info n : getV()){
-            s += "("+n.getKey()+") -> " + getV(n.getKey()).toString() + "\n";
+        StringBuilder sb = new StringBuilder("\n"); // One builder instead of a new String per node.
+        for(Integer key : V.keySet()){
+            sb.append('(').append(key).append(") -> [");
+            boolean first = true;
+            for(Integer n : E.get(key).keySet()){ // Same order and format as getV(key).toString().
+                if(!first)
+                    sb.append(", ");
+                sb.append(n);
+                first = false;
+            }
+            sb.append("]\n");
         }
-        return s;
+        return sb.toString();
     }
 
     /**
      * This class represents a single vertex of an undirected weighted graph.
      */
     private class NodeInfo implements node_info, Serializable{
+        private static final long serialVersionUID = 4096634640408962956L; // The original one (see WGraph_DS).
 
         private int key; // Node's key
         private String info; // Used for coloring purposes (by algorithms).
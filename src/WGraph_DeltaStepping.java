@@ -0,0 +1,221 @@
+package ex1.src;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class computes single source shortest path distances to all nodes with the (parallel) delta-stepping algorithm.
+ * The tentative distances are kept in buckets of width delta. Bucket i holds the nodes whose distance is in
+ * [i*delta, (i+1)*delta). The buckets are processed in increasing order: first the light edges (weight &lt;= delta)
+ * of the bucket are relaxed over and over until the bucket stays empty (light edges may re-insert nodes into it),
+ * then the heavy edges of all the nodes removed from the bucket are relaxed once.
+ * Every relaxation phase runs in parallel on the common fork-join pool. A distance is lowered with a
+ * compare-and-set on its bits (non negative doubles are ordered like their long bits), so the relaxations
+ * need no locks. The bucket structure itself is only changed between the phases, by the calling thread.
+ * The weights are never negative (connect ignores w &lt; 0), which the algorithm relies on.
+ */
+public final class WGraph_DeltaStepping {
+    private static final int SPLIT = 256; // Frontiers up to this size are relaxed by a single task.
+    private static final long INFINITY = Double.doubleToLongBits(Double.POSITIVE_INFINITY);
+
+    private final WGraph_CSR csr;
+    private final double delta; // Bucket width.
+    private final AtomicLongArray dist; // Tentative distances (as double bits).
+    private final int[] frame; // frame[v] == phase iff v is in the current light frontier.
+    private final int[] removedMark; // removedMark[v] == phase iff v was removed from the current bucket.
+    private int phase;
+
+    private WGraph_DeltaStepping(WGraph_CSR csr, double delta) {
+        this.csr = csr;
+        this.delta = delta;
+        this.dist = new AtomicLongArray(csr.size());
+        this.frame = new int[csr.size()];
+        this.removedMark = new int[csr.size()];
+    }
+
+    /**
+     * Computes the distances from src to all nodes, with the average edge weight as the bucket width.
+     * @param csr - the CSR snapshot.
+     * @param src - dense index of the source.
+     * @return - dist[v] for every dense index v (infinity for unreachable nodes).
+     */
+    public static double[] distances(WGraph_CSR csr, int src) {
+        return distances(csr, src, defaultDelta(csr));
+    }
+
+    /**
+     * Computes the distances from src to all nodes.
+     * @param csr - the CSR snapshot.
+     * @param src - dense index of the source.
+     * @param delta - the bucket width (positive). Small values mean less wasted relaxations but less parallelism.
+     * @return - dist[v] for every dense index v (infinity for unreachable nodes).
+     */
+    public static double[] distances(WGraph_CSR csr, int src, double delta) {
+        if (!(delta > 0) || delta == Double.POSITIVE_INFINITY)
+            throw new IllegalArgumentException("the bucket width must be positive and finite: " + delta);
+        if (src < 0 || src >= csr.size())
+            throw new IllegalArgumentException("no such node index: " + src);
+        return new WGraph_DeltaStepping(csr, delta).run(src);
+    }
+
+    /**
+     * Returns the average edge weight of the snapshot (1 if there are no positive weights).
+     * @param csr - the CSR snapshot.
+     * @return - a bucket width.
+     */
+    static double defaultDelta(WGraph_CSR csr) {
+        double sum = 0;
+        for (int p = 0; p < csr.entries(); p++)
+            sum += csr.weightAt(p);
+        return sum > 0 ? sum / csr.entries() : 1;
+    }
+
+    /**
+     * Runs delta-stepping from src.
+     * @param src - dense index of the source.
+     * @return - the distances.
+     */
+    private double[] run(int src) {
+        int n = csr.size();
+        for (int v = 0; v < n; v++)
+            dist.set(v, INFINITY);
+        dist.set(src, Double.doubleToLongBits(0.0));
+        TreeMap<Long, IntList> buckets = new TreeMap<>(); // Only non empty buckets (the weights may be very uneven).
+        IntList first = new IntList();
+        first.add(src);
+        buckets.put(0L, first);
+        while (!buckets.isEmpty()) {
+            Map.Entry<Long, IntList> entry = buckets.pollFirstEntry();
+            long i = entry.getKey();
+            IntList current = entry.getValue();
+            IntList removed = new IntList(); // All the nodes settled by this bucket (for the heavy edges).
+            int removedPhase = ++phase;
+            while (current.size > 0) {
+                int framePhase = ++phase;
+                IntList frontier = new IntList();
+                for (int k = 0; k < current.size; k++) {
+                    int v = current.data[k];
+                    if (bucket(v) != i || frame[v] == framePhase) // Moved to a lower bucket (stale entry) or a duplicate.
+                        continue;
+                    frame[v] = framePhase;
+                    frontier.add(v);
+                    if (removedMark[v] != removedPhase) { // Every removed node once.
+                        removedMark[v] = removedPhase;
+                        removed.add(v);
+                    }
+                }
+                current = new IntList();
+                IntList improved = new Relax(frontier.data, 0, frontier.size, true).invoke();
+                for (int k = 0; k < improved.size; k++) {
+                    int v = improved.data[k];
+                    long b = bucket(v);
+                    if (b == i)
+                        current.add(v);
+                    else
+                        buckets.computeIfAbsent(b, key -> new IntList()).add(v);
+                }
+            }
+            IntList improved = new Relax(removed.data, 0, removed.size, false).invoke();
+            for (int k = 0; k < improved.size; k++) { // Heavy edges always lead to later buckets.
+                int v = improved.data[k];
+                buckets.computeIfAbsent(bucket(v), key -> new IntList()).add(v);
+            }
+        }
+        double[] out = new double[n];
+        for (int v = 0; v < n; v++)
+            out[v] = Double.longBitsToDouble(dist.get(v));
+        return out;
+    }
+
+    /**
+     * Returns the bucket of node v by its current distance.
+     * @param v - dense index.
+     * @return - the bucket number.
+     */
+    private long bucket(int v) {
+        return (long) (Double.longBitsToDouble(dist.get(v)) / delta);
+    }
+
+    /**
+     * Lowers the distance of v to d if d is smaller (lock free).
+     * @param v - dense index.
+     * @param d - a candidate distance.
+     * @return - true iff the distance was lowered.
+     */
+    private boolean relax(int v, double d) {
+        long bits = Double.doubleToLongBits(d);
+        while (true) {
+            long old = dist.get(v);
+            if (bits >= old) // Non negative doubles compare like their bits.
+                return false;
+            if (dist.compareAndSet(v, old, bits))
+                return true;
+        }
+    }
+
+    /**
+     * Relaxes the light (or the heavy) edges of a range of frontier nodes, splitting large ranges in two.
+     * Returns the nodes whose distance was lowered (possibly with duplicates).
+     */
+    @SuppressWarnings("serial") // A fork-join task of one search, which is never serialized.
+    private class Relax extends RecursiveTask<IntList> {
+        private final int[] nodes;
+        private final int from, to;
+        private final boolean light;
+
+        Relax(int[] nodes, int from, int to, boolean light) {
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+            this.light = light;
+        }
+
+        @Override
+        protected IntList compute() {
+            if (to - from > SPLIT) {
+                int mid = (from + to) >>> 1;
+                Relax left = new Relax(nodes, from, mid, light);
+                left.fork();
+                IntList right = new Relax(nodes, mid, to, light).compute();
+                IntList result = left.join();
+                result.addAll(right);
+                return result;
+            }
+            IntList improved = new IntList();
+            for (int k = from; k < to; k++) {
+                int u = nodes[k];
+                double du = Double.longBitsToDouble(dist.get(u));
+                for (int p = csr.begin(u), end = csr.end(u); p < end; p++) {
+                    double w = csr.weightAt(p);
+                    if ((w <= delta) == light && relax(csr.neighborAt(p), du + w))
+                        improved.add(csr.neighborAt(p));
+                }
+            }
+            return improved;
+        }
+    }
+
+    /**
+     * A growable int array.
+     */
+    private static class IntList {
+        private int[] data = new int[8];
+        private int size;
+
+        void add(int v) {
+            if (size == data.length)
+                data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        void addAll(IntList other) {
+            if (size + other.size > data.length)
+                data = Arrays.copyOf(data, Math.max(size + other.size, size * 2));
+            System.arraycopy(other.data, 0, data, size, other.size);
+            size += other.size;
+        }
+    }
+}
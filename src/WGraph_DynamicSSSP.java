@@ -0,0 +1,214 @@
+package ex1.src;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class keeps the shortest path tree of one source of a WGraph_DS up to date while the graph changes.
+ * It listens to the graph (graph_listener) and repairs only the affected part of the tree after every change,
+ * in the spirit of Ramalingam and Reps:
+ * - A new edge or a lower weight can only shorten paths: the edge is relaxed in both directions and the
+ *   improvements are propagated by a dijkstra which starts from the improved endpoint only.
+ * - A removed edge or a higher weight only matters if it is a tree edge. Then the subtree below it is the affected
+ *   region: its nodes get the best distance through an unaffected neighbor, and a dijkstra restricted to the
+ *   region settles them again. All the other nodes keep their distances.
+ * The per-node state lives in primitive arrays indexed by KeySlots slots, so new nodes can be added at any time.
+ * Like the graph itself, this class is not thread safe: queries must not run while the graph is being changed.
+ */
+public final class WGraph_DynamicSSSP implements graph_listener {
+    private final WGraph_DS graph;
+    private final int source; // The source key.
+    private final KeySlots slots = new KeySlots(16); // Key -> slot of every node ever seen.
+    private double[] dist = new double[0]; // Distance of every slot (infinity if unreachable or removed).
+    private int[] parent = new int[0]; // Parent slot in the tree (-1 if none, the source is its own parent).
+    private int[] mark = new int[0]; // mark[s] == epoch iff s is in the affected region of the current repair.
+    private int[] queue = new int[0]; // Scratch queue for collecting a subtree.
+    private int epoch;
+    private final IndexedDaryHeap heap = new IndexedDaryHeap();
+    private long repaired; // Number of nodes settled by the repairs.
+
+    /**
+     * Computes the shortest path tree of src and starts following the changes of the graph.
+     * @param graph - the graph.
+     * @param src - the source key.
+     */
+    public WGraph_DynamicSSSP(WGraph_DS graph, int src) {
+        if (graph.getNode(src) == null)
+            throw new IllegalArgumentException("no such source node: " + src);
+        this.graph = graph;
+        this.source = src;
+        for (node_info n : graph.getV())
+            nodeAdded(n.getKey());
+        heap.clear(slots.size());
+        heap.push(slots.slotOf(src), 0);
+        propagate();
+        repaired = 0; // Only the repairs are counted.
+        graph.addListener(this);
+    }
+
+    /**
+     * Stops following the graph. Afterwards the distances are not updated anymore.
+     */
+    public void close() {
+        graph.removeListener(this);
+    }
+
+    /**
+     * Returns the source key.
+     * @return - the source key.
+     */
+    public int getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the current shortest path distance from the source.
+     * @param key - node key.
+     * @return - the distance, or -1 if the node is unreachable (or doesn't exist).
+     */
+    public double dist(int key) {
+        int s = slots.slotOf(key);
+        return s < 0 || dist[s] == Double.POSITIVE_INFINITY ? -1 : dist[s];
+    }
+
+    /**
+     * Returns the current shortest path from the source.
+     * @param key - node key.
+     * @return - the nodes source, ..., key, or null if the node is unreachable (or doesn't exist).
+     */
+    public List<node_info> path(int key) {
+        int s = slots.slotOf(key);
+        if (s < 0 || dist[s] == Double.POSITIVE_INFINITY)
+            return null;
+        LinkedList<node_info> list = new LinkedList<>();
+        for (int i = s; parent[i] != i; i = parent[i]) // Walk the parents back to the source.
+            list.addFirst(graph.getNode(slots.keyAt(i)));
+        list.addFirst(graph.getNode(source));
+        return list;
+    }
+
+    /**
+     * Returns the number of nodes settled by all the repairs so far (a measure of the repair work).
+     * @return - the number of settled nodes.
+     */
+    public long repairedNodes() {
+        return repaired;
+    }
+
+    @Override
+    public void nodeAdded(int key) {
+        int s = slots.add(key);
+        if (s >= dist.length) {
+            int capacity = Math.max(16, Math.max(s + 1, dist.length * 2));
+            int old = dist.length;
+            dist = Arrays.copyOf(dist, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            mark = Arrays.copyOf(mark, capacity);
+            queue = new int[capacity];
+            Arrays.fill(dist, old, capacity, Double.POSITIVE_INFINITY);
+            Arrays.fill(parent, old, capacity, -1);
+        }
+        boolean isSource = key == source; // A removed source which is added again.
+        dist[s] = isSource ? 0 : Double.POSITIVE_INFINITY;
+        parent[s] = isSource ? s : -1;
+    }
+
+    @Override
+    public void edgeChanged(int node1, int node2, double oldWeight, double newWeight) {
+        int s1 = slots.slotOf(node1), s2 = slots.slotOf(node2);
+        if (newWeight >= 0 && (oldWeight < 0 || newWeight < oldWeight)) { // Paths can only get shorter.
+            heap.clear(slots.size());
+            relax(s1, s2, newWeight);
+            relax(s2, s1, newWeight);
+            propagate();
+        } else if (oldWeight >= 0 && (newWeight < 0 || newWeight > oldWeight)) { // Paths through a tree edge get longer.
+            if (parent[s2] == s1) // s2 hangs below the edge (so it is not the source).
+                invalidate(s2);
+            else if (parent[s1] == s2)
+                invalidate(s1);
+        }
+    }
+
+    @Override
+    public void nodeRemoved(int key) {
+        int s = slots.slotOf(key); // Its edges were already reported, so nothing hangs below it.
+        dist[s] = Double.POSITIVE_INFINITY;
+        parent[s] = -1;
+    }
+
+    /**
+     * Lowers the distance of v through u if the edge u-v gives a shorter path, and pushes v.
+     * @param u - slot.
+     * @param v - slot.
+     * @param w - the weight of the edge u-v.
+     */
+    private void relax(int u, int v, double w) {
+        double d = dist[u] + w;
+        if (d < dist[v]) {
+            dist[v] = d;
+            parent[v] = u;
+            heap.push(v, d);
+        }
+    }
+
+    /**
+     * Runs dijkstra from the nodes in the heap, relaxing every edge which gives a shorter path.
+     */
+    private void propagate() {
+        while (!heap.isEmpty()) {
+            int u = heap.pop();
+            repaired++;
+            double du = dist[u];
+            for (Map.Entry<Integer, Double> e : graph.neighbors(slots.keyAt(u)).entrySet()) {
+                int v = slots.slotOf(e.getKey());
+                double d = du + e.getValue();
+                if (d < dist[v]) {
+                    dist[v] = d;
+                    parent[v] = u;
+                    heap.push(v, d);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes the distances of the subtree of root (whose tree edge got longer or was removed).
+     * @param root - slot of the subtree root.
+     */
+    private void invalidate(int root) {
+        epoch++;
+        int tail = 0;
+        queue[tail++] = root;
+        mark[root] = epoch;
+        for (int head = 0; head < tail; head++) { // Collect the subtree: the children of x are neighbors with parent x.
+            int x = queue[head];
+            for (Integer key : graph.neighbors(slots.keyAt(x)).keySet()) {
+                int y = slots.slotOf(key);
+                if (parent[y] == x && mark[y] != epoch) {
+                    mark[y] = epoch;
+                    queue[tail++] = y;
+                }
+            }
+        }
+        for (int i = 0; i < tail; i++) {
+            dist[queue[i]] = Double.POSITIVE_INFINITY;
+            parent[queue[i]] = -1;
+        }
+        heap.clear(slots.size());
+        for (int i = 0; i < tail; i++) { // The best way into the region from its unaffected boundary.
+            int x = queue[i];
+            for (Map.Entry<Integer, Double> e : graph.neighbors(slots.keyAt(x)).entrySet()) {
+                int y = slots.slotOf(e.getKey());
+                if (mark[y] != epoch && dist[y] + e.getValue() < dist[x]) {
+                    dist[x] = dist[y] + e.getValue();
+                    parent[x] = y;
+                }
+            }
+            if (dist[x] != Double.POSITIVE_INFINITY)
+                heap.push(x, dist[x]);
+        }
+        propagate();
+    }
+}
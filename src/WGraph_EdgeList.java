@@ -0,0 +1,411 @@
+package ex1.src;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * This class imports and exports graphs as text edge lists, one "src dst weight" line per edge.
+ * - A line with two numbers is an edge of weight 1, a line with one number is a node (possibly without edges).
+ * - Numbers are separated by spaces or tabs, empty lines and lines starting with '#' or '%' are skipped.
+ * - Like connect, self loops and negative weights are ignored, and a repeated edge keeps its last weight.
+ * The importer memory maps the file, splits it into chunks at line boundaries and parses the chunks in parallel
+ * on the fork-join pool straight from the mapped bytes (no String per line). The parsed edges are then turned into
+ * a CSR snapshot by counting sort and the graph is built from it in one pass (see WGraph_DS.of).
+ * The exporter streams the edges of a CSR snapshot through a small byte buffer, so the text is never materialized.
+ */
+public final class WGraph_EdgeList {
+    private static final long CHUNK_BYTES = 1 << 26; // Nominal size of a parsed chunk (64MB).
+    private static final int LINE_SLACK = 1 << 16; // Longest accepted line (a chunk's last line may cross its end).
+    private static final double[] POW10 = new double[23]; // Exact powers of ten (10^22 is the largest exact one).
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private WGraph_EdgeList() {
+    }
+
+    /**
+     * Reads an edge list file and builds a new graph.
+     * @param file - the file name.
+     * @return - a new WGraph_DS with all the nodes and edges of the file.
+     * @throws IOException if the file can't be read or has a malformed line.
+     */
+    public static WGraph_DS read(String file) throws IOException {
+        Chunk[] chunks;
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            long size = ch.size();
+            int count = (int) ((size + CHUNK_BYTES - 1) / CHUNK_BYTES);
+            try {
+                chunks = IntStream.range(0, count).parallel()
+                        .mapToObj(c -> parse(ch, size, c * CHUNK_BYTES, Math.min(size, (c + 1) * CHUNK_BYTES)))
+                        .toArray(Chunk[]::new); // In file order, so later lines win.
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return build(chunks);
+    }
+
+    /**
+     * Writes the graph as an edge list: every edge once ("src dst weight", src < dst in key order),
+     * and a line with the key alone for every node without edges.
+     * The stream is not closed.
+     * @param g - the graph.
+     * @param out - the output stream.
+     * @throws IOException if the stream can't be written.
+     */
+    public static void write(weighted_graph g, OutputStream out) throws IOException {
+        WGraph_CSR csr = WGraph_CSR.current(g);
+        Output o = new Output(out);
+        for (int i = 0; i < csr.size(); i++) {
+            int key = csr.keyAt(i);
+            if (csr.begin(i) == csr.end(i)) { // An isolated node.
+                o.putLong(key);
+                o.put('\n');
+            }
+            for (int p = csr.begin(i); p < csr.end(i); p++) {
+                int j = csr.neighborAt(p);
+                if (j < i) // Written once, from its smaller endpoint.
+                    continue;
+                o.putLong(key);
+                o.put(' ');
+                o.putLong(csr.keyAt(j));
+                o.put(' ');
+                o.putDouble(csr.weightAt(p));
+                o.put('\n');
+            }
+        }
+        o.flush();
+    }
+
+    /**
+     * The edges and nodes parsed from one chunk.
+     */
+    private static final class Chunk {
+        int[] src = new int[1024], dst = new int[1024];
+        double[] weight = new double[1024];
+        int edges;
+        int[] nodes = new int[16]; // Keys of single number lines.
+        int nodeCount;
+
+        void addEdge(int u, int v, double w) {
+            if (edges == src.length) {
+                src = Arrays.copyOf(src, edges * 2);
+                dst = Arrays.copyOf(dst, edges * 2);
+                weight = Arrays.copyOf(weight, edges * 2);
+            }
+            src[edges] = u;
+            dst[edges] = v;
+            weight[edges++] = w;
+        }
+
+        void addNode(int key) {
+            if (nodeCount == nodes.length)
+                nodes = Arrays.copyOf(nodes, nodeCount * 2);
+            nodes[nodeCount++] = key;
+        }
+    }
+
+    /**
+     * Parses the lines which start in [from, to).
+     * A line which starts before from belongs to the previous chunk, the last line may end after to.
+     */
+    private static Chunk parse(FileChannel ch, long size, long from, long to) {
+        try {
+            long mapFrom = Math.max(0, from - 1), mapTo = Math.min(size, to + LINE_SLACK);
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, mapFrom, mapTo - mapFrom);
+            int end = (int) (to - mapFrom), limit = b.limit();
+            int p = (int) (from - mapFrom);
+            if (from > 0 && b.get(0) != '\n') // Skip the rest of the previous chunk's line.
+                while (p < limit && b.get(p++) != '\n')
+                    ;
+            Chunk c = new Chunk();
+            long[] num = new long[3];
+            double[] w = new double[1];
+            while (p < end) {
+                int lineStart = p;
+                int fields = 0;
+                while (true) { // Parse up to three fields.
+                    while (p < limit && (b.get(p) == ' ' || b.get(p) == '\t' || b.get(p) == '\r'))
+                        p++;
+                    if (p >= limit || b.get(p) == '\n')
+                        break;
+                    if (fields == 0 && (b.get(p) == '#' || b.get(p) == '%')) { // A comment line.
+                        while (p < limit && b.get(p) != '\n')
+                            p++;
+                        break;
+                    }
+                    if (fields == 3)
+                        throw malformed(mapFrom + lineStart);
+                    if (fields < 2)
+                        p = parseKey(b, p, limit, num, fields, mapFrom + lineStart);
+                    else
+                        p = parseDouble(b, p, limit, w, mapFrom + lineStart);
+                    fields++;
+                }
+                if (p >= limit && mapTo < size) // The line doesn't end within the slack.
+                    throw new IOException("line too long at byte " + (mapFrom + lineStart));
+                p++; // Skip the '\n'.
+                if (fields == 1)
+                    c.addNode((int) num[0]);
+                else if (fields >= 2)
+                    c.addEdge((int) num[0], (int) num[1], fields == 3 ? w[0] : 1);
+            }
+            return c;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses a non negative int key at p into num[field].
+     * @return - the position after the key.
+     */
+    private static int parseKey(MappedByteBuffer b, int p, int limit, long[] num, int field, long line) throws IOException {
+        long v = 0;
+        int start = p;
+        byte c;
+        while (p < limit && (c = b.get(p)) >= '0' && c <= '9') {
+            v = v * 10 + (c - '0');
+            if (v > Integer.MAX_VALUE)
+                throw malformed(line);
+            p++;
+        }
+        if (p == start || !separator(b, p, limit))
+            throw malformed(line);
+        num[field] = v;
+        return p;
+    }
+
+    /**
+     * Parses a decimal number ([-]digits[.digits][e[-]digits]) at p into w[0].
+     * Numbers with at most 15 significant digits and a small exponent are converted exactly without allocation,
+     * anything else falls back to Double.parseDouble.
+     * @return - the position after the number.
+     */
+    private static int parseDouble(MappedByteBuffer b, int p, int limit, double[] w, long line) throws IOException {
+        int start = p;
+        boolean negative = false;
+        if (p < limit && (b.get(p) == '-' || b.get(p) == '+'))
+            negative = b.get(p++) == '-';
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean any = false;
+        byte c;
+        while (p < limit && (c = b.get(p)) >= '0' && c <= '9') {
+            any = true;
+            if (mantissa != 0 || c != '0')
+                digits++;
+            if (digits <= 18)
+                mantissa = mantissa * 10 + (c - '0');
+            else
+                scale++;
+            p++;
+        }
+        if (p < limit && b.get(p) == '.') {
+            p++;
+            while (p < limit && (c = b.get(p)) >= '0' && c <= '9') {
+                any = true;
+                if (mantissa != 0 || c != '0')
+                    digits++;
+                if (digits <= 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    scale--;
+                }
+                p++;
+            }
+        }
+        if (!any)
+            throw malformed(line);
+        if (p < limit && (b.get(p) == 'e' || b.get(p) == 'E')) {
+            p++;
+            boolean expNegative = false;
+            if (p < limit && (b.get(p) == '-' || b.get(p) == '+'))
+                expNegative = b.get(p++) == '-';
+            int exp = 0, expStart = p;
+            while (p < limit && (c = b.get(p)) >= '0' && c <= '9') {
+                exp = Math.min(exp * 10 + (c - '0'), 100000);
+                p++;
+            }
+            if (p == expStart)
+                throw malformed(line);
+            scale += expNegative ? -exp : exp;
+        }
+        if (!separator(b, p, limit))
+            throw malformed(line);
+        if (digits <= 15 && Math.abs(scale) < POW10.length) { // Both operands are exact, so is the result.
+            double v = scale >= 0 ? mantissa * POW10[scale] : mantissa / POW10[-scale];
+            w[0] = negative ? -v : v;
+        } else {
+            byte[] text = new byte[p - start];
+            for (int i = 0; i < text.length; i++)
+                text[i] = b.get(start + i);
+            w[0] = Double.parseDouble(new String(text, StandardCharsets.US_ASCII));
+        }
+        return p;
+    }
+
+    private static boolean separator(MappedByteBuffer b, int p, int limit) {
+        if (p >= limit)
+            return true;
+        byte c = b.get(p);
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    private static IOException malformed(long line) {
+        return new IOException("malformed edge list line at byte " + line);
+    }
+
+    /**
+     * Builds a graph from the parsed chunks: sorted unique keys, a CSR by counting sort (rows in line order),
+     * and the last weight of every repeated edge.
+     */
+    private static WGraph_DS build(Chunk[] chunks) {
+        long total = 0;
+        for (Chunk c : chunks)
+            total += 2L * c.edges + c.nodeCount;
+        int[] all = new int[Math.toIntExact(total)];
+        int k = 0;
+        for (Chunk c : chunks) {
+            System.arraycopy(c.src, 0, all, k, c.edges);
+            System.arraycopy(c.dst, 0, all, k + c.edges, c.edges);
+            System.arraycopy(c.nodes, 0, all, k + 2 * c.edges, c.nodeCount);
+            k += 2 * c.edges + c.nodeCount;
+        }
+        Arrays.parallelSort(all);
+        int n = 0;
+        for (int i = 0; i < all.length; i++) // Unique keys.
+            if (i == 0 || all[i] != all[i - 1])
+                all[n++] = all[i];
+        KeyIndex index = new KeyIndex(Arrays.copyOf(all, n));
+        all = null;
+        int[] offsets = new int[n + 1];
+        for (Chunk c : chunks) { // Map the keys to indices (in parallel) and count the degrees.
+            int[] src = c.src, dst = c.dst;
+            IntStream.range(0, c.edges).parallel().forEach(e -> {
+                src[e] = index.indexOf(src[e]);
+                dst[e] = index.indexOf(dst[e]);
+            });
+            for (int e = 0; e < c.edges; e++) {
+                if (src[e] != dst[e] && c.weight[e] >= 0) { // Like connect: no self loops or negative weights.
+                    offsets[src[e] + 1]++;
+                    offsets[dst[e] + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < n; i++)
+            offsets[i + 1] += offsets[i];
+        int[] next = Arrays.copyOf(offsets, n);
+        int[] neighbors = new int[offsets[n]];
+        double[] weights = new double[neighbors.length];
+        for (Chunk c : chunks) { // Fill the rows in line order.
+            for (int e = 0; e < c.edges; e++) {
+                int u = c.src[e], v = c.dst[e];
+                if (u == v || !(c.weight[e] >= 0))
+                    continue;
+                neighbors[next[u]] = v;
+                weights[next[u]++] = c.weight[e];
+                neighbors[next[v]] = u;
+                weights[next[v]++] = c.weight[e];
+            }
+        }
+        WGraph_CSR csr = new WGraph_CSR(index, offsets, neighbors, weights, 0); // Stable sort: duplicates stay in line order.
+        return WGraph_DS.of(dedupe(csr, index));
+    }
+
+    /**
+     * Removes repeated edges from a snapshot (keeping the last one of every run of equal neighbors).
+     * Also used by WGraph_Generator.
+     */
+    static WGraph_CSR dedupe(WGraph_CSR csr, KeyIndex index) {
+        int n = csr.size(), m = csr.entries(), unique = 0;
+        for (int i = 0; i < n; i++)
+            for (int p = csr.begin(i); p < csr.end(i); p++)
+                if (p + 1 == csr.end(i) || csr.neighborAt(p + 1) != csr.neighborAt(p))
+                    unique++;
+        if (unique == m)
+            return csr;
+        int[] offsets = new int[n + 1], neighbors = new int[unique];
+        double[] weights = new double[unique];
+        int q = 0;
+        for (int i = 0; i < n; i++) {
+            for (int p = csr.begin(i); p < csr.end(i); p++) {
+                if (p + 1 == csr.end(i) || csr.neighborAt(p + 1) != csr.neighborAt(p)) {
+                    neighbors[q] = csr.neighborAt(p);
+                    weights[q++] = csr.weightAt(p);
+                }
+            }
+            offsets[i + 1] = q;
+        }
+        return new WGraph_CSR(index, offsets, neighbors, weights, 0);
+    }
+
+    /**
+     * A small buffered ASCII writer which formats numbers without creating Strings (except for fractional weights).
+     */
+    private static final class Output {
+        private final OutputStream out;
+        private final byte[] buf = new byte[1 << 16];
+        private int pos;
+
+        Output(OutputStream out) {
+            this.out = out;
+        }
+
+        void put(char c) throws IOException {
+            if (pos == buf.length)
+                flush();
+            buf[pos++] = (byte) c;
+        }
+
+        void putLong(long v) throws IOException {
+            if (pos + 20 > buf.length)
+                flush();
+            if (v < 0) {
+                buf[pos++] = '-';
+                v = -v;
+            }
+            int end = pos + digits(v);
+            for (int i = end - 1; i >= pos; i--) {
+                buf[i] = (byte) ('0' + v % 10);
+                v /= 10;
+            }
+            pos = end;
+        }
+
+        void putDouble(double w) throws IOException {
+            if (w == Math.rint(w) && Math.abs(w) < 1e15) { // Integral weights are written as integers.
+                putLong((long) w);
+                return;
+            }
+            String s = Double.toString(w); // Shortest text which reads back as exactly w.
+            for (int i = 0; i < s.length(); i++)
+                put(s.charAt(i));
+        }
+
+        void flush() throws IOException {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+
+        private static int digits(long v) {
+            int d = 1;
+            while (v >= 10) {
+                v /= 10;
+                d++;
+            }
+            return d;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package ex1.src;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * This class reads and writes graphs in a compact binary file format (instead of Java serialization).
+ * The file is a CSR snapshot of the graph, all primitives are little endian:
+ * - Header: magic "WGRF", version, flags (bit 0: the graph is a WGraph_Compact), n (nodes), m (directed edges).
+ * - Node block: the n node keys in ascending order.
+ * - Edge blocks: the n+1 row offsets, the m neighbor indices (into the node block) and the m weights.
+ * - Trailer: a CRC-32C checksum of all the preceding bytes.
+ * Every undirected edge is stored twice, once in each row, so a row is read without any lookup.
+ * The file is written and read through a direct buffer and a FileChannel, and a loaded WGraph_DS is built
+ * directly from the arrays (they also become its cached CSR snapshot).
+ */
+final class WGraph_Format {
+    static final int MAGIC = 0x46524757; // "WGRF" as little endian bytes.
+    static final int VERSION = 1;
+    static final int FLAG_COMPACT = 1; // The graph was a WGraph_Compact (and is loaded as one).
+    static final int HEADER_BYTES = 20;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private WGraph_Format() {
+    }
+
+    /**
+     * Checks if a file starts with the magic number of this format.
+     * @param file - the file name.
+     * @return - true iff the file exists and is (probably) in this format.
+     */
+    static boolean isFormat(String file) {
+        if (!new File(file).isFile())
+            return false;
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ByteBuffer b = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (b.hasRemaining() && ch.read(b) >= 0) ;
+            return !b.hasRemaining() && b.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the exact size of a file with n nodes and m directed edges.
+     */
+    static long fileBytes(int n, long m) {
+        return HEADER_BYTES + 4L * n + 4L * (n + 1) + 12L * m + 4;
+    }
+
+    /**
+     * Writes a snapshot of a graph to a file.
+     * @param csr - the snapshot.
+     * @param flags - format flags (FLAG_COMPACT).
+     * @param file - the file name (may include a relative path).
+     * @throws IOException if the file can't be written.
+     */
+    static void write(WGraph_CSR csr, int flags, String file) throws IOException {
+        int n = csr.size(), m = csr.entries();
+        try (Writer w = writer(file)) {
+            w.putInt(MAGIC);
+            w.putInt(VERSION);
+            w.putInt(flags);
+            w.putInt(n);
+            w.putInt(m);
+            for (int i = 0; i < n; i++)
+                w.putInt(csr.keyAt(i));
+            for (int i = 0; i <= n; i++)
+                w.putInt(i < n ? csr.begin(i) : m);
+            for (int p = 0; p < m; p++)
+                w.putInt(csr.neighborAt(p));
+            for (int p = 0; p < m; p++)
+                w.putDouble(csr.weightAt(p));
+            w.finish();
+        }
+    }
+
+    /**
+     * Reads a graph written by write(WGraph_CSR, int, String).
+     * The file is rejected if its header, size, structure or checksum is wrong.
+     * @param file - the file name.
+     * @return - a new graph (a WGraph_DS, or a WGraph_Compact if it was saved from one), or null if rejected.
+     * @throws IOException if the file can't be read.
+     */
+    static weighted_graph read(String file) throws IOException {
+        try (Reader r = reader(file)) {
+            if (r.size < HEADER_BYTES + 4 || r.getInt() != MAGIC || r.getInt() != VERSION)
+                return null;
+            int flags = r.getInt(), n = r.getInt(), m = r.getInt();
+            if (n < 0 || m < 0 || r.size != fileBytes(n, m)) // Also protects the allocations below.
+                return null;
+            int[] keys = new int[n], offsets = new int[n + 1], neighbors = new int[m];
+            double[] weights = new double[m];
+            r.getInts(keys);
+            r.getInts(offsets);
+            r.getInts(neighbors);
+            r.getDoubles(weights);
+            if (!r.checksumMatches() || !valid(keys, offsets, neighbors, weights))
+                return null;
+            WGraph_CSR csr = new WGraph_CSR(new KeyIndex(keys), offsets, neighbors, weights, 0);
+            if (!symmetric(csr))
+                return null;
+            if ((flags & FLAG_COMPACT) != 0) {
+                WGraph_Compact g = new WGraph_Compact();
+                for (int i = 0; i < n; i++)
+                    g.addNode(keys[i]);
+                for (int i = 0; i < n; i++)
+                    for (int p = offsets[i]; p < offsets[i + 1]; p++)
+                        if (neighbors[p] > i) // Every undirected edge is connected once.
+                            g.connect(keys[i], keys[neighbors[p]], weights[p]);
+                return g;
+            }
+            return WGraph_DS.of(csr);
+        }
+    }
+
+    /**
+     * Opens a file for writing in the conventions of this format (also used by the WGraph_CH index files).
+     * @param file - the file name (created or truncated).
+     * @return - a writer, which must be finished and closed.
+     * @throws IOException if the file can't be opened.
+     */
+    static Writer writer(String file) throws IOException {
+        return new Writer(FileChannel.open(Paths.get(file), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Opens a file written by a writer(String) for reading.
+     * @param file - the file name.
+     * @return - a reader, which must be closed.
+     * @throws IOException if the file can't be opened.
+     */
+    static Reader reader(String file) throws IOException {
+        return new Reader(FileChannel.open(Paths.get(file), StandardOpenOption.READ));
+    }
+
+    /**
+     * Checks the structure of the read arrays: ascending keys, monotone offsets,
+     * neighbor indices in range (and no self loops) and legal weights.
+     */
+    private static boolean valid(int[] keys, int[] offsets, int[] neighbors, double[] weights) {
+        int n = keys.length;
+        for (int i = 0; i < n; i++)
+            if (keys[i] < 0 || (i > 0 && keys[i] <= keys[i - 1]))
+                return false;
+        if (offsets[0] != 0 || offsets[n] != neighbors.length)
+            return false;
+        for (int i = 0; i < n; i++) {
+            if (offsets[i + 1] < offsets[i])
+                return false;
+            for (int p = offsets[i]; p < offsets[i + 1]; p++)
+                if (neighbors[p] < 0 || neighbors[p] >= n || neighbors[p] == i || !(weights[p] >= 0))
+                    return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks that every edge is stored once in both of its rows with the same weight (rows are sorted by index).
+     */
+    private static boolean symmetric(WGraph_CSR csr) {
+        for (int i = 0; i < csr.size(); i++) {
+            for (int p = csr.begin(i); p < csr.end(i); p++) {
+                if (p > csr.begin(i) && csr.neighborAt(p) == csr.neighborAt(p - 1)) // A duplicate edge.
+                    return false;
+                int j = csr.neighborAt(p), lo = csr.begin(j), hi = csr.end(j) - 1;
+                while (lo <= hi) { // Binary search for i in the row of j.
+                    int mid = (lo + hi) >>> 1;
+                    if (csr.neighborAt(mid) < i)
+                        lo = mid + 1;
+                    else
+                        hi = mid - 1;
+                }
+                if (lo >= csr.end(j) || csr.neighborAt(lo) != i || csr.weightAt(lo) != csr.weightAt(p))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Buffered little endian output to a channel, which checksums every written byte.
+     */
+    static final class Writer implements AutoCloseable {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+
+        private Writer(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        void putInt(int v) throws IOException {
+            if (buf.remaining() < 4)
+                flush();
+            buf.putInt(v);
+        }
+
+        void putLong(long v) throws IOException {
+            if (buf.remaining() < 8)
+                flush();
+            buf.putLong(v);
+        }
+
+        void putDouble(double v) throws IOException {
+            if (buf.remaining() < 8)
+                flush();
+            buf.putDouble(v);
+        }
+
+        /**
+         * Writes the checksum trailer (not part of the checksum itself).
+         */
+        void finish() throws IOException {
+            flush();
+            buf.putInt((int) crc.getValue());
+            buf.flip();
+            while (buf.hasRemaining())
+                ch.write(buf);
+            buf.clear();
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            crc.update(buf.duplicate());
+            while (buf.hasRemaining())
+                ch.write(buf);
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+
+    /**
+     * Buffered little endian input from a channel, which checksums every byte before the trailer.
+     */
+    static final class Reader implements AutoCloseable {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32C crc = new CRC32C();
+        final long size; // File size.
+        private long checked; // Number of bytes added to the checksum.
+
+        private Reader(FileChannel ch) throws IOException {
+            this.ch = ch;
+            this.size = ch.size();
+            buf.limit(0);
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return buf.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(8);
+            return buf.getLong();
+        }
+
+        void getInts(int[] a) throws IOException {
+            for (int off = 0; off < a.length; ) {
+                ensure(4);
+                int len = Math.min(a.length - off, buf.remaining() / 4);
+                buf.asIntBuffer().get(a, off, len); // Bulk copy of a whole chunk.
+                buf.position(buf.position() + 4 * len);
+                off += len;
+            }
+        }
+
+        void getDoubles(double[] a) throws IOException {
+            for (int off = 0; off < a.length; ) {
+                ensure(8);
+                int len = Math.min(a.length - off, buf.remaining() / 8);
+                buf.asDoubleBuffer().get(a, off, len);
+                buf.position(buf.position() + 8 * len);
+                off += len;
+            }
+        }
+
+        /**
+         * Reads the trailer and compares it with the checksum of everything read before it.
+         */
+        boolean checksumMatches() throws IOException {
+            return getInt() == (int) crc.getValue();
+        }
+
+        /**
+         * Makes sure at least k bytes are buffered.
+         */
+        private void ensure(int k) throws IOException {
+            if (buf.remaining() >= k)
+                return;
+            buf.compact();
+            int start = buf.position();
+            while (buf.position() < k || (buf.hasRemaining() && ch.position() < size)) {
+                if (ch.read(buf) < 0)
+                    break;
+            }
+            int end = buf.position();
+            buf.flip();
+            if (end < k)
+                throw new IOException("unexpected end of file");
+            long count = Math.min(end - start, size - 4 - checked); // The trailer is not checksummed.
+            if (count > 0) {
+                ByteBuffer b = buf.duplicate();
+                b.position(start).limit(start + (int) count);
+                crc.update(b);
+                checked += count;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package ex1.src;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * This class generates large random graphs for load testing. The same arguments and seed always give the same graph.
+ * - erdosRenyi: m edges between uniformly chosen pairs of nodes.
+ * - grid: a road like width x height grid. Every node has jittered coordinates (see x and y), every grid edge
+ *   is kept with a given probability and weighs the distance between its ends.
+ * - barabasiAlbert: preferential attachment, every new node connects to k nodes chosen by degree (power law degrees).
+ * - rmat: R-MAT over 2^scale nodes with the quadrant probabilities a, b, c and 1-a-b-c (skewed degrees).
+ * The nodes are the keys 0..n-1. Self loops are dropped and repeated edges are kept once. Except for grid, the weight
+ * of an edge is an integer in [1, 100] hashed from its ends and the seed, so a repeated edge always has one weight.
+ * The edges are drawn in parallel chunks, each with its own random generator (so the result doesn't depend on the
+ * number of threads), twice: once to count the degrees and once to fill the rows of a CSR snapshot in place.
+ * No per edge objects are created and connect is never called; the graph is then built from the snapshot in bulk
+ * by toGraph() (a WGraph_DS), toPacked() (a compressed read only graph) or save(file) (see WGraph_Mapped.open).
+ */
+public final class WGraph_Generator {
+    private static final int CHUNK = 1 << 20; // Edges drawn by one parallel task.
+    private static final int MAX_WEIGHT = 100;
+
+    private final WGraph_CSR csr;
+    private final double[] x, y; // Node coordinates (null if the generator has none).
+
+    private WGraph_Generator(WGraph_CSR csr, double[] x, double[] y) {
+        this.csr = csr;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Generates a G(n, m) random graph: m edges whose ends are drawn uniformly.
+     * @param n - number of nodes.
+     * @param m - number of drawn edges (self loops and repeats are dropped, so edgeSize() may be a bit lower).
+     * @param seed - random seed.
+     * @return - the generator holding the graph.
+     */
+    public static WGraph_Generator erdosRenyi(int n, long m, long seed) {
+        if (n <= 0 || m < 0)
+            throw new IllegalArgumentException("bad graph size: n=" + n + ", m=" + m);
+        return new WGraph_Generator(build(n, m, (chunk, to) -> {
+            SplittableRandom r = random(seed, chunk);
+            for (long e = chunk * (long) CHUNK, end = Math.min(m, e + CHUNK); e < end; e++)
+                to.edge(r.nextInt(n), r.nextInt(n));
+        }, (u, v) -> hashWeight(seed, u, v)), null, null);
+    }
+
+    /**
+     * Generates a road like grid: node y*width+x sits near (x, y) (moved by up to 0.25 on each axis), and is
+     * connected to its right and lower neighbors. Each such edge is kept with probability keep, and weighs the
+     * euclidean distance between its ends.
+     * @param width - number of columns.
+     * @param height - number of rows.
+     * @param keep - the probability to keep a grid edge (1 keeps them all).
+     * @param seed - random seed.
+     * @return - the generator holding the graph and the coordinates.
+     */
+    public static WGraph_Generator grid(int width, int height, double keep, long seed) {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE - 8 || !(keep >= 0 && keep <= 1))
+            throw new IllegalArgumentException("bad grid: " + width + "x" + height + ", keep=" + keep);
+        int n = width * height;
+        double[] x = new double[n], y = new double[n];
+        IntStream.range(0, n).parallel().forEach(i -> {
+            x[i] = i % width + (unit(seed, 2L * i) - 0.5) / 2;
+            y[i] = i / width + (unit(seed, 2L * i + 1) - 0.5) / 2;
+        });
+        long candidates = 2L * n; // Candidate 2i is the edge to the right of i, 2i+1 is the edge below it.
+        long salt = ~seed;
+        WGraph_CSR csr = build(n, candidates, (chunk, to) -> {
+            for (long e = chunk * (long) CHUNK, end = Math.min(candidates, e + CHUNK); e < end; e++) {
+                int i = (int) (e >>> 1);
+                boolean right = (e & 1) == 0;
+                if ((right ? i % width + 1 < width : i / width + 1 < height) && unit(salt, e) < keep)
+                    to.edge(i, right ? i + 1 : i + width);
+            }
+        }, (u, v) -> Math.hypot(x[u] - x[v], y[u] - y[v]));
+        return new WGraph_Generator(csr, x, y);
+    }
+
+    /**
+     * Generates a Barabasi-Albert graph: the nodes 0..k form a clique, then every other node connects to k earlier
+     * nodes, each chosen with probability proportional to its degree (repeated choices give fewer edges).
+     * The choices depend on each other, so they are drawn by one thread (into an array of 2*edges ints) and only
+     * the snapshot is built in parallel.
+     * @param n - number of nodes.
+     * @param k - edges per new node (0 < k < n).
+     * @param seed - random seed.
+     * @return - the generator holding the graph.
+     */
+    public static WGraph_Generator barabasiAlbert(int n, int k, long seed) {
+        if (k <= 0 || k >= n)
+            throw new IllegalArgumentException("bad graph size: n=" + n + ", k=" + k);
+        long m = (long) k * (k + 1) / 2 + (long) (n - k - 1) * k;
+        if (2 * m > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("too many edges: " + m);
+        int[] ends = new int[(int) (2 * m)]; // The ends of edge e are ends[2e] and ends[2e+1].
+        int size = 0;
+        for (int u = 0; u <= k; u++) {
+            for (int v = u + 1; v <= k; v++) {
+                ends[size++] = u;
+                ends[size++] = v;
+            }
+        }
+        SplittableRandom r = new SplittableRandom(seed);
+        for (int u = k + 1; u < n; u++) {
+            int before = size; // Choose among the edges added before u.
+            for (int j = 0; j < k; j++) {
+                ends[size++] = u;
+                ends[size++] = ends[r.nextInt(before)]; // A random edge end: a node picked by degree.
+            }
+        }
+        return new WGraph_Generator(build(n, m, (chunk, to) -> {
+            for (long e = chunk * (long) CHUNK, end = Math.min(m, e + CHUNK); e < end; e++)
+                to.edge(ends[(int) (2 * e)], ends[(int) (2 * e + 1)]);
+        }, (u, v) -> hashWeight(seed, u, v)), null, null);
+    }
+
+    /**
+     * Generates an R-MAT graph: every edge picks one quadrant of the adjacency matrix per bit of the node indices,
+     * the upper left one with probability a, upper right b, lower left c and lower right 1-a-b-c
+     * (0.57, 0.19, 0.19 are the Graph500 values).
+     * @param scale - the graph has 2^scale nodes (1..30).
+     * @param m - number of drawn edges (self loops and repeats are dropped, so edgeSize() is lower).
+     * @param a - upper left probability.
+     * @param b - upper right probability.
+     * @param c - lower left probability.
+     * @param seed - random seed.
+     * @return - the generator holding the graph.
+     */
+    public static WGraph_Generator rmat(int scale, long m, double a, double b, double c, long seed) {
+        if (scale < 1 || scale > 30 || m < 0)
+            throw new IllegalArgumentException("bad graph size: scale=" + scale + ", m=" + m);
+        if (!(a >= 0 && b >= 0 && c >= 0 && a + b + c <= 1))
+            throw new IllegalArgumentException("bad probabilities: " + a + ", " + b + ", " + c);
+        double ab = a + b, abc = a + b + c;
+        return new WGraph_Generator(build(1 << scale, m, (chunk, to) -> {
+            SplittableRandom r = random(seed, chunk);
+            for (long e = chunk * (long) CHUNK, end = Math.min(m, e + CHUNK); e < end; e++) {
+                int u = 0, v = 0;
+                for (int bit = 1 << (scale - 1); bit != 0; bit >>>= 1) {
+                    double p = r.nextDouble();
+                    if (p >= abc) {
+                        u |= bit;
+                        v |= bit;
+                    } else if (p >= ab) {
+                        u |= bit;
+                    } else if (p >= a) {
+                        v |= bit;
+                    }
+                }
+                to.edge(u, v);
+            }
+        }, (u, v) -> hashWeight(seed, u, v)), null, null);
+    }
+
+    /**
+     * Builds a new graph with the generated nodes and edges (every call returns a new graph).
+     * @return - a modifiable graph (its mode count is 0).
+     */
+    public WGraph_DS toGraph() {
+        return WGraph_DS.of(csr);
+    }
+
+    /**
+     * Compresses the generated graph (much smaller than toGraph() for the largest sizes).
+     * @return - a read only graph.
+     */
+    public WGraph_Packed toPacked() {
+        return new WGraph_Packed(csr);
+    }
+
+    /**
+     * Saves the generated graph in the binary format, without building a graph first.
+     * The file can be read by WGraph_Algo.load or mapped by WGraph_Mapped.open.
+     * @param file - file name.
+     * @throws IOException - if the file can't be written.
+     */
+    public void save(String file) throws IOException {
+        WGraph_Format.write(csr, 0, file);
+    }
+
+    /**
+     * Returns the generated graph as a CSR snapshot (keys and dense indices are the same).
+     * @return - the snapshot.
+     */
+    public WGraph_CSR getCSR() {
+        return csr;
+    }
+
+    /**
+     * Returns the number of nodes.
+     * @return - n.
+     */
+    public int nodeSize() {
+        return csr.size();
+    }
+
+    /**
+     * Returns the number of edges (after dropping self loops and repeats).
+     * @return - edge count.
+     */
+    public int edgeSize() {
+        return csr.entries() / 2;
+    }
+
+    /**
+     * Returns the x coordinate of a grid node.
+     * @param key - node key.
+     * @return - x.
+     */
+    public double x(int key) {
+        return coordinate(x, key);
+    }
+
+    /**
+     * Returns the y coordinate of a grid node.
+     * @param key - node key.
+     * @return - y.
+     */
+    public double y(int key) {
+        return coordinate(y, key);
+    }
+
+    private double coordinate(double[] a, int key) {
+        if (a == null)
+            throw new IllegalStateException("only grid graphs have coordinates");
+        if (key < 0 || key >= a.length)
+            throw new IllegalArgumentException("no such node: " + key);
+        return a[key];
+    }
+
+    /**
+     * Draws the edges twice (see the class comment) and builds a sorted snapshot without repeated edges.
+     * @param n - number of nodes.
+     * @param m - number of edges the source draws (or skips).
+     * @param edges - draws the edges of a chunk, the same ones on every call.
+     * @param weights - the weight of an edge (must be symmetric).
+     * @return - the snapshot.
+     */
+    private static WGraph_CSR build(int n, long m, EdgeSource edges, EdgeWeight weights) {
+        int chunks = (int) ((m + CHUNK - 1) / CHUNK);
+        AtomicIntegerArray degree = new AtomicIntegerArray(n);
+        IntStream.range(0, chunks).parallel().forEach(chunk -> edges.draw(chunk, (u, v) -> {
+            if (u != v) {
+                degree.incrementAndGet(u);
+                degree.incrementAndGet(v);
+            }
+        }));
+        int[] offsets = new int[n + 1];
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            total += degree.get(i);
+            if (total > Integer.MAX_VALUE - 8)
+                throw new IllegalArgumentException("too many edges: " + m);
+            offsets[i + 1] = (int) total;
+            degree.set(i, offsets[i]); // From now on the next free position of row i.
+        }
+        int[] neighbors = new int[(int) total];
+        double[] w = new double[(int) total];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> edges.draw(chunk, (u, v) -> {
+            if (u != v) {
+                double uv = weights.of(u, v);
+                int p = degree.getAndIncrement(u);
+                neighbors[p] = v;
+                w[p] = uv;
+                p = degree.getAndIncrement(v);
+                neighbors[p] = u;
+                w[p] = uv;
+            }
+        }));
+        int[] keys = new int[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = i;
+        KeyIndex index = new KeyIndex(keys);
+        return WGraph_EdgeList.dedupe(new WGraph_CSR(index, offsets, neighbors, w, 0), index);
+    }
+
+    /**
+     * Returns the random generator of a chunk.
+     */
+    private static SplittableRandom random(long seed, int chunk) {
+        return new SplittableRandom(mix(seed + 0x9E3779B97F4A7C15L * (chunk + 1L)));
+    }
+
+    /**
+     * Returns the weight of the edge (u, v) (the same as of (v, u)).
+     */
+    private static double hashWeight(long seed, int u, int v) {
+        long pair = (long) Math.min(u, v) << 32 | Math.max(u, v);
+        return 1 + Long.remainderUnsigned(mix(seed ^ mix(pair)), MAX_WEIGHT);
+    }
+
+    /**
+     * Returns a uniform double in [0, 1) hashed from a seed and a number.
+     */
+    private static double unit(long seed, long i) {
+        return (mix(seed ^ mix(i)) >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * The splitmix64 finalizer (a good 64 bit mixing function).
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Draws the edges of one chunk (see build).
+     */
+    private interface EdgeSource {
+        void draw(int chunk, EdgeSink to);
+    }
+
+    /**
+     * Receives a drawn edge.
+     */
+    private interface EdgeSink {
+        void edge(int u, int v);
+    }
+
+    /**
+     * Returns the weight of a drawn edge.
+     */
+    private interface EdgeWeight {
+        double of(int u, int v);
+    }
+}
@@ -0,0 +1,155 @@
+package ex1.src;
+
+import java.util.Arrays;
+
+/**
+ * This class represents the landmark tables of the ALT (A*, Landmarks, Triangle inequality) algorithm.
+ * For k landmark nodes L the exact distances d(L,v) to every node v are stored. By the triangle inequality
+ * |d(L,t) - d(L,v)| <= d(v,t) for every landmark, so the maximum over the landmarks is an admissible
+ * (and consistent) lower bound on the remaining distance of an A* search towards t.
+ * The weights are never negative (connect ignores w < 0), which the bounds rely on.
+ * The tables are built over a CSR snapshot (dense indices) and are valid only for the mode count of that snapshot.
+ */
+public final class WGraph_Landmarks {
+    private final int k; // The number of landmarks.
+    private final int[] landmarks; // Dense indices of the landmarks.
+    private final double[] dist; // dist[v*k + l] = d(landmarks[l], v) (node major, so one node's bounds are contiguous).
+    private final int mc; // The mode count of the snapshot.
+
+    /**
+     * Selects k landmarks (farthest point heuristic) and computes their distance tables.
+     * The first landmark is the node farthest from node 0, every next one is the node whose distance to the closest
+     * landmark chosen so far is maximal (nodes unreachable from all landmarks, i.e. other components, first).
+     * This takes k+1 full dijkstra runs.
+     * @param csr - the CSR snapshot.
+     * @param k - the number of landmarks (at least 1).
+     * @throws IllegalArgumentException - if k < 1, or if the tables (size() * k distances) don't fit into one array.
+     */
+    public WGraph_Landmarks(WGraph_CSR csr, int k) {
+        if (k < 1)
+            throw new IllegalArgumentException("at least one landmark is needed: " + k);
+        int n = csr.size();
+        this.k = Math.min(k, n);
+        this.landmarks = new int[this.k];
+        this.dist = new double[tableSize(n, this.k)];
+        this.mc = csr.getMC();
+        if (n == 0)
+            return;
+        double[] d = new double[n];
+        double[] closest = new double[n]; // Distance from every node to its closest landmark.
+        IndexedDaryHeap heap = new IndexedDaryHeap();
+        sssp(csr, 0, d, heap);
+        int next = farthest(d);
+        Arrays.fill(closest, Double.POSITIVE_INFINITY);
+        for (int l = 0; l < this.k; l++) {
+            landmarks[l] = next;
+            sssp(csr, next, d, heap);
+            for (int v = 0; v < n; v++) {
+                dist[v * this.k + l] = d[v];
+                closest[v] = Math.min(closest[v], d[v]);
+            }
+            next = farthest(closest);
+        }
+    }
+
+    /**
+     * Returns a lower bound on the distance between v and t.
+     * @param v - dense index.
+     * @param t - dense index.
+     * @return - max over the landmarks of |d(L,t) - d(L,v)|, or infinity if v and t are in different components.
+     */
+    public double lowerBound(int v, int t) {
+        double best = 0;
+        int pv = v * k, pt = t * k;
+        for (int l = 0; l < k; l++) {
+            double dv = dist[pv + l], dt = dist[pt + l];
+            if (dv == Double.POSITIVE_INFINITY || dt == Double.POSITIVE_INFINITY) {
+                if (dv != dt) // The landmark reaches exactly one of them, so there is no v-t path.
+                    return Double.POSITIVE_INFINITY;
+                continue;
+            }
+            double b = Math.abs(dt - dv);
+            if (b > best)
+                best = b;
+        }
+        return best;
+    }
+
+    /**
+     * Returns the number of landmarks.
+     * @return - k.
+     */
+    public int size() {
+        return k;
+    }
+
+    /**
+     * Returns the dense index of the l-th landmark.
+     * @param l - landmark number in [0, size()).
+     * @return - dense node index.
+     */
+    public int landmarkAt(int l) {
+        return landmarks[l];
+    }
+
+    /**
+     * Returns the mode count of the snapshot these tables were built for.
+     * @return - mode count.
+     */
+    public int getMC() {
+        return mc;
+    }
+
+    /**
+     * Returns the length of the distance table, so that every index v*k + l fits into an int.
+     * @param n - the number of nodes.
+     * @param k - the number of landmarks.
+     * @return - n*k.
+     */
+    private static int tableSize(int n, int k) {
+        try {
+            return Math.multiplyExact(n, k);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("the tables of " + k + " landmarks over " + n
+                    + " nodes don't fit into one array, use at most " + Integer.MAX_VALUE / n + " landmarks");
+        }
+    }
+
+    /**
+     * Full single source dijkstra (no target).
+     * @param csr - the CSR snapshot.
+     * @param src - dense index of the source.
+     * @param d - output distances (infinity for unreachable nodes).
+     * @param heap - a reusable heap.
+     */
+    private static void sssp(WGraph_CSR csr, int src, double[] d, IndexedDaryHeap heap) {
+        Arrays.fill(d, Double.POSITIVE_INFINITY);
+        heap.clear(d.length);
+        d[src] = 0;
+        heap.push(src, 0);
+        while (!heap.isEmpty()) {
+            int u = heap.pop();
+            for (int p = csr.begin(u), end = csr.end(u); p < end; p++) {
+                int v = csr.neighborAt(p);
+                double nd = d[u] + csr.weightAt(p);
+                if (nd < d[v]) { // Settled nodes can never improve (non negative weights).
+                    d[v] = nd;
+                    heap.push(v, nd);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the maximal value (infinity counts as maximal).
+     * @param d - values.
+     * @return - the index of the maximal value.
+     */
+    private static int farthest(double[] d) {
+        int best = 0;
+        for (int v = 1; v < d.length; v++)
+            if (d[v] > d[best])
+                best = v;
+        return best;
+    }
+}
@@ -0,0 +1,347 @@
+package ex1.src;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32C;
+
+/**
+ * This class represents a read only undirected weighted graph which is served straight from a memory mapped
+ * file in the binary format of WGraph_Format (as written by WGraph_Algo.save).
+ * Nothing is copied onto the heap: node keys, row offsets, neighbors and weights are read from the mapped
+ * region on demand, so opening a graph takes milliseconds regardless of its size, the graph may be bigger than
+ * the heap, and several JVMs which map the same file share the page cache.
+ * - getNode, hasEdge and getEdge binary search the sorted keys and rows: O(log(n)) and O(log(d)).
+ * - getV() and getV(int) are views over the mapped arrays, their nodes are created on the fly.
+ * - getCSR() is a snapshot backed by the same mapped region, so all of WGraph_Algo's algorithms run on it directly.
+ * Every modifying method throws UnsupportedOperationException, and so do setInfo/setTag of the nodes.
+ * Opening only checks the header and the file size; verify() checks the checksum of the whole file.
+ * The file must not be modified while it is mapped. close() releases the file descriptor; the mapping itself
+ * stays valid (until the graph is garbage collected), so the graph can still be queried, but not verified.
+ */
+public final class WGraph_Mapped implements weighted_graph, Closeable {
+    private static final int SEGMENT_SHIFT = 27; // Every mapped segment holds 2^27 elements (at most 1GB).
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    private final FileChannel channel; // Kept open for verify() until close().
+    private final int n, m; // Number of nodes and of directed edge entries.
+    private final IntBuffer[] keys, offsets, neighbors; // Segments of the mapped sections.
+    private final DoubleBuffer[] weights;
+    private final WGraph_CSR csr;
+
+    private WGraph_Mapped(FileChannel channel, int n, int m) throws IOException {
+        this.channel = channel;
+        this.n = n;
+        this.m = m;
+        long pos = WGraph_Format.HEADER_BYTES;
+        keys = mapInts(pos, n);
+        pos += 4L * n;
+        offsets = mapInts(pos, n + 1L);
+        pos += 4L * (n + 1);
+        neighbors = mapInts(pos, m);
+        pos += 4L * m;
+        weights = new DoubleBuffer[segments(m)];
+        for (int s = 0; s < weights.length; s++)
+            weights[s] = map(pos + 8L * ((long) s << SEGMENT_SHIFT), 8 * segmentLength(m, s)).asDoubleBuffer();
+        csr = new WGraph_CSR(new Region(), 0);
+    }
+
+    /**
+     * Maps a graph file saved by WGraph_Algo.save.
+     * @param file - the file name.
+     * @return - a read only graph backed by the file.
+     * @throws IOException if the file can't be read or is not a graph file of a known version.
+     */
+    public static WGraph_Mapped open(String file) throws IOException {
+        FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        try {
+            ByteBuffer h = ByteBuffer.allocate(WGraph_Format.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (h.hasRemaining() && ch.read(h, h.position()) >= 0)
+                ;
+            if (h.hasRemaining() || h.getInt(0) != WGraph_Format.MAGIC || h.getInt(4) != WGraph_Format.VERSION)
+                throw new IOException("not a graph file: " + file);
+            int n = h.getInt(12), m = h.getInt(16);
+            if (n < 0 || m < 0 || ch.size() != WGraph_Format.fileBytes(n, m))
+                throw new IOException("truncated or corrupted graph file: " + file);
+            return new WGraph_Mapped(ch, n, m);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks the CRC-32C checksum of the whole file (this reads every page of it).
+     * @return - true iff the file is intact.
+     * @throws IOException if the file can't be read (or the graph was closed).
+     */
+    public boolean verify() throws IOException {
+        long size = channel.size(), data = size - 4;
+        CRC32C crc = new CRC32C();
+        for (long pos = 0; pos < data; pos += 1 << 30) {
+            long len = Math.min(1 << 30, data - pos);
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, len));
+        }
+        ByteBuffer t = channel.map(FileChannel.MapMode.READ_ONLY, data, 4).order(ByteOrder.LITTLE_ENDIAN);
+        return t.getInt(0) == (int) crc.getValue();
+    }
+
+    /**
+     * Closes the file channel. The mapped sections stay readable, only verify() can't be called anymore.
+     * @throws IOException if the channel can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns the CSR snapshot backed by the mapped file (it never becomes stale).
+     * @return - the snapshot.
+     */
+    public WGraph_CSR getCSR() {
+        return csr;
+    }
+
+    @Override
+    public node_info getNode(int key) {
+        return indexOf(key) < 0 ? null : new ReadOnlyNode(key);
+    }
+
+    @Override
+    public boolean hasEdge(int node1, int node2) {
+        return position(node1, node2) >= 0;
+    }
+
+    @Override
+    public double getEdge(int node1, int node2) {
+        int p = position(node1, node2);
+        return p < 0 ? -1 : weightAt(p);
+    }
+
+    @Override
+    public void addNode(int key) {
+        throw new UnsupportedOperationException("the mapped graph is read only");
+    }
+
+    @Override
+    public void connect(int node1, int node2, double w) {
+        throw new UnsupportedOperationException("the mapped graph is read only");
+    }
+
+    @Override
+    public Collection<node_info> getV() {
+        return new Nodes(0, n, false);
+    }
+
+    @Override
+    public Collection<node_info> getV(int node_id) {
+        int i = indexOf(node_id);
+        return i < 0 ? new Nodes(0, 0, true) : new Nodes(offsetAt(i), offsetAt(i + 1), true);
+    }
+
+    @Override
+    public void forEachNeighbor(int node_id, neighbor_consumer action) {
+        int i = indexOf(node_id);
+        if (i < 0)
+            return;
+        for (int p = offsetAt(i), end = offsetAt(i + 1); p < end; p++)
+            action.accept(keyAt(neighborAt(p)), weightAt(p));
+    }
+
+    @Override
+    public node_info removeNode(int key) {
+        throw new UnsupportedOperationException("the mapped graph is read only");
+    }
+
+    @Override
+    public void removeEdge(int node1, int node2) {
+        throw new UnsupportedOperationException("the mapped graph is read only");
+    }
+
+    @Override
+    public int nodeSize() {
+        return n;
+    }
+
+    @Override
+    public int edgeSize() {
+        return m / 2; // Every edge is stored in both rows.
+    }
+
+    @Override
+    public int getMC() {
+        return 0; // Never modified.
+    }
+
+    /**
+     * Returns the dense index of a key (binary search over the sorted keys).
+     * @param key - node key.
+     * @return - the index, or -1 if there is no such node.
+     */
+    private int indexOf(int key) {
+        int lo = 0, hi = n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1, k = keyAt(mid);
+            if (k < key)
+                lo = mid + 1;
+            else if (k > key)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the position of the edge node1-node2 (binary search over the sorted row of node1).
+     * @return - the position, or -1 if there is no such edge.
+     */
+    private int position(int node1, int node2) {
+        int i = indexOf(node1), j = indexOf(node2);
+        if (i < 0 || j < 0)
+            return -1;
+        int lo = offsetAt(i), hi = offsetAt(i + 1) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1, v = neighborAt(mid);
+            if (v < j)
+                lo = mid + 1;
+            else if (v > j)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    private int keyAt(int i) {
+        return keys[i >>> SEGMENT_SHIFT].get(i & SEGMENT_MASK);
+    }
+
+    private int offsetAt(int i) {
+        return offsets[i >>> SEGMENT_SHIFT].get(i & SEGMENT_MASK);
+    }
+
+    private int neighborAt(int p) {
+        return neighbors[p >>> SEGMENT_SHIFT].get(p & SEGMENT_MASK);
+    }
+
+    private double weightAt(int p) {
+        return weights[p >>> SEGMENT_SHIFT].get(p & SEGMENT_MASK);
+    }
+
+    /**
+     * Maps a section of count ints which starts at pos.
+     */
+    private IntBuffer[] mapInts(long pos, long count) throws IOException {
+        IntBuffer[] b = new IntBuffer[segments(count)];
+        for (int s = 0; s < b.length; s++)
+            b[s] = map(pos + 4L * ((long) s << SEGMENT_SHIFT), 4 * segmentLength(count, s)).asIntBuffer();
+        return b;
+    }
+
+    private MappedByteBuffer map(long pos, long bytes) throws IOException {
+        MappedByteBuffer b = channel.map(FileChannel.MapMode.READ_ONLY, pos, bytes);
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        return b;
+    }
+
+    private static int segments(long count) {
+        return (int) ((count + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+    }
+
+    private static long segmentLength(long count, int s) {
+        return Math.min(1L << SEGMENT_SHIFT, count - ((long) s << SEGMENT_SHIFT));
+    }
+
+    /**
+     * The mapped arrays as seen by WGraph_CSR.
+     */
+    private final class Region implements csr_storage {
+        @Override
+        public int size() {
+            return n;
+        }
+
+        @Override
+        public int entries() {
+            return m;
+        }
+
+        @Override
+        public int indexOf(int key) {
+            return WGraph_Mapped.this.indexOf(key);
+        }
+
+        @Override
+        public int keyAt(int i) {
+            return WGraph_Mapped.this.keyAt(i);
+        }
+
+        @Override
+        public int offsetAt(int i) {
+            return WGraph_Mapped.this.offsetAt(i);
+        }
+
+        @Override
+        public int neighborAt(int p) {
+            return WGraph_Mapped.this.neighborAt(p);
+        }
+
+        @Override
+        public double weightAt(int p) {
+            return WGraph_Mapped.this.weightAt(p);
+        }
+    }
+
+    /**
+     * A read only view of a range of dense indices (all nodes), or of neighbor positions (a row).
+     */
+    private final class Nodes extends AbstractCollection<node_info> {
+        private final int from, to;
+        private final boolean row; // True if the range holds neighbor positions.
+
+        Nodes(int from, int to, boolean row) {
+            this.from = from;
+            this.to = to;
+            this.row = row;
+        }
+
+        @Override
+        public Iterator<node_info> iterator() {
+            return new Iterator<node_info>() {
+                private int p = from;
+
+                @Override
+                public boolean hasNext() {
+                    return p < to;
+                }
+
+                @Override
+                public node_info next() {
+                    if (p >= to)
+                        throw new NoSuchElementException();
+                    int i = row ? neighborAt(p) : p;
+                    p++;
+                    return new ReadOnlyNode(keyAt(i));
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package ex1.src;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This class represents a compressed read only undirected weighted graph, for memory constrained deployments.
+ * - The neighbors of every node are sorted by dense index and stored as gap encoded varints: the first one as the
+ *   (zigzag) distance from the node itself, every next one as the distance from the previous one.
+ * - The weights are stored in the narrowest lossless form for the whole graph: a 1 or 2 byte code into a
+ *   dictionary of the distinct weights (at most 65536), a float if every weight is exactly a float, or a double.
+ *   They are indexed by edge position, so a weight is read in O(1) without decoding the row.
+ * Rows are decoded on the fly while they are iterated. Every thread keeps the last row it decoded, so the usual
+ * "for p = begin(i) .. end(i)" loops of WGraph_Algo decode every row once. getCSR() exposes the compressed rows
+ * as a snapshot, so all of WGraph_Algo's algorithms run on the compressed graph directly.
+ * bytesPerEdge() reports the memory footprint of the graph per (undirected) edge, to size hosts.
+ * Every modifying method throws UnsupportedOperationException (WGraph_Algo.copy() returns a modifiable copy).
+ */
+public final class WGraph_Packed implements weighted_graph {
+    private final KeyIndex index;
+    private final int[] offsets; // Row start positions (in edges).
+    private final int[] rowBytes; // Row start positions in data (in bytes).
+    private final byte[] data; // The varint neighbor gaps of all rows.
+    private final double[] dict; // Distinct weights (null unless the weights are coded).
+    private final byte[] codes8; // Weight codes when there are at most 256 distinct weights.
+    private final char[] codes16; // Weight codes when there are at most 65536 distinct weights.
+    private final float[] floats; // Weights when all of them are floats.
+    private final double[] doubles; // Weights otherwise.
+    private final ThreadLocal<RowCache> cache = ThreadLocal.withInitial(RowCache::new); // Last decoded row per thread.
+    private final WGraph_CSR csr;
+
+    /**
+     * Compresses a graph.
+     * @param graph - the graph to compress.
+     * @throws IllegalArgumentException if the graph is too large for a single compressed array.
+     */
+    public WGraph_Packed(weighted_graph graph) {
+        this(WGraph_CSR.current(graph));
+    }
+
+    /**
+     * Compresses a snapshot (see WGraph_Generator).
+     * @param src - the snapshot.
+     * @throws IllegalArgumentException if the graph is too large for a single compressed array.
+     */
+    WGraph_Packed(WGraph_CSR src) {
+        int n = src.size(), m = src.entries();
+        int[] keys = new int[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = src.keyAt(i);
+        index = new KeyIndex(keys);
+        offsets = new int[n + 1];
+        rowBytes = new int[n + 1];
+        long bytes = 0;
+        for (int i = 0; i < n; i++) { // Measure the rows first, so data is allocated once.
+            offsets[i + 1] = src.end(i);
+            for (int p = src.begin(i), prev = i; p < src.end(i); p++) {
+                int v = src.neighborAt(p);
+                bytes += varintBytes(p == src.begin(i) ? zigzag(v - prev) : v - prev - 1);
+                prev = v;
+            }
+            if (bytes > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("the graph is too large to be packed");
+            rowBytes[i + 1] = (int) bytes;
+        }
+        data = new byte[(int) bytes];
+        for (int i = 0; i < n; i++) {
+            int q = rowBytes[i];
+            for (int p = src.begin(i), prev = i; p < src.end(i); p++) {
+                int v = src.neighborAt(p);
+                q = putVarint(data, q, p == src.begin(i) ? zigzag(v - prev) : v - prev - 1);
+                prev = v;
+            }
+        }
+        long[] distinct = new long[m]; // Weight bits, sorted and unique.
+        boolean allFloats = true;
+        for (int p = 0; p < m; p++) {
+            double w = src.weightAt(p);
+            distinct[p] = Double.doubleToLongBits(w);
+            allFloats &= (double) (float) w == w;
+        }
+        Arrays.parallelSort(distinct);
+        int d = 0;
+        for (int p = 0; p < m; p++)
+            if (p == 0 || distinct[p] != distinct[p - 1])
+                distinct[d++] = distinct[p];
+        if (d <= 1 << 16) {
+            dict = new double[d];
+            for (int k = 0; k < d; k++)
+                dict[k] = Double.longBitsToDouble(distinct[k]);
+            codes8 = d <= 1 << 8 ? new byte[m] : null;
+            codes16 = codes8 == null ? new char[m] : null;
+            for (int p = 0; p < m; p++) {
+                int code = Arrays.binarySearch(distinct, 0, d, Double.doubleToLongBits(src.weightAt(p)));
+                if (codes8 != null)
+                    codes8[p] = (byte) code;
+                else
+                    codes16[p] = (char) code;
+            }
+            floats = null;
+            doubles = null;
+        } else {
+            dict = null;
+            codes8 = null;
+            codes16 = null;
+            floats = allFloats ? new float[m] : null;
+            doubles = allFloats ? null : new double[m];
+            for (int p = 0; p < m; p++) {
+                if (allFloats)
+                    floats[p] = (float) src.weightAt(p);
+                else
+                    doubles[p] = src.weightAt(p);
+            }
+        }
+        csr = new WGraph_CSR(new Rows(), 0);
+    }
+
+    /**
+     * Returns the CSR snapshot backed by the compressed rows (it never becomes stale).
+     * @return - the snapshot.
+     */
+    public WGraph_CSR getCSR() {
+        return csr;
+    }
+
+    /**
+     * Returns the memory footprint of this graph: key index, offsets, varint rows, weights and dictionary.
+     * @return - the number of bytes.
+     */
+    public long sizeInBytes() {
+        long weights = codes8 != null ? codes8.length : codes16 != null ? 2L * codes16.length
+                : floats != null ? 4L * floats.length : 8L * doubles.length;
+        return index.sizeInBytes() + 4L * offsets.length + 4L * rowBytes.length + data.length + weights
+                + (dict != null ? 8L * dict.length : 0);
+    }
+
+    /**
+     * Returns the memory footprint of this graph per undirected edge (see sizeInBytes()).
+     * @return - bytes per edge, or 0 for a graph without edges.
+     */
+    public double bytesPerEdge() {
+        return edgeSize() == 0 ? 0 : (double) sizeInBytes() / edgeSize();
+    }
+
+    @Override
+    public node_info getNode(int key) {
+        return index.indexOf(key) < 0 ? null : new ReadOnlyNode(key);
+    }
+
+    @Override
+    public boolean hasEdge(int node1, int node2) {
+        return position(node1, node2) >= 0;
+    }
+
+    @Override
+    public double getEdge(int node1, int node2) {
+        int p = position(node1, node2);
+        return p < 0 ? -1 : weightAt(p);
+    }
+
+    @Override
+    public void addNode(int key) {
+        throw new UnsupportedOperationException("the packed graph is read only");
+    }
+
+    @Override
+    public void connect(int node1, int node2, double w) {
+        throw new UnsupportedOperationException("the packed graph is read only");
+    }
+
+    @Override
+    public Collection<node_info> getV() {
+        return new AbstractCollection<node_info>() {
+            @Override
+            public Iterator<node_info> iterator() {
+                return new Iterator<node_info>() {
+                    private int i;
+
+                    @Override
+                    public boolean hasNext() {
+                        return i < index.size();
+                    }
+
+                    @Override
+                    public node_info next() {
+                        if (i >= index.size())
+                            throw new NoSuchElementException();
+                        return new ReadOnlyNode(index.keyAt(i++));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return index.size();
+            }
+        };
+    }
+
+    @Override
+    public Collection<node_info> getV(int node_id) {
+        int i = index.indexOf(node_id);
+        if (i < 0)
+            return new ArrayList<>();
+        List<node_info> list = new ArrayList<>(offsets[i + 1] - offsets[i]);
+        for (int p = offsets[i]; p < offsets[i + 1]; p++)
+            list.add(new ReadOnlyNode(index.keyAt(neighborAt(p))));
+        return list;
+    }
+
+    @Override
+    public void forEachNeighbor(int node_id, neighbor_consumer action) {
+        int i = index.indexOf(node_id);
+        if (i < 0)
+            return;
+        for (int p = offsets[i]; p < offsets[i + 1]; p++) // Decodes the row once (see neighborAt).
+            action.accept(index.keyAt(neighborAt(p)), weightAt(p));
+    }
+
+    @Override
+    public node_info removeNode(int key) {
+        throw new UnsupportedOperationException("the packed graph is read only");
+    }
+
+    @Override
+    public void removeEdge(int node1, int node2) {
+        throw new UnsupportedOperationException("the packed graph is read only");
+    }
+
+    @Override
+    public int nodeSize() {
+        return index.size();
+    }
+
+    @Override
+    public int edgeSize() {
+        return offsets[offsets.length - 1] / 2; // Every edge is stored in both rows.
+    }
+
+    @Override
+    public int getMC() {
+        return 0; // Never modified.
+    }
+
+    /**
+     * Returns the position of the edge node1-node2 (decodes the row of node1).
+     * @return - the position, or -1 if there is no such edge.
+     */
+    private int position(int node1, int node2) {
+        int i = index.indexOf(node1), j = index.indexOf(node2);
+        if (i < 0 || j < 0)
+            return -1;
+        for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+            int v = neighborAt(p);
+            if (v >= j)
+                return v == j ? p : -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the neighbor at position p, from the row cache of the calling thread.
+     */
+    private int neighborAt(int p) {
+        RowCache c = cache.get();
+        if (p < c.begin || p >= c.end)
+            decode(c, rowOf(p));
+        return c.neighbors[p - c.begin];
+    }
+
+    private double weightAt(int p) {
+        if (codes8 != null)
+            return dict[codes8[p] & 0xff];
+        if (codes16 != null)
+            return dict[codes16[p]];
+        return floats != null ? floats[p] : doubles[p];
+    }
+
+    /**
+     * Returns the row which holds position p (the last row starting at or before p, skipping empty rows).
+     */
+    private int rowOf(int p) {
+        int lo = 0, hi = offsets.length - 2;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= p)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        return lo;
+    }
+
+    /**
+     * Decodes row i into a cache.
+     */
+    private void decode(RowCache c, int i) {
+        int begin = offsets[i], end = offsets[i + 1];
+        if (c.neighbors.length < end - begin)
+            c.neighbors = new int[Math.max(end - begin, 2 * c.neighbors.length)];
+        int[] out = c.neighbors;
+        int q = rowBytes[i], prev = i;
+        for (int k = 0; k < end - begin; k++) {
+            int v = 0, shift = 0;
+            byte b;
+            do {
+                b = data[q++];
+                v |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            prev = k == 0 ? prev + unzigzag(v) : prev + v + 1;
+            out[k] = prev;
+        }
+        c.begin = begin;
+        c.end = end;
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static int varintBytes(int v) {
+        int bytes = 1;
+        while ((v & ~0x7f) != 0) {
+            v >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    private static int putVarint(byte[] a, int q, int v) {
+        while ((v & ~0x7f) != 0) {
+            a[q++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        a[q++] = (byte) v;
+        return q;
+    }
+
+    /**
+     * The last decoded row of one thread (never shared between threads).
+     */
+    private static final class RowCache {
+        int begin, end; // The cached positions (empty at first).
+        int[] neighbors = new int[16];
+    }
+
+    /**
+     * The compressed rows as seen by WGraph_CSR.
+     */
+    private final class Rows implements csr_storage {
+        @Override
+        public int size() {
+            return index.size();
+        }
+
+        @Override
+        public int entries() {
+            return offsets[offsets.length - 1];
+        }
+
+        @Override
+        public int indexOf(int key) {
+            return index.indexOf(key);
+        }
+
+        @Override
+        public int keyAt(int i) {
+            return index.keyAt(i);
+        }
+
+        @Override
+        public int offsetAt(int i) {
+            return offsets[i];
+        }
+
+        @Override
+        public int neighborAt(int p) {
+            return WGraph_Packed.this.neighborAt(p);
+        }
+
+        @Override
+        public double weightAt(int p) {
+            return WGraph_Packed.this.weightAt(p);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ex1.src;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * This class represents a read only point in time view of a WGraph_DS, as returned by WGraph_DS.snapshot().
+ * The snapshot shares the rows of the graph at the moment it was taken; the graph copies a row (and its edges
+ * HashMap) before changing it, so the snapshot never changes and other threads may read it without locks while
+ * the graph keeps being modified. getMC() is the mode count of the graph when the snapshot was taken.
+ * - getV() and getV(int) are views over the shared rows, their nodes are created on the fly.
+ * - getCSR() is built once, on first use (or is the graph's own CSR if it was up to date), so all of
+ *   WGraph_Algo's algorithms run on the snapshot.
+ * Every modifying method throws UnsupportedOperationException (WGraph_Algo.copy() returns a modifiable copy).
+ */
+public final class WGraph_Snapshot implements weighted_graph {
+    private final Map<Integer, HashMap<Integer, Double>> E; // The shared rows (never modified).
+    private final int nSize, eSize, MC;
+    private volatile WGraph_CSR csr; // Built lazily.
+
+    WGraph_Snapshot(Map<Integer, HashMap<Integer, Double>> E, int nSize, int eSize, int MC, WGraph_CSR csr) {
+        this.E = E;
+        this.nSize = nSize;
+        this.eSize = eSize;
+        this.MC = MC;
+        this.csr = csr;
+    }
+
+    /**
+     * Returns the CSR snapshot of this view (built on the first call).
+     * @return - the snapshot.
+     */
+    public WGraph_CSR getCSR() {
+        WGraph_CSR s = csr;
+        if (s == null) { // Two threads may both build it, both results are the same.
+            s = WGraph_DS.buildCSR(E, MC);
+            csr = s;
+        }
+        return s;
+    }
+
+    @Override
+    public node_info getNode(int key) {
+        return E.containsKey(key) ? new ReadOnlyNode(key) : null;
+    }
+
+    @Override
+    public boolean hasEdge(int node1, int node2) {
+        Map<Integer, Double> row = E.get(node1);
+        return node1 != node2 && row != null && row.containsKey(node2);
+    }
+
+    @Override
+    public double getEdge(int node1, int node2) {
+        Map<Integer, Double> row = E.get(node1);
+        Double w = node1 == node2 || row == null ? null : row.get(node2);
+        return w == null ? -1 : w;
+    }
+
+    @Override
+    public void addNode(int key) {
+        throw new UnsupportedOperationException("the snapshot is read only");
+    }
+
+    @Override
+    public void connect(int node1, int node2, double w) {
+        throw new UnsupportedOperationException("the snapshot is read only");
+    }
+
+    @Override
+    public Collection<node_info> getV() {
+        return new Nodes(E.keySet());
+    }
+
+    @Override
+    public Collection<node_info> getV(int node_id) {
+        Map<Integer, Double> row = E.get(node_id);
+        return new Nodes(row == null ? Collections.emptySet() : row.keySet());
+    }
+
+    @Override
+    public void forEachNeighbor(int node_id, neighbor_consumer action) {
+        HashMap<Integer, Double> row = E.get(node_id);
+        if (row != null)
+            for (Map.Entry<Integer, Double> e : row.entrySet())
+                action.accept(e.getKey(), e.getValue());
+    }
+
+    @Override
+    public node_info removeNode(int key) {
+        throw new UnsupportedOperationException("the snapshot is read only");
+    }
+
+    @Override
+    public void removeEdge(int node1, int node2) {
+        throw new UnsupportedOperationException("the snapshot is read only");
+    }
+
+    @Override
+    public int nodeSize() {
+        return nSize;
+    }
+
+    @Override
+    public int edgeSize() {
+        return eSize;
+    }
+
+    @Override
+    public int getMC() {
+        return MC;
+    }
+
+    /**
+     * A read only view of a set of keys as nodes.
+     */
+    private static final class Nodes extends AbstractCollection<node_info> {
+        private final Collection<Integer> keys;
+
+        Nodes(Collection<Integer> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public Iterator<node_info> iterator() {
+            Iterator<Integer> it = keys.iterator();
+            return new Iterator<node_info>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public node_info next() {
+                    return new ReadOnlyNode(it.next());
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return keys.size();
+        }
+    }
+}
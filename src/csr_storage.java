@@ -0,0 +1,44 @@
+package ex1.src;
+
+/**
+ * This interface represents the arrays of a CSR snapshot when they are not plain heap arrays
+ * (see WGraph_CSR): a memory mapped file (WGraph_Mapped) or a compressed graph (WGraph_Packed).
+ * The layout is the same as the one of WGraph_CSR: dense indices in key order and rows sorted by neighbor index.
+ * Implementations must be safe for concurrent readers.
+ */
+interface csr_storage {
+    /**
+     * Returns the number of nodes.
+     */
+    int size();
+
+    /**
+     * Returns the number of directed edge entries (twice the number of edges).
+     */
+    int entries();
+
+    /**
+     * Returns the dense index of a key, or -1 if there is no such node.
+     */
+    int indexOf(int key);
+
+    /**
+     * Returns the key of a dense index.
+     */
+    int keyAt(int i);
+
+    /**
+     * Returns the start position of row i (offsetAt(size()) == entries()).
+     */
+    int offsetAt(int i);
+
+    /**
+     * Returns the dense neighbor index stored at position p.
+     */
+    int neighborAt(int p);
+
+    /**
+     * Returns the edge weight stored at position p.
+     */
+    double weightAt(int p);
+}
@@ -0,0 +1,44 @@
+package ex1.src;
+
+/**
+ * This interface represents the frontier (minimum priority queue) of a shortest path search.
+ * The elements are dense node indices (ints) with double keys, so implementations can be fully primitive.
+ * The default implementation is IndexedDaryHeap, other implementations (e.g. radix or bucket queues
+ * for integer weights) can be plugged into WGraph_Algo through setFrontier(...).
+ * A frontier without decrease-key may keep the old entries of a pushed element instead (lazy deletion):
+ * the searches skip the pops of already settled nodes, and count them as stale pops (see QueryMetrics).
+ */
+public interface frontier_queue {
+    /**
+     * Empties the queue and prepares it for elements in the range [0, capacity).
+     * @param capacity - the number of nodes of the searched graph.
+     */
+    public void clear(int capacity);
+
+    /**
+     * Returns true iff the queue has no elements.
+     * @return
+     */
+    public boolean isEmpty();
+
+    /**
+     * Inserts the element with the given key, or decreases its key if it's already in the queue
+     * (or inserts another entry of it, see the interface comment).
+     * Note: if the element is in the queue with a key smaller or equal to the given key, nothing changes.
+     * @param id - the element (dense node index).
+     * @param key - the priority (tentative distance).
+     */
+    public void push(int id, double key);
+
+    /**
+     * Removes and returns the element with the minimal key.
+     * @return - the element (dense node index).
+     */
+    public int pop();
+
+    /**
+     * Returns the minimal key in the queue (the queue must not be empty).
+     * @return - the minimal key.
+     */
+    public double peekKey();
+}
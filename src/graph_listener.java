@@ -0,0 +1,29 @@
+package ex1.src;
+
+/**
+ * This interface represents an observer of the changes of a graph (see WGraph_DS.addListener).
+ * Every method is called right after the change was applied to the graph, by the thread which changed it.
+ * Removing a node is reported as the removal of each of its edges, followed by nodeRemoved.
+ */
+public interface graph_listener {
+    /**
+     * Called after a node was added.
+     * @param key - the key of the new node.
+     */
+    public void nodeAdded(int key);
+
+    /**
+     * Called after an edge was added, removed or its weight was changed.
+     * @param node1 - first node.
+     * @param node2 - second node.
+     * @param oldWeight - the previous weight, or -1 if the edge is new.
+     * @param newWeight - the new weight, or -1 if the edge was removed.
+     */
+    public void edgeChanged(int node1, int node2, double oldWeight, double newWeight);
+
+    /**
+     * Called after a node (which has no edges anymore) was removed.
+     * @param key - the key of the removed node.
+     */
+    public void nodeRemoved(int key);
+}
@@ -0,0 +1,15 @@
+package ex1.src;
+
+/**
+ * This interface represents a visitor of the neighbors of a node (see weighted_graph.forEachNeighbor).
+ * It receives the neighbor key and the edge weight together as primitives, so a visit allocates nothing.
+ */
+@FunctionalInterface
+public interface neighbor_consumer {
+    /**
+     * Called once for every neighbor.
+     * @param neighbor - the key of the neighbor.
+     * @param w - the weight of the edge to the neighbor.
+     */
+    public void accept(int neighbor, double w);
+}
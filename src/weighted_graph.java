@@ -92,4 +92,16 @@ public interface weighted_graph {
      * @return
      */
     public int getMC();
+    /**
+     * Calls the consumer once for every neighbor of node_id, with the neighbor key and the edge weight,
+     * without creating node or collection objects (unlike getV(node_id) and getEdge).
+     * The graph must not be changed during the visit. Does nothing if there is no such node.
+     * The default implementation uses getV(node_id) and getEdge; the graphs of this package override it.
+     * @param node_id - the node.
+     * @param action - the consumer.
+     */
+    public default void forEachNeighbor(int node_id, neighbor_consumer action) {
+        for (node_info n : getV(node_id))
+            action.accept(n.getKey(), getEdge(node_id, n.getKey()));
+    }
 }
@@ -5,9 +5,27 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -20,12 +38,20 @@ class WGraph_AlgoTest {
         start = new Date().getTime();
     }
 
+    /**
+     * Creates the empty graph the tests run on (WGraph_CompactAlgoTest runs this suite on WGraph_Compact).
+     * @return - a new empty graph.
+     */
+    weighted_graph newGraph(){
+        return new WGraph_DS();
+    }
+
     /**
      * Test graph's copy constructor.
      */
     @Test
     void testDeepCopy(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         weighted_graph_algorithms ga = new WGraph_Algo();
         ga.init(g);
         assertTrue(ga.isConnected());
@@ -50,7 +76,7 @@ class WGraph_AlgoTest {
      */
     @Test
     void testIsConnected(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         for(int i = 1; i <= 7; i++){
             g.addNode(i);
         }
@@ -76,7 +102,7 @@ class WGraph_AlgoTest {
      */
     @Test
     void testShortestPathDist(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         for(int i = 1; i <= 7; i++){
             g.addNode(i);
         }
@@ -100,7 +126,7 @@ class WGraph_AlgoTest {
      */
     @Test
     void testShortestPath(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         for(int i = 1; i <= 7; i++){
             g.addNode(i);
         }
@@ -127,7 +153,7 @@ class WGraph_AlgoTest {
      */
     @Test
     void testSaveLoad(){
-        weighted_graph g1 = new WGraph_DS();
+        weighted_graph g1 = newGraph();
         for(int i = 1; i <= 7; i++){
             g1.addNode(i);
         }
@@ -142,7 +168,7 @@ class WGraph_AlgoTest {
         weighted_graph_algorithms ga1 = new WGraph_Algo();
         ga1.init(g1);
         ga1.save("myFile.bin");
-        weighted_graph g2 = new WGraph_DS();
+        weighted_graph g2 = newGraph();
         weighted_graph_algorithms ga2 = new WGraph_Algo();
         ga2.init(g2);
         ga2.load("myFile.bin");
@@ -162,12 +188,764 @@ class WGraph_AlgoTest {
         assertNotEquals(ga1.getGraph(),ga2.getGraph());
     }
 
+    /**
+     * Test that many threads can query the same graph at the same time,
+     * and that the queries don't touch the tags and infos of the nodes.
+     */
+    @Test
+    void testConcurrentQueries() throws InterruptedException {
+        weighted_graph g = newGraph();
+        Random r = new Random(1);
+        for(int i = 0; i < 2000; i++)
+            g.addNode(i);
+        for(int i = 0; i < 10000; i++)
+            g.connect(r.nextInt(2000),r.nextInt(2000),r.nextDouble());
+        for(node_info n : g.getV()){
+            n.setTag(-5);
+            n.setInfo("untouched");
+        }
+        weighted_graph_algorithms ga = new WGraph_Algo();
+        ga.init(g);
+        double[] expected = new double[100];
+        for(int i = 0; i < 100; i++)
+            expected[i] = ga.shortestPathDist(i, 1999-i);
+        AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for(int t = 0; t < threads.length; t++){
+            threads[t] = new Thread(() -> {
+                for(int k = 0; k < 5; k++)
+                    for(int i = 0; i < 100; i++)
+                        if(Double.compare(expected[i], ga.shortestPathDist(i, 1999-i)) != 0)
+                            errors.incrementAndGet();
+            });
+            threads[t].start();
+        }
+        for(Thread t : threads)
+            t.join();
+        assertEquals(0,errors.get());
+        for(node_info n : g.getV()){
+            assertEquals(-5,n.getTag());
+            assertEquals("untouched",n.getInfo());
+        }
+    }
+
+    /**
+     * Test the indexed heap with decrease-key against sorting,
+     * and that a pluggable frontier gives the same shortest paths.
+     */
+    @Test
+    void testIndexedDaryHeap(){
+        IndexedDaryHeap heap = new IndexedDaryHeap();
+        Random r = new Random(1);
+        heap.clear(1000);
+        double[] keys = new double[1000];
+        for(int i = 0; i < 1000; i++){
+            keys[i] = r.nextDouble();
+            heap.push(i, keys[i]);
+        }
+        for(int i = 0; i < 990; i += 3){ // Decrease some keys, try to increase others (no effect).
+            keys[i] /= 2;
+            heap.push(i, keys[i]);
+            heap.push(i+1, 2);
+        }
+        assertEquals(1000,heap.size());
+        double[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        for(int i = 0; i < 1000; i++){
+            assertEquals(sorted[i],heap.peekKey());
+            int id = heap.pop();
+            assertEquals(sorted[i],keys[id]);
+        }
+        assertTrue(heap.isEmpty());
+
+        weighted_graph g = newGraph();
+        for(int i = 0; i < 500; i++)
+            g.addNode(i);
+        for(int i = 0; i < 2000; i++)
+            g.connect(r.nextInt(500),r.nextInt(500),r.nextDouble());
+        WGraph_Algo ga1 = new WGraph_Algo(), ga2 = new WGraph_Algo();
+        ga1.init(g);
+        ga2.init(g);
+        ga2.setFrontier(() -> new IndexedDaryHeap(2));
+        for(int i = 0; i < 50; i++)
+            assertEquals(ga1.shortestPathDist(i,499-i),ga2.shortestPathDist(i,499-i));
+    }
+
+    /**
+     * Test that the bidirectional search mode returns the same distances as plain dijkstra,
+     * and valid paths of the same length.
+     */
+    @Test
+    void testBidirectionalMode(){
+        weighted_graph g = newGraph();
+        Random r = new Random(2);
+        for(int i = 0; i < 1000; i++)
+            g.addNode(i);
+        for(int i = 0; i < 2500; i++)
+            g.connect(r.nextInt(1000),r.nextInt(1000),r.nextInt(20));
+        WGraph_Algo ga1 = new WGraph_Algo(), ga2 = new WGraph_Algo();
+        ga1.init(g);
+        ga2.init(g);
+        ga2.setSearchMode(WGraph_Algo.SearchMode.BIDIRECTIONAL);
+        assertEquals(WGraph_Algo.SearchMode.BIDIRECTIONAL,ga2.getSearchMode());
+        for(int i = 0; i < 100; i++){
+            int src = r.nextInt(1000), dest = r.nextInt(1000);
+            double dist = ga1.shortestPathDist(src,dest);
+            assertEquals(dist,ga2.shortestPathDist(src,dest));
+            List<node_info> path = ga2.shortestPath(src,dest);
+            if(dist < 0){
+                assertNull(path);
+                continue;
+            }
+            assertEquals(src,path.get(0).getKey());
+            assertEquals(dest,path.get(path.size()-1).getKey());
+            double length = 0;
+            for(int j = 1; j < path.size(); j++)
+                length += g.getEdge(path.get(j-1).getKey(),path.get(j).getKey());
+            assertEquals(dist,length);
+        }
+    }
+
+    /**
+     * Test that the ALT search mode returns the same distances as plain dijkstra,
+     * and that the landmarks are refreshed after the graph changes.
+     */
+    @Test
+    void testALTMode(){
+        weighted_graph g = newGraph();
+        Random r = new Random(3);
+        for(int i = 0; i < 1000; i++)
+            g.addNode(i);
+        for(int i = 0; i < 2500; i++)
+            g.connect(r.nextInt(1000),r.nextInt(1000),r.nextInt(20));
+        WGraph_Algo ga1 = new WGraph_Algo(), ga2 = new WGraph_Algo();
+        ga1.init(g);
+        ga2.init(g);
+        ga2.preprocessLandmarks(4);
+        ga2.setSearchMode(WGraph_Algo.SearchMode.ALT);
+        for(int k = 0; k < 3; k++){
+            for(int i = 0; i < 100; i++){
+                int src = r.nextInt(1000), dest = r.nextInt(1000);
+                assertEquals(ga1.shortestPathDist(src,dest),ga2.shortestPathDist(src,dest));
+                List<node_info> p1 = ga1.shortestPath(src,dest), p2 = ga2.shortestPath(src,dest);
+                assertEquals(p1 == null,p2 == null);
+            }
+            g.connect(r.nextInt(1000),r.nextInt(1000),0.5); // Stale landmarks must be refreshed.
+            g.removeNode(r.nextInt(1000));
+        }
+    }
+
+    /**
+     * Test that contraction hierarchy queries return the same distances as plain dijkstra and valid (unpacked) paths,
+     * that the index can be saved and loaded (but not from a corrupted or truncated file), and that a stale index
+     * is not used.
+     */
+    @Test
+    void testContractionHierarchy() throws IOException {
+        weighted_graph g = newGraph();
+        Random r = new Random(4);
+        for(int i = 0; i < 800; i++)
+            g.addNode(i);
+        for(int i = 0; i < 2000; i++)
+            g.connect(r.nextInt(800),r.nextInt(800),r.nextInt(20));
+        WGraph_Algo ga1 = new WGraph_Algo(), ga2 = new WGraph_Algo();
+        ga1.init(g);
+        ga2.init(g);
+        ga2.buildContractionHierarchy();
+        ga2.setSearchMode(WGraph_Algo.SearchMode.CH);
+        for(int i = 0; i < 200; i++){
+            int src = r.nextInt(800), dest = r.nextInt(800);
+            double dist = ga1.shortestPathDist(src,dest);
+            assertEquals(dist,ga2.shortestPathDist(src,dest));
+            List<node_info> path = ga2.shortestPath(src,dest);
+            if(dist < 0){
+                assertNull(path);
+                continue;
+            }
+            assertEquals(src,path.get(0).getKey());
+            assertEquals(dest,path.get(path.size()-1).getKey());
+            double length = 0;
+            for(int j = 1; j < path.size(); j++){
+                assertTrue(g.hasEdge(path.get(j-1).getKey(),path.get(j).getKey()) || src == dest);
+                length += g.getEdge(path.get(j-1).getKey(),path.get(j).getKey());
+            }
+            assertEquals(dist,length);
+        }
+        assertTrue(ga2.saveContractionHierarchy("myFile.ch"));
+        WGraph_Algo ga3 = new WGraph_Algo();
+        ga3.init(g);
+        assertTrue(ga3.loadContractionHierarchy("myFile.ch"));
+        ga3.setSearchMode(WGraph_Algo.SearchMode.CH);
+        assertEquals(ga1.shortestPathDist(1,2),ga3.shortestPathDist(1,2));
+        try(RandomAccessFile f = new RandomAccessFile("myFile.ch","rw")){ // Flip one weight bit.
+            f.seek(f.length()-100);
+            int b = f.read();
+            f.seek(f.length()-100);
+            f.write(b ^ 1);
+        }
+        assertFalse(ga1.loadContractionHierarchy("myFile.ch"));
+        assertTrue(ga2.saveContractionHierarchy("myFile.ch"));
+        try(RandomAccessFile f = new RandomAccessFile("myFile.ch","rw")){ // Truncate it.
+            f.setLength(f.length()-8);
+        }
+        assertFalse(ga1.loadContractionHierarchy("myFile.ch"));
+        assertTrue(ga2.saveContractionHierarchy("myFile.ch"));
+        g.connect(1,2,0); // The index is stale now, the queries fall back to dijkstra.
+        assertEquals(0,ga2.shortestPathDist(1,2));
+        assertFalse(ga2.saveContractionHierarchy("myFile.ch"));
+        assertFalse(ga1.loadContractionHierarchy("myFile.ch"));
+    }
+
+    /**
+     * Test the distance table against single shortestPathDist queries (including missing nodes and duplicates).
+     */
+    @Test
+    void testDistanceMatrix(){
+        weighted_graph g = newGraph();
+        Random r = new Random(4);
+        for(int i = 0; i < 500; i++)
+            g.addNode(i);
+        for(int i = 0; i < 900; i++)
+            g.connect(r.nextInt(500),r.nextInt(500),r.nextInt(20));
+        weighted_graph_algorithms ga = new WGraph_Algo();
+        ga.init(g);
+        int[] sources = new int[40], targets = new int[60];
+        for(int i = 0; i < sources.length; i++)
+            sources[i] = r.nextInt(510); // Some keys are missing.
+        for(int j = 0; j < targets.length; j++)
+            targets[j] = r.nextInt(510);
+        targets[1] = targets[0];
+        double[] table = ((WGraph_Algo) ga).distanceMatrix(sources,targets);
+        assertEquals(sources.length*targets.length,table.length);
+        for(int i = 0; i < sources.length; i++)
+            for(int j = 0; j < targets.length; j++)
+                assertEquals(ga.shortestPathDist(sources[i],targets[j]),table[i*targets.length+j]);
+        assertEquals(0,((WGraph_Algo) ga).distanceMatrix(new int[0],targets).length);
+    }
+
+    /**
+     * Test the path cache: symmetric hits, LRU eviction and invalidation by graph changes.
+     */
+    @Test
+    void testPathCache(){
+        weighted_graph g = newGraph();
+        for(int i = 0; i < 5; i++)
+            g.addNode(i);
+        g.connect(0,1,1);
+        g.connect(1,2,1);
+        g.connect(2,3,1);
+        WGraph_Algo ga = new WGraph_Algo();
+        ga.init(g);
+        assertNull(ga.getPathCache());
+        ga.setPathCache(2);
+        PathCache cache = ga.getPathCache();
+        assertEquals(3,ga.shortestPathDist(0,3));
+        assertEquals(3,ga.shortestPathDist(3,0)); // The same entry.
+        assertEquals(1,cache.hits());
+        assertEquals(1,cache.misses());
+        List<node_info> p = ga.shortestPath(3,0); // Only the distance was cached.
+        assertEquals(2,cache.misses());
+        assertEquals(3,p.get(0).getKey());
+        p = ga.shortestPath(0,3); // The cached path is reversed.
+        assertEquals(2,cache.hits());
+        assertEquals(0,p.get(0).getKey());
+        assertEquals(3,p.get(3).getKey());
+        assertNull(ga.shortestPath(0,4));
+        assertNull(ga.shortestPath(4,0)); // A cached "no path".
+        assertEquals(3,cache.hits());
+        assertEquals(-1,ga.shortestPathDist(1,4));
+        assertEquals(1,cache.evictions()); // (0,3) was the least recently used pair.
+        assertEquals(2,cache.size());
+        g.connect(3,4,1); // A new graph version.
+        assertEquals(4,ga.shortestPathDist(0,4));
+        assertEquals(4,ga.shortestPath(4,1).size());
+        assertEquals(1,cache.evictions());
+        ga.setPathCache(0);
+        assertNull(ga.getPathCache());
+    }
+
+    /**
+     * Test that a shortest path tree answers many destinations like shortestPath, and becomes invalid after a change.
+     */
+    @Test
+    void testShortestPathTree(){
+        weighted_graph g = newGraph();
+        Random r = new Random(7);
+        for(int i = 0; i < 1000; i++)
+            g.addNode(i);
+        for(int i = 0; i < 2000; i++)
+            g.connect(r.nextInt(1000),r.nextInt(1000),r.nextInt(30));
+        WGraph_Algo ga = new WGraph_Algo();
+        ga.init(g);
+        assertNull(ga.shortestPathTree(-1));
+        ShortestPathTree tree = ga.shortestPathTree(0);
+        assertEquals(0,tree.getSource());
+        assertEquals(0,tree.dist(0));
+        for(int i = 0; i < 100; i++){
+            int dest = r.nextInt(1100); // Some keys are missing.
+            assertEquals(ga.shortestPathDist(0,dest),tree.dist(dest));
+            List<node_info> p = tree.path(dest);
+            assertEquals(ga.shortestPath(0,dest) == null,p == null);
+            if(p != null){
+                double len = 0;
+                for(int k = 1; k < p.size(); k++)
+                    len += g.getEdge(p.get(k-1).getKey(),p.get(k).getKey());
+                assertEquals(tree.dist(dest),len,1e-9);
+            }
+        }
+        int settled = tree.settledCount();
+        tree.dist(999); // Already settled or resumed, never restarted.
+        assertTrue(tree.settledCount() >= settled);
+        assertTrue(tree.isValid());
+        g.connect(0,999,0);
+        assertFalse(tree.isValid());
+        assertThrows(IllegalStateException.class, () -> tree.dist(999));
+    }
+
+    /**
+     * Test the dynamic shortest path tree against a fresh search after insertions, weight changes and removals.
+     */
+    @Test
+    void testDynamicSSSP(){
+        WGraph_DS g = new WGraph_DS();
+        Random r = new Random(8);
+        for(int i = 0; i < 500; i++)
+            g.addNode(i);
+        for(int i = 0; i < 1500; i++)
+            g.connect(r.nextInt(500),r.nextInt(500),1+r.nextInt(20));
+        WGraph_Algo ga = new WGraph_Algo();
+        ga.init(g);
+        assertThrows(IllegalArgumentException.class, () -> ga.trackSource(-1));
+        WGraph_DynamicSSSP t = ga.trackSource(0);
+        assertSame(t,ga.trackSource(0));
+        WGraph_Algo fresh = new WGraph_Algo();
+        fresh.init(g);
+        for(int step = 0; step < 300; step++){
+            int a = r.nextInt(520), b = r.nextInt(500); // Some new nodes.
+            switch(step % 5){
+                case 0: g.addNode(a); g.connect(a,b,1+r.nextInt(20)); break;
+                case 1: g.connect(a,b,r.nextInt(3)); break; // Lower weights.
+                case 2: g.connect(a,b,10+r.nextInt(30)); break; // Higher weights.
+                case 3: g.removeEdge(a,b); break;
+                default: // Remove a (likely tree) edge of b, sometimes a whole node.
+                    if(step % 50 == 4)
+                        g.removeNode(a);
+                    else
+                        for(node_info n : g.getV(b)){
+                            g.removeEdge(b,n.getKey());
+                            break;
+                        }
+            }
+            for(int i = 0; i < 20; i++){
+                int k = r.nextInt(520);
+                assertEquals(fresh.shortestPathDist(0,k),t.dist(k),1e-9);
+            }
+        }
+        for(node_info n : g.getV())
+            assertEquals(fresh.shortestPathDist(n.getKey(),0),ga.shortestPathDist(n.getKey(),0),1e-9);
+        List<node_info> p = ga.shortestPath(0,g.getV().iterator().next().getKey());
+        if(p != null)
+            assertEquals(0,p.get(0).getKey());
+        long before = t.repairedNodes(); // A local change repairs a local region.
+        g.addNode(1000);
+        g.connect(0,1000,1);
+        assertEquals(1,t.dist(1000));
+        assertTrue(t.repairedNodes()-before <= 2);
+        g.removeNode(0);
+        assertEquals(-1,t.dist(1000));
+        g.addNode(0);
+        assertEquals(0,t.dist(0));
+        g.connect(0,1000,2);
+        assertEquals(2,t.dist(1000));
+        ga.untrackSource(0);
+        g.connect(0,1000,5);
+        assertEquals(2,t.dist(1000)); // Not following the graph anymore.
+    }
+
+    /**
+     * Test that queries from or to a tracked source are answered from its tree, without rebuilding the snapshot
+     * of the graph after every change.
+     */
+    @Test
+    void testTrackedQueriesWithoutSnapshot(){
+        AtomicInteger snapshots = new AtomicInteger();
+        WGraph_DS g = new WGraph_DS(){
+            @Override
+            public WGraph_CSR getCSR(){
+                snapshots.incrementAndGet();
+                return super.getCSR();
+            }
+        };
+        for(int i = 0; i < 100; i++)
+            g.addNode(i);
+        for(int i = 1; i < 100; i++)
+            g.connect(i-1,i,1);
+        WGraph_Algo ga = new WGraph_Algo();
+        ga.init(g);
+        ga.trackSource(0);
+        int before = snapshots.get();
+        for(int i = 2; i < 100; i++){
+            g.connect(0,i,i/2.0); // Every change bumps the mode count of the graph.
+            assertEquals(Math.min(i,i/2.0),ga.shortestPathDist(0,i));
+            assertEquals(Math.min(i,i/2.0),ga.shortestPathDist(i,0));
+            assertEquals(0,ga.shortestPath(i,0).get(ga.shortestPath(i,0).size()-1).getKey());
+            g.removeEdge(0,i);
+            assertEquals(i,ga.shortestPathDist(0,i));
+        }
+        assertEquals(0,ga.shortestPathDist(0,0));
+        assertEquals(-1,ga.shortestPathDist(0,500));
+        assertNull(ga.shortestPath(500,0));
+        assertEquals(before,snapshots.get());
+        ga.shortestPathDist(1,2); // Not tracked.
+        assertEquals(before+1,snapshots.get());
+    }
+
+    /**
+     * Test the binary file format: round trips of both graph implementations, rejection of corrupted files
+     * and loading of files written by the old Java serialization.
+     */
+    @Test
+    void testBinaryFormat() throws IOException {
+        weighted_graph g = new WGraph_DS();
+        Random r = new Random(9);
+        for(int i = 0; i < 20000; i++)
+            g.addNode(r.nextInt(1000000));
+        WGraph_Algo ga = new WGraph_Algo();
+        ga.init(g);
+        int[] keys = ga.nodeKeys();
+        for(int i = 0; i < 60000; i++)
+            g.connect(keys[r.nextInt(keys.length)],keys[r.nextInt(keys.length)],r.nextDouble()*10);
+        assertTrue(ga.save("myFile.wgr"));
+        WGraph_Algo loaded = new WGraph_Algo();
+        assertTrue(loaded.load("myFile.wgr"));
+        assertEquals(g,loaded.getGraph());
+        assertEquals(((WGraph_DS) g).componentCount(),((WGraph_DS) loaded.getGraph()).componentCount());
+        assertEquals(ga.shortestPathDist(keys[0],keys[1]),loaded.shortestPathDist(keys[0],keys[1]),1e-9);
+        loaded.getGraph().connect(keys[0],keys[1],0); // The loaded graph is a normal, modifiable graph.
+        assertEquals(0,loaded.shortestPathDist(keys[0],keys[1]));
+
+        weighted_graph c = new WGraph_Compact(g);
+        WGraph_Algo gc = new WGraph_Algo();
+        gc.init(c);
+        assertTrue(gc.save("myFile.wgr"));
+        assertTrue(loaded.load("myFile.wgr"));
+        assertTrue(loaded.getGraph() instanceof WGraph_Compact);
+        assertEquals(c.edgeSize(),loaded.getGraph().edgeSize());
+        assertEquals(c.getEdge(keys[2],keys[3]),loaded.getGraph().getEdge(keys[2],keys[3]));
+
+        try(RandomAccessFile f = new RandomAccessFile("myFile.wgr","rw")){ // Flip one weight bit.
+            f.seek(f.length()-100);
+            int b = f.read();
+            f.seek(f.length()-100);
+            f.write(b ^ 1);
+        }
+        assertFalse(loaded.load("myFile.wgr"));
+        try(RandomAccessFile f = new RandomAccessFile("myFile.wgr","rw")){ // Truncate it.
+            f.setLength(f.length()/2);
+        }
+        assertFalse(loaded.load("myFile.wgr"));
+
+        try(ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream("myFile.wgr"))){ // An old file.
+            oos.writeObject(g);
+        }
+        assertTrue(loaded.load("myFile.wgr"));
+        assertEquals(g,loaded.getGraph());
+
+        try(InputStream in = WGraph_AlgoTest.class.getResourceAsStream("/baseline_graph.obj")){ // Saved by the original save().
+            Files.copy(in,Paths.get("myFile.obj"),StandardCopyOption.REPLACE_EXISTING);
+        }
+        assertTrue(loaded.load("myFile.obj"));
+        weighted_graph old = new WGraph_DS();
+        for(int i = 0; i < 8; i++)
+            old.addNode(i*3);
+        old.connect(0,3,1.5);
+        old.connect(3,6,2);
+        old.connect(6,9,0.25);
+        old.connect(0,9,10);
+        old.connect(12,15,7);
+        assertEquals(old,loaded.getGraph());
+        assertEquals(3.75,loaded.shortestPathDist(0,9));
+        assertTrue(loaded.getGraph().getV(18).isEmpty()); // An isolated node.
+    }
+
+    /**
+     * Test the edge list import and export: round trip, comments, two and one number lines,
+     * repeated edges, ignored lines (like connect) and malformed lines.
+     */
+    @Test
+    void testEdgeList() throws IOException {
+        weighted_graph g = newGraph();
+        Random r = new Random(10);
+        for(int i = 0; i < 5000; i++)
+            g.addNode(r.nextInt(100000));
+        WGraph_Algo ga = new WGraph_Algo();
+        ga.init(g);
+        int[] keys = ga.nodeKeys();
+        for(int i = 0; i < 15000; i++)
+            g.connect(keys[r.nextInt(keys.length)],keys[r.nextInt(keys.length)],i % 2 == 0 ? r.nextInt(100) : r.nextDouble()*1e-3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WGraph_EdgeList.write(g,out);
+        Files.write(Paths.get("myFile.txt"),out.toByteArray());
+        assertEquals(new WGraph_DS(g),WGraph_EdgeList.read("myFile.txt")); // Isolated nodes included, weights exact.
+
+        String text = "# comment\n% another\n\n1 2 0.5\n2\t3\n4\n1 2 2.5e1\r\n5 5 1\n6 7 -1\n 8  9 1234567.891234567891\n10 11 1E-2";
+        Files.write(Paths.get("myFile.txt"),text.getBytes(StandardCharsets.US_ASCII));
+        WGraph_DS h = WGraph_EdgeList.read("myFile.txt");
+        assertEquals(11,h.nodeSize());
+        assertEquals(4,h.edgeSize());
+        assertEquals(25,h.getEdge(1,2)); // The last line wins.
+        assertEquals(1,h.getEdge(3,2)); // Default weight.
+        assertEquals(1234567.891234567891,h.getEdge(8,9));
+        assertEquals(0.01,h.getEdge(11,10));
+        assertEquals(-1,h.getEdge(6,7)); // Ignored like connect.
+        assertEquals(7,h.componentCount()); // {1,2,3} {4} {5} {6} {7} {8,9} {10,11}
+        for(String bad : new String[]{"1 2 x\n","1 -2 3\n","1 2 3 4\n","99999999999 1\n","1 2 3.5.5\n"}){
+            Files.write(Paths.get("myFile.txt"),bad.getBytes(StandardCharsets.US_ASCII));
+            assertThrows(IOException.class, () -> WGraph_EdgeList.read("myFile.txt"));
+        }
+        Files.write(Paths.get("myFile.txt"),new byte[0]);
+        assertEquals(0,WGraph_EdgeList.read("myFile.txt").nodeSize());
+    }
+
+    /**
+     * Test the generators: the same seed gives the same graph, the rows are symmetric without self loops,
+     * the grid weights are the distances between the coordinates, and the bulk outputs agree.
+     */
+    @Test
+    void testGenerators() throws IOException {
+        WGraph_Generator er = WGraph_Generator.erdosRenyi(20000,100000,5);
+        assertEquals(er.toGraph(),WGraph_Generator.erdosRenyi(20000,100000,5).toGraph());
+        assertNotEquals(er.toGraph(),WGraph_Generator.erdosRenyi(20000,100000,6).toGraph());
+        assertEquals(20000,er.nodeSize());
+        assertTrue(er.edgeSize() <= 100000 && er.edgeSize() > 99000);
+        WGraph_DS g = er.toGraph();
+        assertEquals(er.edgeSize(),g.edgeSize());
+        for(node_info n : g.getV()){
+            assertFalse(g.hasEdge(n.getKey(),n.getKey()));
+            for(node_info v : g.getV(n.getKey())){
+                double w = g.getEdge(n.getKey(),v.getKey());
+                assertEquals(w,g.getEdge(v.getKey(),n.getKey()));
+                assertTrue(w >= 1 && w <= 100 && w == Math.floor(w));
+            }
+        }
+
+        WGraph_Generator grid = WGraph_Generator.grid(100,50,1,7);
+        assertEquals(5000,grid.nodeSize());
+        assertEquals(99*50+100*49,grid.edgeSize());
+        g = grid.toGraph();
+        assertEquals(1,g.componentCount());
+        assertEquals(Math.hypot(grid.x(0)-grid.x(1),grid.y(0)-grid.y(1)),g.getEdge(1,0));
+        assertEquals(Math.hypot(grid.x(0)-grid.x(100),grid.y(0)-grid.y(100)),g.getEdge(0,100));
+        assertFalse(g.hasEdge(99,100)); // No wrap around.
+        assertTrue(Math.abs(grid.x(4999)-99) <= 0.25 && Math.abs(grid.y(4999)-49) <= 0.25);
+        WGraph_Generator roads = WGraph_Generator.grid(100,50,0.7,7);
+        assertTrue(roads.edgeSize() > grid.edgeSize()*0.65 && roads.edgeSize() < grid.edgeSize()*0.75);
+        assertThrows(IllegalStateException.class, () -> er.x(0));
+        assertThrows(IllegalArgumentException.class, () -> grid.y(5000));
+
+        WGraph_Generator ba = WGraph_Generator.barabasiAlbert(20000,3,1);
+        g = ba.toGraph();
+        assertEquals(g,WGraph_Generator.barabasiAlbert(20000,3,1).toGraph());
+        assertEquals(1,g.componentCount());
+        int maxDegree = 0;
+        for(node_info n : g.getV())
+            maxDegree = Math.max(maxDegree,g.getV(n.getKey()).size());
+        assertTrue(maxDegree > 100); // Hubs (a uniform graph of the same size has degrees < 20).
+
+        WGraph_Generator rmat = WGraph_Generator.rmat(14,100000,0.57,0.19,0.19,3);
+        assertEquals(1 << 14,rmat.nodeSize());
+        assertEquals(rmat.toGraph(),WGraph_Generator.rmat(14,100000,0.57,0.19,0.19,3).toGraph());
+        assertTrue(rmat.toGraph().getV(0).size() > 1000); // Node 0 is the densest.
+        assertEquals(rmat.toGraph(),new WGraph_DS(rmat.toPacked()));
+        rmat.save("myFile.bin");
+        WGraph_Algo ga = new WGraph_Algo();
+        assertTrue(ga.load("myFile.bin"));
+        assertEquals(rmat.toGraph(),ga.getGraph());
+
+        assertThrows(IllegalArgumentException.class, () -> WGraph_Generator.erdosRenyi(0,1,1));
+        assertThrows(IllegalArgumentException.class, () -> WGraph_Generator.barabasiAlbert(3,3,1));
+        assertThrows(IllegalArgumentException.class, () -> WGraph_Generator.rmat(10,10,0.5,0.5,0.5,1));
+        assertThrows(IllegalArgumentException.class, () -> WGraph_Generator.grid(10,10,2,1));
+    }
+
+    /**
+     * Test the parallel component labeling against the reachability of shortestPathDist.
+     */
+    @Test
+    void testComponents(){
+        weighted_graph g = new WGraph_DS();
+        Random r = new Random(6);
+        for(int i = 0; i < 20000; i++)
+            g.addNode(i*5+1);
+        for(int i = 0; i < 15000; i++)
+            g.connect(r.nextInt(20000)*5+1,r.nextInt(20000)*5+1,1);
+        WGraph_Algo ga = new WGraph_Algo();
+        ga.init(g);
+        WGraph_Components c = ga.components();
+        assertEquals(((WGraph_DS) g).componentCount(),c.count());
+        assertEquals(0,c.componentOf(1)); // Ids follow the smallest key of every component.
+        assertEquals(-1,c.componentOf(0));
+        int total = 0;
+        for(int i = 0; i < c.count(); i++){
+            total += c.size(i);
+            assertTrue(c.size(i) <= c.size(c.largest()));
+        }
+        assertEquals(20000,total);
+        for(int i = 0; i < 200; i++){
+            int a = r.nextInt(20000)*5+1, b = r.nextInt(20000)*5+1;
+            assertEquals(ga.shortestPathDist(a,b) >= 0,c.componentOf(a) == c.componentOf(b));
+        }
+        assertEquals(0,new WGraph_Components(new WGraph_DS().getCSR()).count());
+    }
+
+    /**
+     * Test the parallel delta-stepping distances against shortestPathDist (light, heavy and zero weights).
+     */
+    @Test
+    void testDistancesFrom(){
+        weighted_graph g = newGraph();
+        Random r = new Random(5);
+        for(int i = 0; i < 3000; i++)
+            g.addNode(i*2);
+        for(int i = 0; i < 9000; i++)
+            g.connect(r.nextInt(3000)*2,r.nextInt(3000)*2,i % 10 == 0 ? 100*r.nextDouble() : r.nextInt(5));
+        WGraph_Algo ga = new WGraph_Algo();
+        ga.init(g);
+        assertNull(ga.distancesFrom(1));
+        int[] keys = ga.nodeKeys();
+        assertEquals(g.nodeSize(),keys.length);
+        for(int k = 0; k < 3; k++){
+            int src = r.nextInt(3000)*2;
+            double[] dist = ga.distancesFrom(src);
+            assertEquals(0,dist[src/2]);
+            for(int i = 0; i < keys.length; i += 7)
+                assertEquals(ga.shortestPathDist(src,keys[i]),dist[i],1e-9);
+        }
+    }
+
+    /**
+     * Test the query metrics: latencies and search work are counted per operation, stale pops of a frontier
+     * without decrease-key are skipped (with the same distances), and the flight recorder events are emitted.
+     */
+    @Test
+    void testMetrics() throws IOException {
+        weighted_graph g = WGraph_Generator.erdosRenyi(3000,9000,4).toGraph();
+        WGraph_Algo ga = new WGraph_Algo(), lazy = new WGraph_Algo();
+        ga.init(g);
+        lazy.init(g);
+        assertNull(ga.getMetrics());
+        ga.setMetrics(true);
+        lazy.setMetrics(true);
+        lazy.setFrontier(LazyFrontier::new);
+        QueryMetrics m = ga.getMetrics();
+        Random r = new Random(4);
+        for(int i = 0; i < 200; i++){
+            int src = r.nextInt(3000), dest = r.nextInt(3000);
+            assertEquals(ga.shortestPathDist(src,dest),lazy.shortestPathDist(src,dest));
+        }
+        assertNotNull(ga.shortestPath(1,2));
+        QueryMetrics.Operation sp = QueryMetrics.Operation.SHORTEST_PATH;
+        assertEquals(201,m.latency(sp).count());
+        assertTrue(m.settledNodes(sp) > 200);
+        assertTrue(m.relaxedEdges(sp) >= m.settledNodes(sp));
+        assertTrue(m.heapPushes(sp) >= m.settledNodes(sp));
+        assertEquals(0,m.stalePops(sp)); // IndexedDaryHeap has decrease-key.
+        assertTrue(lazy.getMetrics().stalePops(sp) > 0);
+        LatencyHistogram h = m.latency(sp);
+        assertTrue(h.percentile(50) > 0 && h.percentile(50) <= h.percentile(99) && h.percentile(99) <= h.max());
+        assertEquals(h.max(),h.percentile(100));
+
+        ga.isConnected(); // Answered by the components of the WGraph_DS.
+        QueryMetrics.Operation ic = QueryMetrics.Operation.IS_CONNECTED;
+        assertEquals(1,m.latency(ic).count());
+        assertEquals(0,m.settledNodes(ic));
+        WGraph_Algo snap = new WGraph_Algo();
+        snap.init(((WGraph_DS) g).snapshot());
+        snap.setMetrics(true);
+        snap.isConnected(); // A BFS.
+        WGraph_Components c = snap.components();
+        assertEquals(c.size(c.componentOf(0)),snap.getMetrics().settledNodes(ic)); // The component of the first node.
+        assertTrue(ga.save("myFile.bin"));
+        assertTrue(ga.load("myFile.bin"));
+        assertFalse(ga.load("fileWhichDoesntExist.obj"));
+        assertEquals(1,m.latency(QueryMetrics.Operation.SAVE).count());
+        assertEquals(2,m.latency(QueryMetrics.Operation.LOAD).count());
+        assertTrue(m.toString().contains("SHORTEST_PATH"));
+        m.reset();
+        assertEquals(0,m.latency(sp).count());
+        assertEquals(0,m.settledNodes(sp));
+        ga.setMetrics(false);
+        assertNull(ga.getMetrics());
+
+        h = new LatencyHistogram();
+        for(int i = 1; i <= 1000; i++)
+            h.record(i*1000L);
+        assertEquals(1000,h.count());
+        assertEquals(500500,h.mean(),1e-9);
+        assertEquals(1000000,h.max());
+        assertTrue(Math.abs(h.percentile(50)-500000) <= 500000/8);
+        assertTrue(Math.abs(h.percentile(99)-990000) <= 990000/8);
+        assertTrue(h.percentile(0) >= 1000 && h.percentile(0) <= 1000*9/8); // The upper end of the first bucket.
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram().percentile(101));
+
+        Path file = Files.createTempFile("metrics",".jfr");
+        try(Recording recording = new Recording()){
+            recording.enable("ex1.GraphQuery");
+            recording.enable("ex1.GraphFile");
+            recording.start();
+            ga.shortestPathDist(1,2);
+            ga.isConnected();
+            ga.save("myFile.bin");
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        assertEquals(2,events.stream().filter(e -> e.getEventType().getName().equals("ex1.GraphQuery")).count());
+        RecordedEvent save = events.stream().filter(e -> e.getEventType().getName().equals("ex1.GraphFile")).findFirst().get();
+        assertEquals("SAVE",save.getString("operation"));
+        assertEquals(g.nodeSize(),save.getInt("nodes"));
+        assertTrue(save.getBoolean("success"));
+    }
+
+    /**
+     * A frontier without decrease-key: every push adds an entry (for testMetrics).
+     */
+    private static class LazyFrontier implements frontier_queue {
+        private final PriorityQueue<double[]> q = new PriorityQueue<>((a,b) -> Double.compare(a[0],b[0]));
+
+        @Override
+        public void clear(int capacity) {
+            q.clear();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return q.isEmpty();
+        }
+
+        @Override
+        public void push(int id, double key) {
+            q.add(new double[]{key,id});
+        }
+
+        @Override
+        public int pop() {
+            return (int) q.poll()[1];
+        }
+
+        @Override
+        public double peekKey() {
+            return q.peek()[0];
+        }
+    }
+
     /**
      * This test checks for possible exceptions.
      */
     @Test
     void testExceptions(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         weighted_graph_algorithms ga = new WGraph_Algo();
         assertDoesNotThrow(() -> ga.load("fileWhichDoesntExist.obj"));
     }
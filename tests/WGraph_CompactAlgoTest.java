@@ -0,0 +1,34 @@
+package ex1.tests;
+
+import ex1.src.WGraph_Compact;
+import ex1.src.weighted_graph;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+
+import java.util.Date;
+
+/**
+ * Runs all the tests of WGraph_AlgoTest on WGraph_Compact graphs.
+ */
+class WGraph_CompactAlgoTest extends WGraph_AlgoTest {
+    static long start,end; // Runtime variables.
+
+    @BeforeAll
+    static void beforeAll(){
+        System.out.println("--- Starting test for WGraph_Algo class on WGraph_Compact ---");
+        start = new Date().getTime();
+    }
+
+    @Override
+    weighted_graph newGraph(){
+        return new WGraph_Compact();
+    }
+
+    @AfterAll
+    static void afterAll(){
+        System.out.println("--- End of WGraph_Algo class test on WGraph_Compact ---");
+        end = new Date().getTime();
+        double dt = (end-start)/1000.0;
+        System.out.println("--- Finished in "+dt+" seconds ---");
+    }
+}
@@ -0,0 +1,62 @@
+package ex1.tests;
+
+import ex1.src.*;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the tests of WGraph_DSTest on WGraph_Compact (those of WGraph_DS only features are skipped), plus the tests
+ * of its primitive adjacency map.
+ */
+class WGraph_CompactTest extends WGraph_DSTest {
+    static long start,end; // Runtime variables.
+
+    @BeforeAll
+    static void beforeAll(){
+        System.out.println("--- Starting test for WGraph_Compact class ---");
+        start = new Date().getTime();
+    }
+
+    @Override
+    weighted_graph newGraph(){
+        return new WGraph_Compact();
+    }
+
+    @Override
+    weighted_graph copyGraph(weighted_graph g){
+        return new WGraph_Compact(g);
+    }
+
+    /**
+     * Test the primitive adjacency map with many insertions and removals (backward shift deletion).
+     */
+    @Test
+    void testIntDoubleHashMap(){
+        IntDoubleHashMap map = new IntDoubleHashMap();
+        for(int i = 0; i < 1000; i++)
+            assertTrue(map.put(i*7, i));
+        assertFalse(map.put(7, 100));
+        assertEquals(1000,map.size());
+        assertEquals(100,map.get(7,-1));
+        for(int i = 0; i < 1000; i += 2)
+            assertTrue(map.remove(i*7));
+        assertFalse(map.remove(0));
+        assertEquals(500,map.size());
+        for(int i = 1; i < 1000; i += 2)
+            assertEquals(i == 1 ? 100 : i,map.get(i*7,-1));
+        assertEquals(-1,map.get(14,-1));
+    }
+
+    @AfterAll
+    static void afterAll(){
+        System.out.println("--- End of WGraph_Compact class test ---");
+        end = new Date().getTime();
+        double dt = (end-start)/1000.0;
+        System.out.println("--- Finished in "+dt+" seconds ---");
+    }
+}
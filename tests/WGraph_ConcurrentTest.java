@@ -0,0 +1,121 @@
+package ex1.tests;
+
+import ex1.src.*;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WGraph_ConcurrentTest {
+    static long start,end; // Runtime variables.
+
+    @BeforeAll
+    static void beforeAll(){
+        System.out.println("--- Starting test for WGraph_Concurrent class ---");
+        start = new Date().getTime();
+    }
+
+    /**
+     * Test the basic operations against WGraph_DS.
+     */
+    @Test
+    void testSameAsWGraph_DS(){
+        weighted_graph g1 = new WGraph_DS(), g2 = new WGraph_Concurrent();
+        Random r = new Random(1);
+        for(int i = 0; i < 20000; i++){
+            int a = r.nextInt(300), b = r.nextInt(300), op = r.nextInt(10), w = r.nextInt(3);
+            for(weighted_graph g : new weighted_graph[]{g1,g2}){
+                if(op < 2) g.addNode(a);
+                else if(op < 8) g.connect(a,b,w);
+                else if(op < 9) g.removeEdge(a,b);
+                else if(i % 20 == 0) g.removeNode(a);
+            }
+        }
+        assertEquals(g1.nodeSize(),g2.nodeSize());
+        assertEquals(g1.edgeSize(),g2.edgeSize());
+        for(node_info n : g1.getV()){
+            assertEquals(g1.getV(n.getKey()).size(),g2.getV(n.getKey()).size());
+            for(node_info v : g1.getV(n.getKey()))
+                assertEquals(g1.getEdge(n.getKey(),v.getKey()),g2.getEdge(n.getKey(),v.getKey()));
+        }
+        assertEquals(new WGraph_DS(g2),g1);
+        WGraph_Algo ga = new WGraph_Algo();
+        ga.init(g2);
+        assertEquals(g2,ga.copy());
+        assertEquals(-1,g2.getEdge(1,1));
+    }
+
+    /**
+     * Test that many writers and readers can use the graph at once, and that the graph is consistent afterwards:
+     * every edge is in both rows with the same weight, and the counters match the rows.
+     */
+    @Test
+    void testConcurrentWriters() throws InterruptedException {
+        WGraph_Concurrent g = new WGraph_Concurrent();
+        for(int i = 0; i < 1000; i++)
+            g.addNode(i);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread[] writers = new Thread[8];
+        for(int t = 0; t < writers.length; t++){
+            int seed = t;
+            writers[t] = new Thread(() -> {
+                Random r = new Random(seed);
+                for(int i = 0; i < 20000; i++){
+                    int a = r.nextInt(1000), b = r.nextInt(1000), op = r.nextInt(20);
+                    if(op < 14) g.connect(a,b,r.nextInt(100));
+                    else if(op < 18) g.removeEdge(a,b);
+                    else if(op < 19) g.removeNode(a);
+                    else g.addNode(a);
+                }
+            });
+        }
+        Thread reader = new Thread(() -> {
+            try {
+                WGraph_Algo ga = new WGraph_Algo();
+                ga.init(g);
+                Random r = new Random(99);
+                while(!done.get()){
+                    ga.shortestPathDist(r.nextInt(1000),r.nextInt(1000));
+                    for(node_info n : g.getV(r.nextInt(1000)))
+                        assertNotNull(n);
+                }
+            } catch(Throwable e){
+                error.set(e);
+            }
+        });
+        reader.start();
+        for(Thread t : writers)
+            t.start();
+        for(Thread t : writers)
+            t.join();
+        done.set(true);
+        reader.join();
+        assertNull(error.get());
+        int arcs = 0;
+        for(node_info n : g.getV()){
+            for(node_info v : g.getV(n.getKey())){
+                assertNotNull(g.getNode(v.getKey()));
+                assertEquals(g.getEdge(n.getKey(),v.getKey()),g.getEdge(v.getKey(),n.getKey()));
+                arcs++;
+            }
+        }
+        assertEquals(arcs/2,g.edgeSize());
+        assertEquals(g.getV().size(),g.nodeSize());
+        assertEquals(arcs,g.getCSR().entries());
+    }
+
+    @AfterAll
+    static void afterAll(){
+        System.out.println("--- End of WGraph_Concurrent class test ---");
+        end = new Date().getTime();
+        double dt = (end-start)/1000.0;
+        System.out.println("--- Finished in "+dt+" seconds ---");
+    }
+}
@@ -1,6 +1,14 @@
 package ex1.tests;
 
+import ex1.src.WGraph_CSR;
+import ex1.src.WGraph_Compact;
+import ex1.src.WGraph_Concurrent;
+import ex1.src.WGraph_Algo;
 import ex1.src.WGraph_DS;
+import ex1.src.WGraph_Generator;
+import ex1.src.WGraph_Packed;
+import ex1.src.WGraph_Snapshot;
+import ex1.src.node_info;
 import ex1.src.weighted_graph;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -9,8 +17,10 @@ import org.junit.jupiter.api.function.Executable;
 
 import java.util.Date;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class WGraph_DSTest {
     static long start,end; // Runtime variables.
@@ -21,12 +31,29 @@ class WGraph_DSTest {
         start = new Date().getTime();
     }
 
+    /**
+     * Creates the empty graph the tests run on (WGraph_CompactTest runs this suite on WGraph_Compact).
+     * @return - a new empty graph.
+     */
+    weighted_graph newGraph(){
+        return new WGraph_DS();
+    }
+
+    /**
+     * Copies a graph with the copy constructor of the implementation under test.
+     * @param g - the graph to copy (may be null).
+     * @return - the copy.
+     */
+    weighted_graph copyGraph(weighted_graph g){
+        return new WGraph_DS(g);
+    }
+
     /**
      * Test simple empty graph
      */
     @Test
     void testEmptyGraph(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         assertEquals(0,g.nodeSize());
         assertEquals(0,g.edgeSize());
         assertEquals(0,g.getMC());
@@ -37,7 +64,7 @@ class WGraph_DSTest {
      */
     @Test
     void testOneNodeGraph(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         g.addNode(3);
         assertEquals(1,g.nodeSize());
         assertEquals(0,g.edgeSize());
@@ -50,7 +77,7 @@ class WGraph_DSTest {
      */
     @Test
     void testConnectTwoNodes(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         g.addNode(4);
         g.addNode(7);
         g.connect(4,7,30);
@@ -67,7 +94,7 @@ class WGraph_DSTest {
      */
     @Test
     void testRemoveNode(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         g.addNode(4);
         g.addNode(0);
         g.addNode(-1);
@@ -82,17 +109,19 @@ class WGraph_DSTest {
 
     /**
      * Runtime test for graph creation.
-     * Creates random graph with 100,000 vertices and edge number <= 1,000,000.
+     * Creates random graph with 100,000 vertices and edge number <= 1,000,000 (see WGraph_Generator).
      * This test should run no more than 10 seconds.
      */
     @Test
     void testRuntime(){
         long startTime = new Date().getTime();
         int v = 100000, e = v*10;
-        weighted_graph g = graphCreator(v,e);
+        weighted_graph g = copyGraph(WGraph_Generator.erdosRenyi(v,e,1).toPacked());
         long endTime = new Date().getTime();
         double dt = (endTime-startTime)/1000.0;
         assertTrue(dt < 10);
+        assertEquals(v,g.nodeSize());
+        assertTrue(g.edgeSize() <= e && g.edgeSize() > e*0.99);
     }
 
     /**
@@ -100,14 +129,14 @@ class WGraph_DSTest {
      */
     @Test
     void testCopyConstructor(){
-        weighted_graph g1 = new WGraph_DS();
+        weighted_graph g1 = newGraph();
         g1.addNode(1);
-        weighted_graph g2 = new WGraph_DS(g1);
+        weighted_graph g2 = copyGraph(g1);
         assertEquals(g1,g2);
         assertDoesNotThrow(new Executable() {
             @Override
             public void execute() throws Throwable {
-                weighted_graph g3 = new WGraph_DS(null);
+                weighted_graph g3 = copyGraph(null);
             }
         });
         g1.removeNode(1);
@@ -122,7 +151,7 @@ class WGraph_DSTest {
      */
     @Test
     void testHasEdge(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         g.addNode(1);
         g.addNode(2);
         g.addNode(3);
@@ -141,7 +170,7 @@ class WGraph_DSTest {
      */
     @Test
     void testGetEdge(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         g.addNode(1);
         g.addNode(2);
         g.addNode(3);
@@ -159,7 +188,7 @@ class WGraph_DSTest {
      */
     @Test
     void testAddIllegalNode(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         assertDoesNotThrow(new Executable() {
             @Override
             public void execute() throws Throwable {
@@ -177,7 +206,7 @@ class WGraph_DSTest {
      */
     @Test
     void testConnectIllegalValues(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         g.addNode(1);
         g.connect(1,1,50);
         assertNotEquals(1,g.edgeSize());
@@ -188,7 +217,7 @@ class WGraph_DSTest {
      */
     @Test
     void testGetV(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         g.addNode(1);
         g.addNode(2);
         g.addNode(3);
@@ -211,7 +240,7 @@ class WGraph_DSTest {
      */
     @Test
     void testRemoveEdge(){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         g.removeEdge(1,3);
         g.addNode(1);
         g.addNode(2);
@@ -256,6 +285,188 @@ class WGraph_DSTest {
         assertEquals(0,g.edgeSize());
     }
 
+    /**
+     * Test the CSR snapshot: dense indices, sorted rows and lazy rebuild after a change.
+     */
+    @Test
+    void testCSRSnapshot(){
+        assumeWGraph_DS();
+        WGraph_DS g = new WGraph_DS();
+        g.addNode(30);
+        g.addNode(10);
+        g.addNode(20);
+        g.connect(10,30,1.5);
+        g.connect(10,20,2.5);
+        WGraph_CSR csr = g.getCSR();
+        assertEquals(3,csr.size());
+        assertEquals(4,csr.entries());
+        assertEquals(10,csr.keyAt(0));
+        assertEquals(2,csr.indexOf(30));
+        assertEquals(-1,csr.indexOf(40));
+        assertEquals(2,csr.end(0)-csr.begin(0));
+        assertEquals(1,csr.neighborAt(csr.begin(0))); // Rows are sorted by index: 20 comes before 30.
+        assertEquals(2.5,csr.weightAt(csr.begin(0)));
+        assertSame(csr,g.getCSR()); // No change, the same snapshot is returned.
+        g.removeEdge(10,20);
+        assertNotEquals(csr,g.getCSR());
+        assertEquals(2,g.getCSR().entries());
+    }
+
+    /**
+     * Test the incremental component count: merges on connect, a rebuild after a split and the copy.
+     */
+    @Test
+    void testComponentCount(){
+        assumeWGraph_DS();
+        WGraph_DS g = new WGraph_DS();
+        assertEquals(0,g.componentCount());
+        for(int i = 0; i < 1000; i++)
+            g.addNode(i*3);
+        assertEquals(1000,g.componentCount());
+        for(int i = 1; i < 1000; i++)
+            g.connect((i-1)*3,i*3,1);
+        g.connect(0,2997,1); // Closes a cycle, no merge.
+        assertEquals(1,g.componentCount());
+        g.removeEdge(0,3); // Still connected through the cycle.
+        assertEquals(1,g.componentCount());
+        g.removeEdge(1500,1503);
+        assertEquals(2,g.componentCount());
+        g.removeNode(600);
+        assertEquals(3,g.componentCount());
+        g.connect(597,603,1); // Incremental again after the rebuild.
+        g.addNode(5000);
+        assertEquals(3,g.componentCount());
+        assertEquals(3,new WGraph_DS(g).componentCount());
+    }
+
+    /**
+     * Test toString: one line per node in the format of getV(key).toString(), in the order of getV().
+     */
+    @Test
+    void testToString(){
+        weighted_graph g = graphCreator(300,900);
+        String expected = "\n"; // The format of getV() and getV(key).toString().
+        for(node_info n : g.getV())
+            expected += "("+n.getKey()+") -> " + g.getV(n.getKey()).toString() + "\n";
+        assertEquals(expected,g.toString());
+        assertEquals("\n",newGraph().toString());
+    }
+
+    /**
+     * Test that a snapshot keeps the state of the graph while the graph is modified, also from another thread.
+     */
+    @Test
+    void testSnapshot() throws InterruptedException {
+        assumeWGraph_DS();
+        WGraph_DS g = new WGraph_DS(graphCreator(500,2000));
+        WGraph_DS copy = new WGraph_DS(g);
+        int mc = g.getMC();
+        WGraph_Snapshot s = g.snapshot();
+        WGraph_Algo ga = new WGraph_Algo();
+        ga.init(copy);
+        double[] expected = ga.distanceMatrix(new int[]{0,1,2},new int[]{100,200,300,400});
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread reader = new Thread(() -> { // Runs on the snapshot while the graph changes.
+            try {
+                WGraph_Algo sa = new WGraph_Algo();
+                sa.init(s);
+                for(int i = 0; i < 20; i++)
+                    assertArrayEquals(expected,sa.distanceMatrix(new int[]{0,1,2},new int[]{100,200,300,400}),1e-9);
+            } catch(Throwable e){
+                error.set(e);
+            }
+        });
+        reader.start();
+        Random r = new Random(2);
+        for(int i = 0; i < 5000; i++){
+            int a = r.nextInt(600), b = r.nextInt(600), op = r.nextInt(10);
+            if(op < 5) g.connect(a,b,r.nextDouble());
+            else if(op < 8) g.removeEdge(a,b);
+            else if(op < 9) g.removeNode(a);
+            else g.addNode(a);
+        }
+        reader.join();
+        assertNull(error.get());
+        assertEquals(mc,s.getMC());
+        assertEquals(copy.nodeSize(),s.nodeSize());
+        assertEquals(copy.edgeSize(),s.edgeSize());
+        assertEquals(copy,new WGraph_DS(s));
+        for(node_info n : copy.getV())
+            for(node_info v : copy.getV(n.getKey()))
+                assertEquals(copy.getEdge(n.getKey(),v.getKey()),s.getEdge(n.getKey(),v.getKey()));
+        assertNotEquals(copy,g);
+        WGraph_Snapshot s2 = g.snapshot(); // A second snapshot sees the changes, the first one doesn't.
+        assertEquals(g,new WGraph_DS(s2));
+        int key = g.getV().iterator().next().getKey();
+        g.removeNode(key);
+        assertNotNull(s2.getNode(key));
+        assertEquals(g.getMC()-1,s2.getMC());
+        assertThrows(UnsupportedOperationException.class, () -> s.connect(0,1,1));
+        assertThrows(UnsupportedOperationException.class, () -> s.getNode(0).setTag(1));
+    }
+
+    /**
+     * Test addNodes and connectAll against addNode and connect, and the structural copy.
+     */
+    @Test
+    void testBulkConstruction(){
+        assumeWGraph_DS();
+        Random r = new Random(3);
+        int[] keys = new int[1000], a = new int[5000], b = new int[5000];
+        double[] w = new double[5000];
+        for(int i = 0; i < keys.length; i++)
+            keys[i] = r.nextInt(1200)-10; // Some negative keys and duplicates.
+        for(int i = 0; i < a.length; i++){
+            a[i] = r.nextInt(1200);
+            b[i] = i % 100 == 0 ? a[i] : r.nextInt(1200); // Some self loops.
+            w[i] = r.nextInt(20)-1; // Some negative weights.
+        }
+        WGraph_DS g1 = new WGraph_DS(), g2 = new WGraph_DS();
+        for(int key : keys)
+            g1.addNode(key);
+        for(int i = 0; i < a.length; i++)
+            g1.connect(a[i],b[i],w[i]);
+        g2.addNodes(keys);
+        g2.connectAll(a,b,w);
+        assertEquals(g1,g2);
+        assertEquals(g1.getMC(),g2.getMC());
+        assertEquals(g1.componentCount(),g2.componentCount());
+        assertThrows(IllegalArgumentException.class, () -> g2.connectAll(a,b,new double[1]));
+        WGraph_DS copy = new WGraph_DS(g2);
+        assertEquals(g2,copy);
+        assertEquals(g2.getMC(),copy.getMC());
+        assertEquals(g2.componentCount(),copy.componentCount());
+        int key = g2.getV().iterator().next().getKey();
+        copy.removeNode(key);
+        assertNotEquals(g2,copy); // A deep copy.
+        assertNotNull(g2.getNode(key));
+        assertEquals(copy,new WGraph_DS(copy.snapshot())); // Copied from the CSR of another graph.
+    }
+
+    /**
+     * Test that forEachNeighbor visits the same neighbors and weights as getV(key) and getEdge, in every graph.
+     */
+    @Test
+    void testForEachNeighbor(){
+        WGraph_DS g = new WGraph_DS(graphCreator(300,1500));
+        g.removeNode(7);
+        weighted_graph[] graphs = {g, g.snapshot(), new WGraph_Compact(g), new WGraph_Concurrent(g), new WGraph_Packed(g)};
+        for(weighted_graph h : graphs){
+            for(node_info n : g.getV()){
+                int key = n.getKey();
+                int[] count = {0};
+                h.forEachNeighbor(key, (v, w) -> {
+                    assertEquals(g.getEdge(key,v),w);
+                    count[0]++;
+                });
+                assertEquals(g.getV(key).size(),count[0]);
+            }
+            h.forEachNeighbor(7, (v, w) -> fail("no such node"));
+        }
+        assertEquals(g,new WGraph_DS(new WGraph_Compact(g))); // Copied through forEachNeighbor (WGraph_CSR.of).
+        assertEquals(g.getCSR().entries(),WGraph_CSR.of(new WGraph_Compact(g)).entries());
+    }
+
     /////////////////////////// Private methods ///////////////////////////
 
     /**
@@ -265,7 +476,7 @@ class WGraph_DSTest {
      * @return
      */
     private weighted_graph graphCreator(int v, int e){
-        weighted_graph g = new WGraph_DS();
+        weighted_graph g = newGraph();
         Random r = new Random(1);
         for(int i = 0; i < v; i++)
             g.addNode(i);
@@ -277,6 +488,13 @@ class WGraph_DSTest {
         return g;
     }
 
+    /**
+     * Skips a test of a WGraph_DS only feature when the suite runs on another graph (see WGraph_CompactTest).
+     */
+    private void assumeWGraph_DS(){
+        assumeTrue(newGraph() instanceof WGraph_DS, "tests a WGraph_DS only feature");
+    }
+
     @AfterAll
     static void afterAll(){
         System.out.println("--- End of WGraph_DS class test ---");
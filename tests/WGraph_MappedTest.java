@@ -0,0 +1,106 @@
+package ex1.tests;
+
+import ex1.src.*;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Date;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WGraph_MappedTest {
+    static long start,end; // Runtime variables.
+
+    @BeforeAll
+    static void beforeAll(){
+        System.out.println("--- Starting test for WGraph_Mapped class ---");
+        start = new Date().getTime();
+    }
+
+    /**
+     * Test that a mapped saved graph has the same nodes, edges and shortest paths as the original.
+     */
+    @Test
+    void testMappedQueries() throws IOException {
+        weighted_graph g1 = new WGraph_DS();
+        Random r = new Random(1);
+        for(int i = 0; i < 300; i++)
+            g1.addNode(i*3);
+        for(int i = 0; i < 1200; i++)
+            g1.connect(r.nextInt(300)*3,r.nextInt(300)*3,r.nextDouble());
+        WGraph_Algo ga1 = new WGraph_Algo();
+        ga1.init(g1);
+        assertTrue(ga1.save("myFile.wgr"));
+        WGraph_Mapped g2 = WGraph_Mapped.open("myFile.wgr");
+        assertTrue(g2.verify());
+        g2.close(); // Only the file descriptor is released, the mapping stays readable.
+        assertThrows(IOException.class, g2::verify);
+        assertEquals(g1.nodeSize(),g2.nodeSize());
+        assertEquals(g1.edgeSize(),g2.edgeSize());
+        assertEquals(g1.getV().size(),g2.getV().size());
+        assertNull(g2.getNode(1));
+        assertEquals(6,g2.getNode(6).getKey());
+        for(int i = 0; i < 900; i += 3) {
+            assertEquals(g1.getV(i).size(),g2.getV(i).size());
+            for(node_info n : g2.getV(i))
+                assertTrue(g1.hasEdge(i,n.getKey()));
+            for(int j = 0; j < 900; j += 7)
+                assertEquals(g1.getEdge(i,j),g2.getEdge(i,j));
+        }
+        WGraph_Algo ga2 = new WGraph_Algo();
+        ga2.init(g2);
+        assertEquals(ga1.isConnected(),ga2.isConnected());
+        for(int i = 0; i < 50; i++){
+            int a = r.nextInt(300)*3, b = r.nextInt(300)*3;
+            assertEquals(ga1.shortestPathDist(a,b),ga2.shortestPathDist(a,b),1e-9);
+        }
+        assertEquals(g1,ga2.copy()); // A copy is a normal modifiable graph.
+    }
+
+    /**
+     * Test that the mapped graph can't be modified and that broken files are detected.
+     */
+    @Test
+    void testReadOnlyAndCorrupted() throws IOException {
+        weighted_graph g1 = new WGraph_DS();
+        for(int i = 0; i < 10; i++)
+            g1.addNode(i);
+        for(int i = 1; i < 10; i++)
+            g1.connect(i-1,i,i);
+        WGraph_Algo ga1 = new WGraph_Algo();
+        ga1.init(g1);
+        assertTrue(ga1.save("myFile.wgr"));
+        try(WGraph_Mapped g2 = WGraph_Mapped.open("myFile.wgr")){
+            assertThrows(UnsupportedOperationException.class, () -> g2.addNode(10));
+            assertThrows(UnsupportedOperationException.class, () -> g2.connect(0,2,1));
+            assertThrows(UnsupportedOperationException.class, () -> g2.removeEdge(0,1));
+            assertThrows(UnsupportedOperationException.class, () -> g2.removeNode(0));
+            assertThrows(UnsupportedOperationException.class, () -> g2.getNode(0).setTag(1));
+        }
+        try(RandomAccessFile f = new RandomAccessFile("myFile.wgr","rw")){ // Flip one weight bit.
+            f.seek(f.length()-10);
+            int b = f.read();
+            f.seek(f.length()-10);
+            f.write(b ^ 1);
+        }
+        try(WGraph_Mapped g3 = WGraph_Mapped.open("myFile.wgr")){
+            assertFalse(g3.verify());
+        }
+        try(RandomAccessFile f = new RandomAccessFile("myFile.wgr","rw")){
+            f.setLength(f.length()-1);
+        }
+        assertThrows(IOException.class, () -> WGraph_Mapped.open("myFile.wgr"));
+    }
+
+    @AfterAll
+    static void afterAll(){
+        System.out.println("--- End of WGraph_Mapped class test ---");
+        end = new Date().getTime();
+        double dt = (end-start)/1000.0;
+        System.out.println("--- Finished in "+dt+" seconds ---");
+    }
+}
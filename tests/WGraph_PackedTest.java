@@ -0,0 +1,126 @@
+package ex1.tests;
+
+import ex1.src.*;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WGraph_PackedTest {
+    static long start,end; // Runtime variables.
+
+    @BeforeAll
+    static void beforeAll(){
+        System.out.println("--- Starting test for WGraph_Packed class ---");
+        start = new Date().getTime();
+    }
+
+    /**
+     * Test that a packed graph keeps every weight exactly, in all four weight encodings
+     * (1 and 2 byte dictionary codes, floats and doubles).
+     */
+    @Test
+    void testLosslessWeights(){
+        Random r = new Random(1);
+        for(int mode = 0; mode < 4; mode++){
+            weighted_graph g1 = new WGraph_DS();
+            for(int i = 0; i < 2000; i++)
+                g1.addNode(i*2);
+            for(int i = 0; i < 100000; i++){
+                double w = mode == 0 ? r.nextInt(10) : mode == 1 ? r.nextInt(50000) : mode == 2 ? (float) r.nextDouble() : r.nextDouble();
+                g1.connect(r.nextInt(2000)*2,r.nextInt(2000)*2,w);
+            }
+            WGraph_Packed g2 = new WGraph_Packed(g1);
+            assertEquals(g1.nodeSize(),g2.nodeSize());
+            assertEquals(g1.edgeSize(),g2.edgeSize());
+            for(node_info n : g1.getV()){
+                assertEquals(g1.getV(n.getKey()).size(),g2.getV(n.getKey()).size());
+                for(node_info v : g2.getV(n.getKey()))
+                    assertEquals(g1.getEdge(n.getKey(),v.getKey()),g2.getEdge(n.getKey(),v.getKey()));
+            }
+            assertEquals(-1,g2.getEdge(0,1));
+            assertFalse(g2.hasEdge(0,0));
+            assertTrue(g2.bytesPerEdge() < (mode == 0 ? 6 : mode < 3 ? 12 : 20)); // A plain CSR needs 24 per edge.
+        }
+    }
+
+    /**
+     * Test that all the algorithms give the same answers on the packed graph, also from many threads.
+     */
+    @Test
+    void testAlgorithms(){
+        weighted_graph g1 = new WGraph_DS();
+        Random r = new Random(2);
+        int w = 60;
+        for(int i = 0; i < w*w; i++)
+            g1.addNode(i);
+        for(int y = 0; y < w; y++)
+            for(int x = 0; x < w; x++){
+                if(x+1 < w) g1.connect(y*w+x,y*w+x+1,1+r.nextInt(10));
+                if(y+1 < w) g1.connect(y*w+x,(y+1)*w+x,1+r.nextInt(10));
+            }
+        WGraph_Packed g2 = new WGraph_Packed(g1);
+        assertTrue(g2.bytesPerEdge() < 11); // Mostly the per node offsets, the rows take about 4.
+        WGraph_Algo ga1 = new WGraph_Algo(), ga2 = new WGraph_Algo();
+        ga1.init(g1);
+        ga2.init(g2);
+        assertTrue(ga2.isConnected());
+        int[] src = new int[8], dst = new int[50];
+        for(int i = 0; i < src.length; i++)
+            src[i] = r.nextInt(w*w);
+        for(int i = 0; i < dst.length; i++)
+            dst[i] = r.nextInt(w*w);
+        assertArrayEquals(ga1.distanceMatrix(src,dst),ga2.distanceMatrix(src,dst),1e-9); // Parallel.
+        for(WGraph_Algo.SearchMode mode : WGraph_Algo.SearchMode.values()){
+            ga2.setSearchMode(mode);
+            for(int i = 0; i < 20; i++)
+                assertEquals(ga1.shortestPathDist(src[i%8],dst[i]),ga2.shortestPathDist(src[i%8],dst[i]),1e-9);
+        }
+        assertEquals(ga1.shortestPath(0,w*w-1).size(),ga2.shortestPath(0,w*w-1).size());
+        assertEquals(g1,ga2.copy()); // A copy is a normal modifiable graph.
+        assertThrows(UnsupportedOperationException.class, () -> g2.connect(0,2,1));
+        assertThrows(UnsupportedOperationException.class, () -> g2.removeNode(0));
+    }
+
+    /**
+     * Test that the footprint of a packed graph includes the lookup table of sparse node keys.
+     */
+    @Test
+    void testSparseKeysFootprint(){
+        weighted_graph dense = new WGraph_DS(), sparse = new WGraph_DS();
+        Random r = new Random(3);
+        int n = 5000;
+        for(int i = 0; i < n; i++){
+            dense.addNode(i);
+            sparse.addNode(i*1000);
+        }
+        for(int i = 0; i < 20000; i++){
+            int a = r.nextInt(n), b = r.nextInt(n), w = r.nextInt(10);
+            dense.connect(a,b,w);
+            sparse.connect(a*1000,b*1000,w);
+        }
+        WGraph_Packed g1 = new WGraph_Packed(dense), g2 = new WGraph_Packed(sparse);
+        int[] keys = new int[n];
+        for(int i = 0; i < n; i++)
+            keys[i] = i*1000;
+        long table = new KeyIndex(keys).sizeInBytes()-4L*n;
+        assertTrue(table >= 8L*n); // At least 2n slots.
+        for(int i = 0; i < n; i++)
+            keys[i] = i;
+        assertEquals(4L*n,new KeyIndex(keys).sizeInBytes()); // No table for the keys 0..n-1.
+        assertEquals(g1.sizeInBytes()+table,g2.sizeInBytes()); // The same rows, only the keys differ.
+        assertTrue(g2.bytesPerEdge() > g1.bytesPerEdge());
+    }
+
+    @AfterAll
+    static void afterAll(){
+        System.out.println("--- End of WGraph_Packed class test ---");
+        end = new Date().getTime();
+        double dt = (end-start)/1000.0;
+        System.out.println("--- Finished in "+dt+" seconds ---");
+    }
+}